@@ -0,0 +1,99 @@
+package com.akazlou.dynosql;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Helpers to resolve the attribute values of the items.
+ */
+final class Attributes {
+    private static final String PATH_SEPARATOR = "\\.";
+    private static final char SINGLE_QUOTE = '\'';
+
+    private Attributes() {
+    }
+
+    /**
+     * Resolves the top level attribute, or the nested attribute of the maps, ex. {@code address.city}.
+     */
+    static AttributeValue valueOf(final Map<String, AttributeValue> item, final String name) {
+        final AttributeValue value = item.get(name);
+        if (value != null) {
+            return value;
+        }
+        Map<String, AttributeValue> current = item;
+        AttributeValue nested = null;
+        for (final String part : name.split(PATH_SEPARATOR)) {
+            if (current == null) {
+                return null;
+            }
+            nested = current.get(part);
+            current = nested == null ? null : nested.getM();
+        }
+        return nested;
+    }
+
+    /**
+     * Compares the strings the way DynamoDB orders them, i.e. by their UTF-8 bytes as unsigned, unlike
+     * {@link String#compareTo(String)} comparing the UTF-16 code units. The UTF-8 bytes order is the order of the
+     * code points, so they are compared instead, without encoding the strings.
+     */
+    static int compareUtf8(final String s1, final String s2) {
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < s1.length() && i2 < s2.length()) {
+            final int c1 = s1.codePointAt(i1);
+            final int c2 = s2.codePointAt(i2);
+            if (c1 != c2) {
+                return Integer.compare(c1, c2);
+            }
+            i1 += Character.charCount(c1);
+            i2 += Character.charCount(c2);
+        }
+        return Integer.compare(s1.length() - i1, s2.length() - i2);
+    }
+
+    /**
+     * Key of the string or number value to match the equal values, so {@code 1} and {@code 1.0} numbers are equal,
+     * but never equal to the {@code '1'} string. Returns {@code null} for the other types.
+     */
+    static String keyOf(final AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getS() != null) {
+            return "S" + value.getS();
+        }
+        if (value.getN() != null) {
+            return "N" + new BigDecimal(value.getN()).stripTrailingZeros().toPlainString();
+        }
+        return null;
+    }
+
+    /**
+     * Key of the primary key (or any other attributes) to match the equal keys, the values are compared as by
+     * {@link #keyOf(AttributeValue)}, ex. {@code N "1.0"} and {@code N "1"} keys are equal.
+     */
+    static Map<String, String> keyOf(final Map<String, AttributeValue> key) {
+        final Map<String, String> result = new HashMap<>(key.size() * 2);
+        key.forEach((name, value) -> result.put(name, keyOf(value)));
+        return result;
+    }
+
+    /**
+     * SQL literal of the string or number value, i.e. {@code 'text'} or {@code 1.5}. Returns {@code null} for the
+     * other types.
+     */
+    static String literalOf(final AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getS() != null) {
+            return SINGLE_QUOTE + value.getS() + SINGLE_QUOTE;
+        }
+        return value.getN();
+    }
+}
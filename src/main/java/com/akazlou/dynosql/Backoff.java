@@ -0,0 +1,19 @@
+package com.akazlou.dynosql;
+
+/**
+ * Exponential backoff between the retries of the unprocessed keys or items of the batch requests.
+ */
+final class Backoff {
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    private Backoff() {
+    }
+
+    /**
+     * Sleeps before the {@code attempt}, unless the query of the {@code handle} is cancelled or has timed out.
+     */
+    static void sleep(final int attempt, final QueryHandle handle, final String message) {
+        handle.sleep(Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 16)), message);
+    }
+}
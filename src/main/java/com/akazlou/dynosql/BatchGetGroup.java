@@ -0,0 +1,141 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+/**
+ * Point lookups ({@code GET} plans) of the same table with the same projection, merged into the single
+ * {@code BatchGetItem} plan, so the keys of the different statements share the DynamoDB calls.
+ *
+ * <p>Only the lookups which select all the primary key attributes can be merged, as the returned items are matched
+ * back to the statements by their primary key. The keys are matched by their values, so ex. {@code id = 1.0} and
+ * {@code id = 1} statements fetch the same item once.</p>
+ */
+final class BatchGetGroup {
+    private static final String ALL_COLUMNS = "*";
+
+    private final TableMetadata table;
+    private final KeysAndAttributes template;
+    private final List<QueryExecution> executions = new ArrayList<>();
+
+    private BatchGetGroup(final TableMetadata table, final KeysAndAttributes template) {
+        this.table = table;
+        this.template = template;
+    }
+
+    /**
+     * Groups the mergeable executions by the table, projection and read consistency, every other execution forms its
+     * own group. The order of the groups follows the order of the first execution in them.
+     */
+    static Map<Object, List<QueryExecution>> group(final List<QueryExecution> executions) {
+        final Map<Object, List<QueryExecution>> groups = new LinkedHashMap<>();
+        for (final QueryExecution execution : executions) {
+            final Object key = isMergeable(execution) ? new Key(execution.getPlan()) : execution;
+            groups.computeIfAbsent(key, ignored -> new ArrayList<>()).add(execution);
+        }
+        return groups;
+    }
+
+    static BatchGetGroup of(final List<QueryExecution> executions) {
+        final QueryExecution first = executions.get(0);
+        final BatchGetGroup group = new BatchGetGroup(first.getTable(), first.getPlan().getKeys());
+        group.executions.addAll(executions);
+        return group;
+    }
+
+    static boolean isMergeable(final QueryExecution execution) {
+        final QueryPlan plan = execution.getPlan();
+        if (plan == null
+                || plan.getOperation() != QueryPlan.Operation.GET
+                || execution.getQuery().getExplain().isPresent()
+                || execution.getQuery().isSorted()) {
+            return false;
+        }
+        final Set<String> columns = new HashSet<>();
+        execution.getQuery().getColumns().forEach(column -> columns.add(column.getName()));
+        return columns.contains(ALL_COLUMNS) || columns.containsAll(execution.getTable().getPrimaryKey().getKeyAttributes());
+    }
+
+    List<QueryExecution> getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Plan fetching all the distinct keys of all the executions.
+     */
+    QueryPlan toPlan() {
+        // BatchGetItem rejects the duplicate keys, even if they are written differently
+        final Map<Map<String, String>, Map<String, AttributeValue>> keys = new LinkedHashMap<>();
+        for (final QueryExecution execution : executions) {
+            for (final Map<String, AttributeValue> key : execution.getPlan().getKeys().getKeys()) {
+                keys.putIfAbsent(Attributes.keyOf(key), key);
+            }
+        }
+        return QueryPlan.get(table.getTableName(), template.clone().withKeys(new ArrayList<>(keys.values())));
+    }
+
+    /**
+     * Splits the fetched items back per execution, in the order of the executions.
+     */
+    List<List<Map<String, AttributeValue>>> split(final List<Map<String, AttributeValue>> items) {
+        final Map<Map<String, String>, Map<String, AttributeValue>> itemsByKey = new HashMap<>();
+        for (final Map<String, AttributeValue> item : items) {
+            itemsByKey.put(Attributes.keyOf(table.getPrimaryKey().keyOf(item)), item);
+        }
+        final List<List<Map<String, AttributeValue>>> result = new ArrayList<>(executions.size());
+        for (final QueryExecution execution : executions) {
+            final List<Map<String, AttributeValue>> matched = new ArrayList<>();
+            for (final Map<String, AttributeValue> key : execution.getPlan().getKeys().getKeys()) {
+                final Map<String, AttributeValue> item = itemsByKey.get(Attributes.keyOf(key));
+                if (item != null) {
+                    matched.add(item);
+                }
+            }
+            result.add(matched);
+        }
+        return result;
+    }
+
+    private static final class Key {
+        private final String tableName;
+        private final String projectionExpression;
+        private final Map<String, String> names;
+        private final boolean consistentRead;
+
+        private Key(final QueryPlan plan) {
+            this.tableName = plan.getTableName();
+            this.projectionExpression = plan.getKeys().getProjectionExpression();
+            this.names = plan.getKeys().getExpressionAttributeNames();
+            this.consistentRead = plan.isConsistentRead();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(tableName, key.tableName)
+                    && Objects.equals(projectionExpression, key.projectionExpression)
+                    && Objects.equals(names, key.names)
+                    && consistentRead == key.consistentRead;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, projectionExpression, names, consistentRead);
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.akazlou.dynosql;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Maps DynamoDB attribute maps directly into the instances of the domain class.
+ *
+ * <p>Mapper is generated once per class, using either the public no-args constructor and the setters, or the public
+ * constructor which parameter names are available at runtime (i.e. class compiled with {@code -parameters}). Both the
+ * constructor and the setters are linked through {@link LambdaMetafactory}, if the class is visible from this class
+ * loader, otherwise the plain {@link MethodHandle}-s are used. So there is no reflection on the hot path.</p>
+ *
+ * <p>The overloaded setters of the same property are resolved by the type of the getter, the class without the
+ * matching getter is rejected, as the order of the setters is unspecified.</p>
+ */
+final class BeanMapper<T> {
+    private static final ClassValue<BeanMapper<?>> MAPPERS = new ClassValue<BeanMapper<?>>() {
+        @Override
+        protected BeanMapper<?> computeValue(final Class<?> type) {
+            return new BeanMapper<>(type);
+        }
+    };
+
+    private static final String SETTER_PREFIX = "set";
+    private static final String[] GETTER_PREFIXES = {"get", "is"};
+    // Bindings are cached per the distinct column aliases, up to the limit, so ad-hoc queries don't grow the cache
+    private static final int MAX_BINDINGS = 256;
+
+    private final Class<T> type;
+    private final Instantiator<T> instantiator;
+    private final Map<String, Property> properties;
+    private final Function<Map<String, AttributeValue>, T> unaliased;
+    private final ConcurrentMap<Map<String, String>, Function<Map<String, AttributeValue>, T>> bindings =
+            new ConcurrentHashMap<>();
+
+    private BeanMapper(final Class<T> type) {
+        this.type = type;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final Optional<Constructor<?>> noArgs = Arrays.stream(type.getConstructors())
+                .filter(constructor -> constructor.getParameterCount() == 0)
+                .findFirst();
+        if (noArgs.isPresent()) {
+            final Supplier<T> supplier = linkConstructor(lookup, noArgs.get());
+            final Map<String, List<Method>> overloads = new HashMap<>();
+            for (final Method method : type.getMethods()) {
+                if (isSetter(method)) {
+                    overloads.computeIfAbsent(propertyName(method), ignored -> new ArrayList<>()).add(method);
+                }
+            }
+            final Map<String, Property> setters = new HashMap<>();
+            overloads.forEach((name, methods) -> {
+                final Method method = resolveSetter(type, name, methods);
+                setters.put(name, new Property(
+                        name, -1, linkSetter(lookup, method), converter(method.getParameterTypes()[0])));
+            });
+            this.properties = Collections.unmodifiableMap(setters);
+            this.instantiator = new SetterInstantiator<>(supplier);
+        } else {
+            final Constructor<?> constructor = Arrays.stream(type.getConstructors())
+                    .filter(candidate -> Arrays.stream(candidate.getParameters()).allMatch(Parameter::isNamePresent))
+                    .max((c1, c2) -> Integer.compare(c1.getParameterCount(), c2.getParameterCount()))
+                    .orElseThrow(() -> new IllegalArgumentException(String.format(
+                            "Class %s must have either public no-args constructor or the public constructor with "
+                                    + "the parameter names available (compiled with -parameters)",
+                            type.getName())));
+            final Parameter[] parameters = constructor.getParameters();
+            final Map<String, Property> arguments = new HashMap<>();
+            for (int i = 0; i < parameters.length; i++) {
+                final String name = parameters[i].getName();
+                arguments.put(name, new Property(name, i, null, converter(parameters[i].getType())));
+            }
+            this.properties = Collections.unmodifiableMap(arguments);
+            this.instantiator = new ConstructorInstantiator<>(lookup, constructor);
+        }
+        this.unaliased = createBinding(Collections.emptyMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> BeanMapper<T> of(final Class<T> type) {
+        return (BeanMapper<T>) MAPPERS.get(type);
+    }
+
+    /**
+     * Returns the mapping function for the given selected {@code columns}, the column alias (if any) takes precedence
+     * over the column name while resolving the corresponding property.
+     */
+    Function<Map<String, AttributeValue>, T> bind(final List<SQLQuery.Column> columns) {
+        // Only the aliases of the properties change the mapping, the rest of the columns are irrelevant
+        final Map<String, String> aliases = new HashMap<>();
+        for (final SQLQuery.Column column : columns) {
+            column.getAlias()
+                    .filter(properties::containsKey)
+                    .ifPresent(alias -> aliases.put(column.getName(), alias));
+        }
+        if (aliases.isEmpty()) {
+            return unaliased;
+        }
+        final Function<Map<String, AttributeValue>, T> cached = bindings.get(aliases);
+        if (cached != null) {
+            return cached;
+        }
+        final Function<Map<String, AttributeValue>, T> binding = createBinding(aliases);
+        if (bindings.size() < MAX_BINDINGS) {
+            final Function<Map<String, AttributeValue>, T> existing = bindings.putIfAbsent(aliases, binding);
+            return existing == null ? binding : existing;
+        }
+        return binding;
+    }
+
+    private Function<Map<String, AttributeValue>, T> createBinding(final Map<String, String> aliases) {
+        final Map<String, Property> byAttribute = new HashMap<>(properties);
+        aliases.values().forEach(byAttribute::remove);
+        aliases.forEach((name, alias) -> byAttribute.put(name, properties.get(alias)));
+        return attributes -> instantiator.instantiate(attributes, byAttribute);
+    }
+
+    private static boolean isSetter(final Method method) {
+        return !Modifier.isStatic(method.getModifiers())
+                && !method.isBridge()
+                && method.getParameterCount() == 1
+                && method.getName().length() > SETTER_PREFIX.length()
+                && method.getName().startsWith(SETTER_PREFIX);
+    }
+
+    private static String propertyName(final Method method) {
+        final String name = method.getName().substring(SETTER_PREFIX.length());
+        return name.substring(0, 1).toLowerCase(Locale.ROOT) + name.substring(1);
+    }
+
+    /**
+     * Picks the setter of the {@code property} which parameter type matches the type of the getter, if the setter is
+     * overloaded.
+     *
+     * @throws IllegalArgumentException if the setter is overloaded, but none of them matches the getter
+     */
+    private static Method resolveSetter(final Class<?> type, final String property, final List<Method> setters) {
+        if (setters.size() == 1) {
+            return setters.get(0);
+        }
+        final String suffix = setters.get(0).getName().substring(SETTER_PREFIX.length());
+        for (final String prefix : GETTER_PREFIXES) {
+            final Optional<Method> setter = getter(type, prefix + suffix).flatMap(getter -> setters.stream()
+                    .filter(candidate -> candidate.getParameterTypes()[0] == getter.getReturnType())
+                    .findFirst());
+            if (setter.isPresent()) {
+                return setter.get();
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                "Property %s of the class %s has the overloaded setters %s and none of them matches the getter",
+                property, type.getName(), setters));
+    }
+
+    private static Optional<Method> getter(final Class<?> type, final String name) {
+        try {
+            return Optional.of(type.getMethod(name));
+        } catch (final NoSuchMethodException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> linkConstructor(final MethodHandles.Lookup lookup, final Constructor<?> constructor) {
+        final MethodHandle handle;
+        try {
+            handle = lookup.unreflectConstructor(constructor);
+        } catch (final IllegalAccessException ex) {
+            throw new IllegalArgumentException(
+                    String.format("Constructor %s is not accessible", constructor), ex);
+        }
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "get",
+                    methodType(Supplier.class),
+                    methodType(Object.class),
+                    handle,
+                    handle.type());
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (final Throwable ex) {
+            // Class is not visible from this class loader, so fall back to the method handle
+            final MethodHandle generic = handle.asType(methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) generic.invokeExact();
+                } catch (final Throwable t) {
+                    throw new IllegalStateException(
+                            String.format("Failed to instantiate %s", constructor.getDeclaringClass()), t);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> linkSetter(final MethodHandles.Lookup lookup, final Method method) {
+        final MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (final IllegalAccessException ex) {
+            throw new IllegalArgumentException(String.format("Setter %s is not accessible", method), ex);
+        }
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "accept",
+                    methodType(BiConsumer.class),
+                    methodType(void.class, Object.class, Object.class),
+                    handle,
+                    methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) site.getTarget().invoke();
+        } catch (final Throwable ex) {
+            // Class is not visible from this class loader, so fall back to the method handle
+            final MethodHandle generic = handle.asType(methodType(void.class, Object.class, Object.class));
+            return (bean, value) -> {
+                try {
+                    generic.invokeExact(bean, value);
+                } catch (final Throwable t) {
+                    throw new IllegalStateException(String.format("Failed to call setter %s", method), t);
+                }
+            };
+        }
+    }
+
+    private static Class<?> wrap(final Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<AttributeValue, Object> converter(final Class<?> type) {
+        if (type == String.class) {
+            return value -> value.getS() != null ? value.getS() : value.getN();
+        }
+        if (type == int.class || type == Integer.class) {
+            return value -> Integer.valueOf(value.getN());
+        }
+        if (type == long.class || type == Long.class) {
+            return value -> Long.valueOf(value.getN());
+        }
+        if (type == double.class || type == Double.class) {
+            return value -> Double.valueOf(value.getN());
+        }
+        if (type == float.class || type == Float.class) {
+            return value -> Float.valueOf(value.getN());
+        }
+        if (type == short.class || type == Short.class) {
+            return value -> Short.valueOf(value.getN());
+        }
+        if (type == byte.class || type == Byte.class) {
+            return value -> Byte.valueOf(value.getN());
+        }
+        if (type == BigDecimal.class || type == Number.class) {
+            return value -> new BigDecimal(value.getN());
+        }
+        if (type == BigInteger.class) {
+            return value -> new BigInteger(value.getN());
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return AttributeValue::getBOOL;
+        }
+        if (type == ByteBuffer.class) {
+            return value -> value.getB().asReadOnlyBuffer();
+        }
+        if (type == byte[].class) {
+            return value -> {
+                final ByteBuffer buffer = value.getB().duplicate();
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            };
+        }
+        if (type.isEnum()) {
+            return value -> Enum.valueOf((Class<? extends Enum>) type, value.getS());
+        }
+        return ItemUtils::toSimpleValue;
+    }
+
+    private static final class Property {
+        private final String name;
+        private final int index;
+        private final BiConsumer<Object, Object> setter;
+        private final Function<AttributeValue, Object> converter;
+
+        Property(final String name,
+                 final int index,
+                 final BiConsumer<Object, Object> setter,
+                 final Function<AttributeValue, Object> converter) {
+            this.name = name;
+            this.index = index;
+            this.setter = setter;
+            this.converter = converter;
+        }
+
+        Object convert(final AttributeValue value) {
+            if (Boolean.TRUE.equals(value.getNULL())) {
+                return null;
+            }
+            try {
+                return converter.apply(value);
+            } catch (final RuntimeException ex) {
+                throw new IllegalArgumentException(
+                        String.format("Could not convert value %s of the property %s", value, name), ex);
+            }
+        }
+    }
+
+    private interface Instantiator<T> {
+        T instantiate(Map<String, AttributeValue> attributes, Map<String, Property> properties);
+    }
+
+    private static final class SetterInstantiator<T> implements Instantiator<T> {
+        private final Supplier<T> supplier;
+
+        SetterInstantiator(final Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public T instantiate(final Map<String, AttributeValue> attributes, final Map<String, Property> properties) {
+            final T bean = supplier.get();
+            for (final Map.Entry<String, AttributeValue> entry : attributes.entrySet()) {
+                final Property property = properties.get(entry.getKey());
+                if (property != null) {
+                    final Object value = property.convert(entry.getValue());
+                    if (value != null) {
+                        property.setter.accept(bean, value);
+                    }
+                }
+            }
+            return bean;
+        }
+    }
+
+    private static final class ConstructorInstantiator<T> implements Instantiator<T> {
+        private final Constructor<?> constructor;
+        private final MethodHandle handle;
+        private final Object[] defaults;
+
+        ConstructorInstantiator(final MethodHandles.Lookup lookup, final Constructor<?> constructor) {
+            this.constructor = constructor;
+            try {
+                this.handle = lookup.unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, constructor.getParameterCount())
+                        .asType(methodType(Object.class, Object[].class));
+            } catch (final IllegalAccessException ex) {
+                throw new IllegalArgumentException(
+                        String.format("Constructor %s is not accessible", constructor), ex);
+            }
+            this.defaults = Arrays.stream(constructor.getParameterTypes())
+                    .map(ConstructorInstantiator::defaultValue)
+                    .toArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T instantiate(final Map<String, AttributeValue> attributes, final Map<String, Property> properties) {
+            final Object[] args = defaults.clone();
+            for (final Map.Entry<String, AttributeValue> entry : attributes.entrySet()) {
+                final Property property = properties.get(entry.getKey());
+                if (property != null) {
+                    final Object value = property.convert(entry.getValue());
+                    if (value != null) {
+                        args[property.index] = value;
+                    }
+                }
+            }
+            try {
+                return (T) handle.invokeExact(args);
+            } catch (final Throwable ex) {
+                throw new IllegalStateException(
+                        String.format("Failed to instantiate %s", constructor.getDeclaringClass()), ex);
+            }
+        }
+
+        private static Object defaultValue(final Class<?> type) {
+            if (!type.isPrimitive()) {
+                return null;
+            }
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == char.class) {
+                return '\0';
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            if (type == double.class) {
+                return 0D;
+            }
+            if (type == float.class) {
+                return 0F;
+            }
+            if (type == short.class) {
+                return (short) 0;
+            }
+            if (type == byte.class) {
+                return (byte) 0;
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BeanMapper[%s]", type.getName());
+    }
+}
@@ -0,0 +1,46 @@
+package com.akazlou.dynosql;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Pool of the direct byte buffers of the same size, as the allocation of the direct buffer is expensive and its
+ * memory is released only by GC.
+ *
+ * <p>Pool never blocks, if it is empty the new buffer is allocated, and the released buffer is dropped if the pool is
+ * already full.</p>
+ */
+@ThreadSafe
+final class BufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    BufferPool(final int bufferSize, final int capacity) {
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+    }
+
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        size.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(final ByteBuffer buffer) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+}
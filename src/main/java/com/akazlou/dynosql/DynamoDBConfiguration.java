@@ -4,7 +4,6 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
-import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 
 class DynamoDBConfiguration {
     private final DynamoDBEnvironment dynamoDBEnvironment;
@@ -16,12 +15,11 @@ class DynamoDBConfiguration {
         this.awsCredentialsProvider = awsCredentialsProvider;
     }
 
-    public DynamoDB createClient() {
-        final AmazonDynamoDB amazonDynamoDB = AmazonDynamoDBClient.builder()
+    public AmazonDynamoDB createClient() {
+        return AmazonDynamoDBClient.builder()
                 .withCredentials(awsCredentialsProvider)
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
                         dynamoDBEnvironment.getEndpoint(), dynamoDBEnvironment.getRegion().getName()))
                 .build();
-        return new DynamoDB(amazonDynamoDB);
     }
 }
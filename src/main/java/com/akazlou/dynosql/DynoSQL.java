@@ -2,25 +2,27 @@ package com.akazlou.dynosql;
 
 import static java.util.stream.Collectors.toList;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import com.amazonaws.annotation.ThreadSafe;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.regions.Region;
-import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
-import com.amazonaws.services.dynamodbv2.document.Table;
-import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
-import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
-import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
-import com.amazonaws.services.dynamodbv2.model.TableDescription;
-import com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
 /**
  * Entry point for executing the SQL queries against DynamoDB.
@@ -35,50 +37,119 @@ import com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder;
 @ThreadSafe
 public class DynoSQL {
     private static final Logger logger = Logger.getLogger(DynoSQL.class.getName());
+    private static final String ALL_COLUMNS = "*";
+    private static final int DEFAULT_MAX_CONCURRENCY = 16;
+    private static final long DEFAULT_SORT_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final long MAX_SORT_MEMORY_BYTES = 1024L * 1024 * 1024;
 
-    private final DynamoDB dynamoDB;
+    private final AmazonDynamoDB client;
     private final SQLParser parser;
+    private final TableCatalog catalog;
+    private final QueryPlanner planner;
+    private final QueryExecutor executor;
+    private final WritePlanner writePlanner;
+    private final WriteExecutor writer;
+    private final JoinPlanner joinPlanner;
+    private final JoinExecutor joinExecutor;
+    private final ResultExporter exporter;
+    private final PageReader pageReader;
+    private final QueryExplainer explainer;
+    private final List<QueryListener> listeners;
+    private final SlowQueryLog slowQueryLog;
+    private final TaskExecutor taskExecutor;
+    private final boolean ownsTaskExecutor;
+    private final SingleFlight<QueryPlan, List<Map<String, AttributeValue>>> singleFlight;
+    private final long sortMemoryBytes;
+    private final Path spillDirectory;
+    private final long queryTimeoutMillis;
 
     public DynoSQL(final Region region) {
-        dynamoDB = new DynamoDBConfiguration(new DynamoDBEnvironment(region), new DefaultAWSCredentialsProviderChain())
+        this(builder().withRegion(region));
+    }
+
+    private DynoSQL(final Builder builder) {
+        client = builder.client != null
+                ? builder.client
+                : new DynamoDBConfiguration(
+                new DynamoDBEnvironment(builder.region), new DefaultAWSCredentialsProviderChain())
                 .createClient();
         parser = new SQLParser();
+        catalog = new TableCatalog(client);
+        ownsTaskExecutor = builder.taskExecutor == null;
+        taskExecutor = ownsTaskExecutor ? TaskExecutor.platform(builder.maxConcurrency) : builder.taskExecutor;
+        planner = new QueryPlanner(builder.scanSegments);
+        executor = new QueryExecutor(client, taskExecutor);
+        writePlanner = new WritePlanner(planner);
+        writer = new WriteExecutor(client, taskExecutor, executor);
+        joinPlanner = new JoinPlanner(planner);
+        joinExecutor = new JoinExecutor(planner, executor, taskExecutor);
+        exporter = new ResultExporter(executor, builder.maxConcurrency);
+        pageReader = new PageReader(executor, taskExecutor);
+        explainer = new QueryExplainer();
+        slowQueryLog = builder.slowQueryLatencyMillis < 0
+                ? null
+                : new SlowQueryLog(builder.slowQueryLatencyMillis, builder.slowQueryCapacity);
+        final List<QueryListener> listeners = new ArrayList<>(builder.listeners);
+        if (slowQueryLog != null) {
+            listeners.add(slowQueryLog);
+        }
+        this.listeners = Collections.unmodifiableList(listeners);
+        singleFlight = builder.coalescing ? new SingleFlight<>() : null;
+        sortMemoryBytes = builder.sortMemoryBytes;
+        spillDirectory = builder.spillDirectory;
+        queryTimeoutMillis = builder.queryTimeoutMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
      * Closes and releases all acquired resources.
      */
     public void close() {
-        dynamoDB.shutdown();
+        if (ownsTaskExecutor) {
+            taskExecutor.close();
+        }
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+        }
+        client.shutdown();
     }
 
     /**
      * Runs the corresponding {@code sql} query and returns the list of {@link Item}-s matching the query.
+     *
+     * <p>If the query is prefixed with {@code EXPLAIN} the single item describing the chosen plan and its estimated
+     * read capacity is returned instead, and the query itself is not executed. {@code EXPLAIN ANALYZE} executes the
+     * query, discards the result and adds the actual calls, pages, scanned and returned counts, consumed capacity and
+     * the execution time.</p>
+     *
+     * <p>{@code SELECT ... FROM T1 [AS] a JOIN T2 [AS] b ON a.x = b.y} joins two tables on the client side, all the
+     * columns and conditions must be qualified by the table alias (or name). If the join column of either table is
+     * the HASH key of the table or of the index, the index nested-loop join looks the batches of the other table
+     * values up by {@code BatchGetItem} or {@code Query}. Otherwise both tables are read and hash joined, keeping the
+     * smaller table in memory. See {@link JoinPlanner}.</p>
+     *
+     * <p>{@code WHERE column IN (SELECT column FROM ...)} (once per query, ANDed with the rest of the conditions) reads
+     * the subquery and looks its distinct values up in the batches of 100 by {@code BatchGetItem} or {@code Query} if
+     * the column is the HASH key of the table or of the index, while the subquery is still being read. Otherwise the
+     * table is read once all the subquery values are known, and filtered by them.</p>
      */
     public List<Item> query(final String sql) {
-        final Optional<SQLQuery> result = parser.parse(sql);
-        if (!result.isPresent()) {
-            logger.warning(String.format("Was not able to parse SQL query %s", sql));
-            return Collections.emptyList();
-        }
-        final SQLQuery query = result.get();
-        final Table table = dynamoDB.getTable(query.getTableName());
-        final ExpressionSpecBuilder builder = new ExpressionSpecBuilder();
-        // TODO: Cache, but should be concurrently safe, i.e. ConcurrentHashMap
-        final TableDescription description = table.getDescription();
-        final Map<String, List<AttributeDefinition>> definitions = description.getAttributeDefinitions().stream()
-                .collect(Collectors.groupingBy(AttributeDefinition::getAttributeName));
-        final List<KeySchemaElement> schema = description.getKeySchema();
-        final String hashName = schema.get(0).getAttributeName();
-        final Optional<SQLQuery.Expr> conditions = query.getConditions();
-        if (!conditions.isPresent()) {
-            logger.warning(String.format("No HASH key %s in the WHERE clause of the SQL query %s", hashName, query));
-            return Collections.emptyList();
-        }
-        final SQLQuery.Expr expr = conditions.get();
-        new QuerySpec().withExpressionSpec(builder.buildForQuery());
-        // TODO: Implement
-        return Collections.emptyList();
+        return execute(sql, () -> parser.parse(sql), columns -> ItemUtils::toItem, null);
+    }
+
+    /**
+     * Runs the {@code sql} query the same way as {@link #query(String)} does, until it is done or the {@code handle}
+     * is cancelled or times out, whichever comes first. The handle replaces the
+     * {@link Builder#withQueryTimeout(long)}, and the query is not coalesced with the other queries.
+     *
+     * @throws com.amazonaws.AbortedException if the handle is cancelled
+     * @throws com.amazonaws.http.timers.client.ClientExecutionTimeoutException if the handle times out
+     */
+    public List<Item> query(final String sql, final QueryHandle handle) {
+        return execute(sql, () -> parser.parse(sql), columns -> ItemUtils::toItem, handle);
     }
 
     /**
@@ -90,4 +161,689 @@ public class DynoSQL {
                 .map(mapper)
                 .collect(Collectors.collectingAndThen(toList(), Collections::unmodifiableList));
     }
+
+    /**
+     * Runs the corresponding {@code sql} query and returns the list of instances of the {@code type} matching the
+     * query.
+     *
+     * <p>Values are read directly from the DynamoDB response, and set either through the setters (if {@code type} has
+     * public no-args constructor) or passed into the public constructor (if {@code type} is compiled with
+     * {@code -parameters}). The selected column alias, ex. {@code select user_id as userId from T}, takes precedence
+     * over the attribute name while resolving the property. The mapper is generated once per {@code type}.</p>
+     */
+    public <T> List<T> query(final String sql, final Class<T> type) {
+        return execute(sql, () -> parser.parse(sql), BeanMapper.of(type)::bind, null);
+    }
+
+    /**
+     * Parses the {@code sql} query with the {@code ?} placeholders for the values, see {@link PreparedQuery}.
+     *
+     * @throws IllegalArgumentException if the query could not be parsed
+     */
+    public PreparedQuery prepare(final String sql) {
+        return PreparedQuery.prepare(sql, parser);
+    }
+
+    /**
+     * Runs the prepared query with the bound values and returns the list of {@link Item}-s matching the query.
+     */
+    public List<Item> query(final PreparedQuery query) {
+        return execute(query.getSql(), () -> Optional.of(query.toQuery()), columns -> ItemUtils::toItem, null);
+    }
+
+    /**
+     * Runs the prepared query with the bound values under the {@code handle}, see
+     * {@link #query(String, QueryHandle)}.
+     */
+    public List<Item> query(final PreparedQuery query, final QueryHandle handle) {
+        return execute(query.getSql(), () -> Optional.of(query.toQuery()), columns -> ItemUtils::toItem, handle);
+    }
+
+    /**
+     * Runs the {@code sql} query and returns the single page of up to {@code pageSize} {@link Item}-s, starting from
+     * the {@code cursor} of the previous page (or from the beginning if it is {@code null}).
+     *
+     * <p>The cursor encodes the {@code LastEvaluatedKey} of every partition or parallel scan segment, so the next page
+     * continues exactly where the previous one has stopped, reading only the items of the page. Every partition or
+     * parallel scan segment is called at most once per page, evaluating at most {@code pageSize} items, so the work
+     * of the single page is bounded, but the page could be smaller than {@code pageSize} (or even empty) while there
+     * are more items, as DynamoDB limits the evaluated items, before the filter expression is applied. The
+     * cursor is valid for the same query only, i.e. the same SQL and the same
+     * {@link Builder#withScanParallelism(int)}.</p>
+     *
+     * @throws IllegalArgumentException if the query is not {@code SELECT}, or {@code EXPLAIN}, or sorted on the
+     *                                  client side ({@code ORDER BY} or {@code DISTINCT}), or {@code JOIN}, or has
+     *                                  {@code IN (SELECT ...)}, or the cursor doesn't belong to the query
+     */
+    public Page<Item> queryPage(final String sql, final int pageSize, final String cursor) {
+        return page(sql, () -> parser.parse(sql), pageSize, cursor);
+    }
+
+    /**
+     * Runs the prepared query with the bound values and returns the single page, see
+     * {@link #queryPage(String, int, String)}.
+     */
+    public Page<Item> queryPage(final PreparedQuery query, final int pageSize, final String cursor) {
+        return page(query.getSql(), () -> Optional.of(query.toQuery()), pageSize, cursor);
+    }
+
+    /**
+     * Runs all the {@code sqls} queries concurrently and returns the list of the results in the order of the queries.
+     *
+     * <p>Queries run on the {@link TaskExecutor}, so at most {@link Builder#withMaxConcurrency(int)} queries run at the
+     * same time on the default executor (shared across all the callers), plus the calling thread.
+     * Point lookups of the same table (i.e. queries fully binding the primary key by {@code =} or {@code IN}), which
+     * select the whole primary key, are merged into the shared {@code BatchGetItem} calls. If any of the queries fails,
+     * the first failure is thrown once all the queries are done.</p>
+     */
+    public List<List<Item>> queryAll(final List<String> sqls) {
+        final List<QueryExecution> executions = new ArrayList<>(sqls.size());
+        final List<Supplier<Optional<SQLQuery>>> parsers = new ArrayList<>(sqls.size());
+        for (final String sql : sqls) {
+            executions.add(new QueryExecution(sql, QueryHandle.of(queryTimeoutMillis)));
+            parsers.add(() -> parser.parse(sql));
+        }
+        return executeAll(executions, parsers);
+    }
+
+    /**
+     * Runs all the prepared queries concurrently, the same way as {@link #queryAll(List)} does.
+     */
+    public List<List<Item>> queryAllPrepared(final List<PreparedQuery> queries) {
+        final List<QueryExecution> executions = new ArrayList<>(queries.size());
+        final List<Supplier<Optional<SQLQuery>>> parsers = new ArrayList<>(queries.size());
+        for (final PreparedQuery query : queries) {
+            executions.add(new QueryExecution(query.getSql(), QueryHandle.of(queryTimeoutMillis)));
+            parsers.add(() -> Optional.of(query.toQuery()));
+        }
+        return executeAll(executions, parsers);
+    }
+
+    /**
+     * Runs the {@code sql} query and streams the result into the {@code target} file in the {@code format}, replacing
+     * the file if it exists, and returns the number of the exported items.
+     *
+     * <p>Unlike {@link #query(String)} the items are not accumulated in memory, every page is written to the file as
+     * soon as it is read. The parallel scan segments (see {@link Builder#withScanParallelism(int)}), partitions and
+     * batches are written concurrently into the separate part files next to the {@code target}, which are merged into
+     * the {@code target} in the order of the segments once the query is done. So the same query always exports the
+     * same items in the same order, as long as the table doesn't change.</p>
+     *
+     * @throws IllegalArgumentException     if the query is not {@code SELECT}, or {@code EXPLAIN}, or {@code JOIN},
+     *                                      or has {@code IN (SELECT ...)}, or selects {@code *} in
+     *                                      {@link ExportFormat#CSV}
+     * @throws java.io.UncheckedIOException if the file could not be written
+     */
+    public long export(final String sql, final Path target, final ExportFormat format) {
+        return export(sql, target, format, QueryHandle.of(queryTimeoutMillis));
+    }
+
+    /**
+     * Exports the {@code sql} query result the same way as {@link #export(String, Path, ExportFormat)} does, until it
+     * is done or the {@code handle} is cancelled or times out, whichever comes first. The part files of the aborted
+     * export are deleted, while the {@code target} is left as is.
+     *
+     * @throws com.amazonaws.AbortedException if the handle is cancelled
+     * @throws com.amazonaws.http.timers.client.ClientExecutionTimeoutException if the handle times out
+     */
+    public long export(final String sql, final Path target, final ExportFormat format, final QueryHandle handle) {
+        final QueryExecution execution = new QueryExecution(sql, handle);
+        try {
+            if (!plan(execution, () -> parser.parse(sql))) {
+                return 0;
+            }
+            final SQLQuery query = execution.getQuery();
+            if (query.getExplain().isPresent()) {
+                throw new IllegalArgumentException(String.format("Query %s is EXPLAIN, it can't be exported", sql));
+            }
+            if (execution.getJoinPlan() != null || execution.getSemiJoinPlan() != null) {
+                throw new IllegalArgumentException(
+                        String.format("Query %s is JOIN or has IN (SELECT ...), it can't be exported", sql));
+            }
+            final long exported;
+            if (query.isSorted()) {
+                try (ExternalSort sort = ExternalSort.of(query, sortMemoryBytes, spillDirectory)) {
+                    exported = exporter.export(
+                            execution.getPlan(), query.getColumns(), target, format, execution.getStats(), sort);
+                }
+            } else {
+                exported = exporter.export(
+                        execution.getPlan(), query.getColumns(), target, format, execution.getStats(), null);
+            }
+            report(execution, null);
+            return exported;
+        } catch (final RuntimeException ex) {
+            report(execution, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs the {@code INSERT}, {@code UPDATE} or {@code DELETE} query and returns the number of the written items.
+     *
+     * <p>{@code INSERT INTO T (columns) VALUES (values), ...} puts (i.e. replaces) the items, {@code NULL} values are
+     * skipped. {@code UPDATE T SET column = value, ... WHERE ...} updates the existing items only, and
+     * {@code SET column = NULL} removes the attribute. {@code DELETE FROM T WHERE ...} deletes the items. If the WHERE
+     * conditions don't bind the whole primary key by {@code =} or {@code IN}, the keys are read first by the
+     * {@code Query} or {@code Scan}, which is the same plan as for the corresponding {@code SELECT}.</p>
+     *
+     * <p>Puts and deletes are sent in the {@code BatchWriteItem} calls of up to 25 items, updates as the separate
+     * {@code UpdateItem} calls, running concurrently on the {@link TaskExecutor}. The writes are not atomic, if any of
+     * the calls fails the items written so far are kept. The number of the deleted items by {@code BatchWriteItem}
+     * counts all the requested keys, as DynamoDB doesn't tell whether the item existed.</p>
+     *
+     * @throws IllegalArgumentException if the query is {@code SELECT}, or doesn't set the primary key on
+     *                                  {@code INSERT}, or changes the primary key on {@code UPDATE}
+     */
+    public int update(final String sql) {
+        return write(sql, () -> parser.parse(sql));
+    }
+
+    /**
+     * Runs the prepared {@code INSERT}, {@code UPDATE} or {@code DELETE} query with the bound values, see
+     * {@link #update(String)}.
+     */
+    public int update(final PreparedQuery query) {
+        return write(query.getSql(), () -> Optional.of(query.toQuery()));
+    }
+
+    private Page<Item> page(final String sql,
+                            final Supplier<Optional<SQLQuery>> parse,
+                            final int pageSize,
+                            final String cursor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        final QueryExecution execution = new QueryExecution(sql, QueryHandle.of(queryTimeoutMillis));
+        try {
+            if (!plan(execution, parse)) {
+                return new Page<>(Collections.emptyList(), null);
+            }
+            final SQLQuery query = execution.getQuery();
+            if (execution.getPlan() == null || query.getExplain().isPresent() || query.isSorted()) {
+                throw new IllegalArgumentException(String.format(
+                        "Query %s is either EXPLAIN, sorted on the client side, JOIN or has IN (SELECT ...), "
+                                + "it can't be paged", sql));
+            }
+            final QueryStats stats = execution.getStats();
+            final Page<Map<String, AttributeValue>> page =
+                    pageReader.read(execution.getPlan(), sql, cursor, pageSize, stats);
+            final List<Item> items = new ArrayList<>(page.getItems().size());
+            for (final Map<String, AttributeValue> item : page.getItems()) {
+                stats.recordResultBytes(ItemSizes.of(item));
+                items.add(ItemUtils.toItem(item));
+            }
+            report(execution, null);
+            return new Page<>(Collections.unmodifiableList(items), page.getCursor().orElse(null));
+        } catch (final RuntimeException ex) {
+            report(execution, ex);
+            throw ex;
+        }
+    }
+
+    private int write(final String sql, final Supplier<Optional<SQLQuery>> parse) {
+        final QueryExecution execution = new QueryExecution(sql, QueryHandle.of(queryTimeoutMillis));
+        try {
+            final Optional<SQLQuery> result = parse.get();
+            if (!result.isPresent()) {
+                execution.parsed(null);
+                logger.warning(String.format("Was not able to parse SQL query %s", sql));
+                report(execution, null);
+                return 0;
+            }
+            final SQLQuery query = result.get();
+            execution.parsed(query);
+            if (query.getType() == SQLQuery.Type.SELECT) {
+                throw new IllegalArgumentException(
+                        String.format("Query %s is SELECT, use query() to run it", sql));
+            }
+            final TableMetadata table = catalog.describe(query.getTableName(), execution.getStats());
+            final WritePlan plan = writePlanner.plan(query, table);
+            execution.planned(table, plan);
+            final long written = writer.execute(plan, table, execution.getStats());
+            report(execution, null);
+            return (int) Math.min(Integer.MAX_VALUE, written);
+        } catch (final RuntimeException ex) {
+            report(execution, ex);
+            throw ex;
+        }
+    }
+
+    private <T> List<T> execute(final String sql,
+                                final Supplier<Optional<SQLQuery>> parse,
+                                final Function<List<SQLQuery.Column>, Function<Map<String, AttributeValue>, T>> mapper,
+                                final QueryHandle handle) {
+        final QueryExecution execution =
+                new QueryExecution(sql, handle == null ? QueryHandle.of(queryTimeoutMillis) : handle);
+        try {
+            if (!plan(execution, parse)) {
+                return Collections.emptyList();
+            }
+            // The query of the caller's handle could be cancelled, which must not fail the coalesced queries
+            final List<T> rows = run(execution, mapper, handle == null);
+            report(execution, null);
+            return rows;
+        } catch (final RuntimeException ex) {
+            report(execution, ex);
+            throw ex;
+        }
+    }
+
+    private List<List<Item>> executeAll(final List<QueryExecution> executions,
+                                        final List<Supplier<Optional<SQLQuery>>> parsers) {
+        final Function<List<SQLQuery.Column>, Function<Map<String, AttributeValue>, Item>> mapper =
+                columns -> ItemUtils::toItem;
+        final List<List<Item>> results = new ArrayList<>(Collections.nCopies(executions.size(), null));
+        final Map<QueryExecution, Integer> positions = new IdentityHashMap<>();
+        final List<Runnable> planning = new ArrayList<>(executions.size());
+        for (int i = 0; i < executions.size(); i++) {
+            final QueryExecution execution = executions.get(i);
+            final Supplier<Optional<SQLQuery>> parse = parsers.get(i);
+            positions.put(execution, i);
+            planning.add(() -> {
+                try {
+                    if (!plan(execution, parse)) {
+                        results.set(positions.get(execution), Collections.emptyList());
+                    }
+                } catch (final RuntimeException ex) {
+                    report(execution, ex);
+                    throw ex;
+                }
+            });
+        }
+        RuntimeException failure = null;
+        try {
+            FanOut.run(taskExecutor, planning);
+        } catch (final RuntimeException ex) {
+            // Still run the successfully planned queries, as their failures are reported independently
+            failure = ex;
+        }
+        final List<QueryExecution> planned = new ArrayList<>(executions.size());
+        for (final QueryExecution execution : executions) {
+            if (execution.isPlanned() && results.get(positions.get(execution)) == null) {
+                planned.add(execution);
+            }
+        }
+        final List<Runnable> running = new ArrayList<>(planned.size());
+        for (final List<QueryExecution> group : BatchGetGroup.group(planned).values()) {
+            if (group.size() == 1) {
+                final QueryExecution execution = group.get(0);
+                running.add(() -> {
+                    try {
+                        results.set(positions.get(execution), run(execution, mapper, true));
+                        report(execution, null);
+                    } catch (final RuntimeException ex) {
+                        report(execution, ex);
+                        throw ex;
+                    }
+                });
+            } else {
+                running.add(() -> runGroup(BatchGetGroup.of(group), positions, results, mapper));
+            }
+        }
+        try {
+            FanOut.run(taskExecutor, running);
+        } catch (final RuntimeException ex) {
+            if (failure == null) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Executes the merged lookups, the calls are accounted in the statistics of the first query of the group.
+     */
+    private <T> void runGroup(final BatchGetGroup group,
+                              final Map<QueryExecution, Integer> positions,
+                              final List<List<T>> results,
+                              final Function<List<SQLQuery.Column>, Function<Map<String, AttributeValue>, T>> mapper) {
+        final List<QueryExecution> executions = group.getExecutions();
+        final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        try {
+            executor.execute(group.toPlan(), executions.get(0).getStats(), items::addAll);
+        } catch (final RuntimeException ex) {
+            executions.forEach(execution -> report(execution, ex));
+            throw ex;
+        }
+        final List<List<Map<String, AttributeValue>>> split = group.split(items);
+        for (int i = 0; i < executions.size(); i++) {
+            final QueryExecution execution = executions.get(i);
+            final Function<Map<String, AttributeValue>, T> rowMapper =
+                    mapper.apply(execution.getQuery().getColumns());
+            final List<T> rows = new ArrayList<>(split.get(i).size());
+            for (final Map<String, AttributeValue> item : split.get(i)) {
+                execution.getStats().recordResultBytes(ItemSizes.of(item));
+                rows.add(rowMapper.apply(item));
+            }
+            results.set(positions.get(execution), Collections.unmodifiableList(rows));
+            report(execution, null);
+        }
+    }
+
+    /**
+     * Parses and plans the query, returns {@code false} if the query could not be parsed.
+     */
+    private boolean plan(final QueryExecution execution, final Supplier<Optional<SQLQuery>> parse) {
+        final Optional<SQLQuery> result = parse.get();
+        if (!result.isPresent()) {
+            execution.parsed(null);
+            logger.warning(String.format("Was not able to parse SQL query %s", execution.getSql()));
+            report(execution, null);
+            return false;
+        }
+        final SQLQuery query = result.get();
+        execution.parsed(query);
+        if (query.getType() != SQLQuery.Type.SELECT) {
+            throw new IllegalArgumentException(
+                    String.format("Query %s is %s, use update() to run it", execution.getSql(), query.getType()));
+        }
+        final TableMetadata table = catalog.describe(query.getTableName(), execution.getStats());
+        if (query.getSemiJoin().isPresent()) {
+            if (query.getJoin().isPresent()) {
+                throw new IllegalArgumentException(String.format(
+                        "Query %s is JOIN, IN (SELECT ...) is not supported with JOIN", execution.getSql()));
+            }
+            final TableMetadata subqueryTable = catalog.describe(
+                    query.getSemiJoin().get().getQuery().getTableName(), execution.getStats());
+            execution.planned(table, joinPlanner.planSemiJoin(query, table, subqueryTable));
+        } else if (query.getJoin().isPresent()) {
+            final TableMetadata joined = catalog.describe(query.getJoin().get().getTableName(), execution.getStats());
+            execution.planned(table, joinPlanner.plan(query, table, joined));
+        } else {
+            execution.planned(table, planner.plan(query, table));
+        }
+        return true;
+    }
+
+    private <T> List<T> run(final QueryExecution execution,
+                            final Function<List<SQLQuery.Column>, Function<Map<String, AttributeValue>, T>> mapper,
+                            final boolean coalesce) {
+        final SQLQuery query = execution.getQuery();
+        final QueryStats stats = execution.getStats();
+        if (execution.getJoinPlan() != null) {
+            return runJoin(execution, mapper);
+        }
+        if (query.getExplain().isPresent()) {
+            return Collections.singletonList(mapper
+                    .apply(Collections.singletonList(new SQLQuery.Column(ALL_COLUMNS)))
+                    .apply(explain(query.getExplain().get(), execution)));
+        }
+        final Function<Map<String, AttributeValue>, T> rowMapper = mapper.apply(query.getColumns());
+        final QueryPlan plan = execution.getPlan();
+        final SemiJoinPlan semiJoinPlan = execution.getSemiJoinPlan();
+        final Consumer<Consumer<List<Map<String, AttributeValue>>>> source = semiJoinPlan == null
+                ? consumer -> executor.execute(plan, stats, consumer)
+                : consumer -> joinExecutor.execute(semiJoinPlan, stats, consumer);
+        final List<T> rows = new ArrayList<>();
+        if (query.isSorted()) {
+            // Not coalesced, as the shared result would keep all the unsorted items in memory
+            try (ExternalSort sort = ExternalSort.of(query, sortMemoryBytes, spillDirectory)) {
+                source.accept(sort::addAll);
+                final List<String> hidden = hiddenAttributes(query);
+                sort.forEach(item -> {
+                    hidden.forEach(item::remove);
+                    stats.recordResultBytes(ItemSizes.of(item));
+                    rows.add(rowMapper.apply(item));
+                });
+            }
+            return Collections.unmodifiableList(rows);
+        }
+        if (singleFlight == null || !coalesce || semiJoinPlan != null || plan.isConsistentRead()) {
+            source.accept(page -> {
+                for (final Map<String, AttributeValue> item : page) {
+                    stats.recordResultBytes(ItemSizes.of(item));
+                    rows.add(rowMapper.apply(item));
+                }
+            });
+            return Collections.unmodifiableList(rows);
+        }
+        final List<Map<String, AttributeValue>> items = singleFlight.execute(plan, () -> {
+            final List<Map<String, AttributeValue>> fetched = new ArrayList<>();
+            executor.execute(plan, stats, fetched::addAll);
+            return Collections.unmodifiableList(fetched);
+        }, stats::recordCacheHit);
+        for (final Map<String, AttributeValue> item : items) {
+            stats.recordResultBytes(ItemSizes.of(item));
+            rows.add(rowMapper.apply(item));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    private <T> List<T> runJoin(
+            final QueryExecution execution,
+            final Function<List<SQLQuery.Column>, Function<Map<String, AttributeValue>, T>> mapper) {
+        final JoinPlan plan = execution.getJoinPlan();
+        final QueryStats stats = execution.getStats();
+        final Optional<SQLQuery.Explain> explain = execution.getQuery().getExplain();
+        if (explain.isPresent()) {
+            final Map<String, AttributeValue> row;
+            if (explain.get() == SQLQuery.Explain.PLAN) {
+                row = explainer.explain(plan);
+            } else {
+                final long started = System.nanoTime();
+                joinExecutor.execute(plan, stats,
+                        page -> page.forEach(item -> stats.recordResultBytes(ItemSizes.of(item))));
+                row = explainer.analyze(plan, stats, System.nanoTime() - started);
+            }
+            return Collections.singletonList(mapper
+                    .apply(Collections.singletonList(new SQLQuery.Column(ALL_COLUMNS)))
+                    .apply(row));
+        }
+        final SQLQuery output = plan.getOutput();
+        final Function<Map<String, AttributeValue>, T> rowMapper = mapper.apply(output.getColumns());
+        final List<T> rows = new ArrayList<>();
+        if (output.isSorted()) {
+            try (ExternalSort sort = ExternalSort.of(output, sortMemoryBytes, spillDirectory)) {
+                joinExecutor.execute(plan, stats, sort::addAll);
+                sort.forEach(item -> {
+                    stats.recordResultBytes(ItemSizes.of(item));
+                    rows.add(rowMapper.apply(item));
+                });
+            }
+        } else {
+            joinExecutor.execute(plan, stats, page -> {
+                for (final Map<String, AttributeValue> item : page) {
+                    stats.recordResultBytes(ItemSizes.of(item));
+                    rows.add(rowMapper.apply(item));
+                }
+            });
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Attributes fetched only to sort by them, which are not selected.
+     */
+    private static List<String> hiddenAttributes(final SQLQuery query) {
+        final List<String> hidden = new ArrayList<>();
+        final List<String> selected = query.getColumns().stream().map(SQLQuery.Column::getName).collect(toList());
+        if (selected.contains(ALL_COLUMNS)) {
+            return hidden;
+        }
+        for (final SQLQuery.Order order : query.getOrderBy()) {
+            final String attribute = query.attributeOf(order);
+            if (!selected.contains(attribute)) {
+                hidden.add(attribute);
+            }
+        }
+        return hidden;
+    }
+
+    private Map<String, AttributeValue> explain(final SQLQuery.Explain explain, final QueryExecution execution) {
+        final QueryPlan plan = execution.getPlan();
+        final SemiJoinPlan semiJoinPlan = execution.getSemiJoinPlan();
+        final QueryStats stats = execution.getStats();
+        if (explain == SQLQuery.Explain.PLAN) {
+            return semiJoinPlan == null
+                    ? explainer.explain(plan, execution.getTable())
+                    : explainer.explain(semiJoinPlan);
+        }
+        final long started = System.nanoTime();
+        final Consumer<List<Map<String, AttributeValue>>> consumer =
+                page -> page.forEach(item -> stats.recordResultBytes(ItemSizes.of(item)));
+        if (semiJoinPlan == null) {
+            executor.execute(plan, stats, consumer);
+            return explainer.analyze(plan, execution.getTable(), stats, System.nanoTime() - started);
+        }
+        joinExecutor.execute(semiJoinPlan, stats, consumer);
+        return explainer.analyze(semiJoinPlan, stats, System.nanoTime() - started);
+    }
+
+    private void report(final QueryExecution execution, final Throwable failure) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final QueryMetrics metrics = execution.toMetrics(failure);
+        for (final QueryListener listener : listeners) {
+            try {
+                listener.onQuery(metrics);
+            } catch (final RuntimeException ex) {
+                logger.log(Level.WARNING, String.format("Query listener %s has failed", listener), ex);
+            }
+        }
+    }
+
+    /**
+     * Builder of the {@link DynoSQL}.
+     */
+    public static final class Builder {
+        private Region region;
+        private AmazonDynamoDB client;
+        private final List<QueryListener> listeners = new ArrayList<>();
+        private long slowQueryLatencyMillis = -1;
+        private double slowQueryCapacity;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private TaskExecutor taskExecutor;
+        private int scanSegments = 1;
+        private boolean coalescing = true;
+        private long sortMemoryBytes = DEFAULT_SORT_MEMORY_BYTES;
+        private Path spillDirectory;
+        private long queryTimeoutMillis;
+
+        private Builder() {
+        }
+
+        public Builder withRegion(final Region region) {
+            this.region = region;
+            return this;
+        }
+
+        Builder withClient(final AmazonDynamoDB client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Registers the listener which receives the {@link QueryMetrics} of every executed query, ex.
+         * {@link HistogramQueryListener}.
+         */
+        public Builder withListener(final QueryListener listener) {
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Logs the queries which take at least {@code latencyThresholdMillis} or consume at least
+         * {@code capacityThreshold} capacity units, see {@link SlowQueryLog}. The threshold of {@code 0} is disabled,
+         * ex. {@code withSlowQueryLog(500, 0)} logs the queries taking 500 ms or more only.
+         *
+         * @throws IllegalArgumentException if either threshold is negative, or both are disabled
+         */
+        public Builder withSlowQueryLog(final long latencyThresholdMillis, final double capacityThreshold) {
+            SlowQueryLog.validate(latencyThresholdMillis, capacityThreshold);
+            this.slowQueryLatencyMillis = latencyThresholdMillis;
+            this.slowQueryCapacity = capacityThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of the platform threads of the default {@link TaskExecutor}, which runs the queries of
+         * {@link DynoSQL#queryAll(List)} and the independent DynamoDB calls of the single query concurrently, default
+         * is 16. Ignored if {@link #withTaskExecutor(TaskExecutor)} is set.
+         */
+        public Builder withMaxConcurrency(final int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("Max concurrency must be positive");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the executor for the concurrent DynamoDB calls, ex. {@link TaskExecutor#virtual()} on Java 21 or later.
+         * The executor is not closed by {@link DynoSQL#close()}, as it is owned by the caller.
+         */
+        public Builder withTaskExecutor(final TaskExecutor taskExecutor) {
+            this.taskExecutor = taskExecutor;
+            return this;
+        }
+
+        /**
+         * Splits every {@code Scan} into the {@code segments} parallel scan segments, default is 1, i.e. sequential
+         * scan.
+         */
+        public Builder withScanParallelism(final int segments) {
+            if (segments < 1) {
+                throw new IllegalArgumentException("Number of the scan segments must be positive");
+            }
+            this.scanSegments = segments;
+            return this;
+        }
+
+        /**
+         * Enables (default) or disables the coalescing of the identical eventually consistent queries running at the
+         * same time, i.e. queries with the same plan and values share the single in-flight DynamoDB call(s) and its
+         * result. The coalesced query reports the shared call as the cache hit, and no calls of its own.
+         */
+        public Builder withRequestCoalescing(final boolean coalescing) {
+            this.coalescing = coalescing;
+            return this;
+        }
+
+        /**
+         * Sets the memory budget of the client side {@code ORDER BY} and {@code DISTINCT} per query, default is 64MB.
+         * Items above the budget (estimated by the DynamoDB item size) are spilled to disk as the sorted runs and
+         * merged back while streaming the result. The budget must not exceed 1GB.
+         */
+        public Builder withSortMemoryBudget(final long bytes) {
+            if (bytes < 1 || bytes > MAX_SORT_MEMORY_BYTES) {
+                throw new IllegalArgumentException("Sort memory budget must be positive and must not exceed 1GB");
+            }
+            this.sortMemoryBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Sets the timeout of every query, update, export and page, default is no timeout. Once it passes no further
+         * DynamoDB call is made, the calls in flight are aborted, and the query fails with
+         * {@link com.amazonaws.http.timers.client.ClientExecutionTimeoutException}. The coalesced queries share the
+         * timeout of the query making the shared call. See {@link QueryHandle} to cancel the single query.
+         */
+        public Builder withQueryTimeout(final long timeoutMillis) {
+            if (timeoutMillis < 1) {
+                throw new IllegalArgumentException("Query timeout must be positive");
+            }
+            this.queryTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Sets the directory of the sorted runs spilled to disk, default is {@code java.io.tmpdir}.
+         */
+        public Builder withSpillDirectory(final Path directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        public DynoSQL build() {
+            if (region == null && client == null) {
+                throw new IllegalArgumentException("Region must be set");
+            }
+            return new DynoSQL(this);
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package com.akazlou.dynosql;
+
+/**
+ * File format of the {@link DynoSQL#export(String, java.nio.file.Path, ExportFormat)}.
+ */
+public enum ExportFormat {
+    /**
+     * Newline delimited JSON, i.e. one JSON object per item per line.
+     */
+    NDJSON,
+    /**
+     * Comma separated values (RFC 4180) with the header row. Query must list the columns explicitly, as the items of
+     * the same table may have the different attributes.
+     */
+    CSV
+}
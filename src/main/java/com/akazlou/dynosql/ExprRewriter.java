@@ -0,0 +1,423 @@
+package com.akazlou.dynosql;
+
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.BETWEEN;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.EQ;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.EXISTS;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.GE;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.GT;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.IN;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.IS_NOT_NULL;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.IS_NULL;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.LE;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.LT;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NE_ANSI;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NE_C;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NOT_EXISTS;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+
+import com.akazlou.dynosql.SQLQuery.Expr;
+import com.akazlou.dynosql.SQLQuery.Scalar;
+import com.akazlou.dynosql.SQLQuery.Scalar.Operation;
+
+/**
+ * Rewrites the WHERE conditions of the parsed query before the planning, so the planner gets the tightest key
+ * conditions and the smallest filter expressions.
+ *
+ * <p>The nested {@code AND} and {@code OR} are flattened into the lists of terms, and the duplicate terms are removed.
+ * The {@code AND}-ed comparisons of the same column are merged into the single range, i.e. {@code a > 1 AND a > 5}
+ * becomes {@code a > 5}, {@code a >= 1 AND a <= 5} becomes {@code a BETWEEN 1 AND 5}, and the equalities are
+ * intersected with the range, while the {@code OR}-ed equalities of the same column are merged into the single
+ * {@code IN}. The contradictions, ex. {@code a = 1 AND a = 2} or {@code a > 5 AND a < 1}, make the whole conditions
+ * always false, so the query is answered without any DynamoDB call.</p>
+ *
+ * <p>Only the literals of the same type (strings or numbers) are compared, the strings by their UTF-8 bytes the same
+ * way as DynamoDB does. The column compared with the literals of the different types is left as is.</p>
+ */
+final class ExprRewriter {
+    // DynamoDB limit of the IN operands
+    private static final int MAX_IN_VALUES = 100;
+    private static final Set<Operation> EQUALITIES = Collections.unmodifiableSet(EnumSet.of(EQ, IN));
+    private static final Set<Operation> COMPARISONS =
+            Collections.unmodifiableSet(EnumSet.of(EQ, IN, LT, LE, GT, GE, BETWEEN, NE_ANSI));
+    private static final Set<Operation> ABSENT = Collections.unmodifiableSet(EnumSet.of(IS_NULL, NOT_EXISTS));
+    private static final Set<Operation> PRESENT = Collections.unmodifiableSet(EnumSet.of(IS_NOT_NULL, EXISTS));
+
+    private ExprRewriter() {
+    }
+
+    /**
+     * Returns the query with the rewritten conditions, or empty if the conditions are always false.
+     */
+    static Optional<SQLQuery> rewrite(final SQLQuery query) {
+        if (!query.getConditions().isPresent()) {
+            return Optional.of(query);
+        }
+        return rewrite(query.getConditions().get()).map(query::withConditions);
+    }
+
+    /**
+     * Returns the rewritten expression, or empty if it is always false.
+     */
+    static Optional<Expr> rewrite(final Expr expr) {
+        final List<Expr> terms = new ArrayList<>();
+        for (final Expr conjunct : QueryPlanner.conjuncts(expr)) {
+            final Optional<Expr> rewritten = conjunct instanceof SQLQuery.OrExpr
+                    ? or(conjunct)
+                    : conjunct instanceof Scalar ? normalize((Scalar<?>) conjunct) : Optional.of(conjunct);
+            if (!rewritten.isPresent()) {
+                return Optional.empty();
+            }
+            for (final Expr term : QueryPlanner.conjuncts(rewritten.get())) {
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+            }
+        }
+        final Map<String, List<Scalar<?>>> scalars = byColumn(terms, COMPARISONS, ABSENT, PRESENT);
+        final Set<String> columns = new HashSet<>();
+        final List<Expr> merged = new ArrayList<>(terms.size());
+        for (final Expr term : terms) {
+            final List<Scalar<?>> column = grouped(scalars, term);
+            if (column == null) {
+                merged.add(term);
+                continue;
+            }
+            // Emitted in place of the first term of the column, the rest of its terms are skipped
+            if (!columns.add(((Scalar<?>) term).getColumnName())) {
+                continue;
+            }
+            final Optional<List<Expr>> range = range(column);
+            if (!range.isPresent()) {
+                return Optional.empty();
+            }
+            merged.addAll(range.get());
+        }
+        return Optional.of(fold(merged, SQLQuery.AndExpr::new));
+    }
+
+    private static Optional<Expr> or(final Expr expr) {
+        final List<Expr> terms = new ArrayList<>();
+        for (final Expr disjunct : disjuncts(expr)) {
+            // The always false terms are just dropped
+            rewrite(disjunct).ifPresent(rewritten -> disjuncts(rewritten).forEach(term -> {
+                // The same terms AND-ed in the different order are duplicates as well
+                final Set<Expr> conjuncts = new HashSet<>(QueryPlanner.conjuncts(term));
+                if (terms.stream().noneMatch(other -> conjuncts.equals(new HashSet<>(QueryPlanner.conjuncts(other))))) {
+                    terms.add(term);
+                }
+            }));
+        }
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        final Map<String, List<Scalar<?>>> scalars = byColumn(terms, EQUALITIES);
+        final Set<String> columns = new HashSet<>();
+        final List<Expr> merged = new ArrayList<>(terms.size());
+        for (final Expr term : terms) {
+            final List<Scalar<?>> column = grouped(scalars, term);
+            if (column == null) {
+                merged.add(term);
+                continue;
+            }
+            if (!columns.add(((Scalar<?>) term).getColumnName())) {
+                continue;
+            }
+            final List<String> literals = new ArrayList<>();
+            column.forEach(scalar -> Collections.addAll(literals, scalar.values()));
+            if (!isComparable(literals.toArray(new String[0]))) {
+                merged.addAll(column);
+                continue;
+            }
+            final Map<String, String> values = new LinkedHashMap<>();
+            literals.forEach(literal -> putAll(values, literal));
+            if (values.size() > MAX_IN_VALUES) {
+                merged.addAll(column);
+            } else {
+                merged.add(equality(column.get(0).getColumnName(), values));
+            }
+        }
+        return Optional.of(fold(merged, SQLQuery.OrExpr::new));
+    }
+
+    private static Optional<Expr> normalize(final Scalar<?> scalar) {
+        final Operation operation = scalar.getOperation();
+        if (operation == NE_C) {
+            return Optional.of(NE_ANSI.apply(scalar.getColumnName(), scalar.values()));
+        }
+        if (operation == IN && isComparable(scalar.values())) {
+            final Map<String, String> values = new LinkedHashMap<>();
+            putAll(values, scalar.values());
+            return Optional.of(equality(scalar.getColumnName(), values));
+        }
+        if (operation == BETWEEN && isComparable(scalar.values())) {
+            final String[] values = scalar.values();
+            final int compared = compare(values[0], values[1]);
+            if (compared > 0) {
+                return Optional.empty();
+            }
+            return Optional.of(compared == 0 ? EQ.apply(scalar.getColumnName(), values[0]) : scalar);
+        }
+        return Optional.of(scalar);
+    }
+
+    /**
+     * Merges the {@code AND}-ed terms of the single column, or returns empty if they contradict each other.
+     */
+    private static Optional<List<Expr>> range(final List<Scalar<?>> scalars) {
+        final String column = scalars.get(0).getColumnName();
+        final boolean absent = scalars.stream().anyMatch(scalar -> ABSENT.contains(scalar.getOperation()));
+        final boolean present = scalars.stream().anyMatch(scalar -> PRESENT.contains(scalar.getOperation())
+                || (COMPARISONS.contains(scalar.getOperation()) && scalar.getOperation() != NE_ANSI));
+        if (absent && present) {
+            // The comparison with the missing attribute is always false
+            return Optional.empty();
+        }
+        final List<Scalar<?>> comparisons = new ArrayList<>();
+        final List<Expr> rest = new ArrayList<>();
+        for (final Scalar<?> scalar : scalars) {
+            if (COMPARISONS.contains(scalar.getOperation())) {
+                comparisons.add(scalar);
+            } else {
+                rest.add(scalar);
+            }
+        }
+        final List<String> literals = new ArrayList<>();
+        comparisons.forEach(scalar -> Collections.addAll(literals, scalar.values()));
+        if (comparisons.isEmpty() || !isComparable(literals.toArray(new String[0]))) {
+            return Optional.of(new ArrayList<>(scalars));
+        }
+        Bound lower = null;
+        Bound upper = null;
+        Map<String, String> values = null;
+        final Map<String, String> excluded = new LinkedHashMap<>();
+        for (final Scalar<?> scalar : comparisons) {
+            final String[] operands = scalar.values();
+            switch (scalar.getOperation()) {
+                case EQ:
+                    // fall through
+                case IN:
+                    final Map<String, String> matched = new LinkedHashMap<>();
+                    putAll(matched, operands);
+                    if (values != null) {
+                        matched.keySet().retainAll(values.keySet());
+                    }
+                    values = matched;
+                    break;
+                case GT:
+                    lower = Bound.tighter(lower, new Bound(operands[0], false), 1);
+                    break;
+                case GE:
+                    lower = Bound.tighter(lower, new Bound(operands[0], true), 1);
+                    break;
+                case LT:
+                    upper = Bound.tighter(upper, new Bound(operands[0], false), -1);
+                    break;
+                case LE:
+                    upper = Bound.tighter(upper, new Bound(operands[0], true), -1);
+                    break;
+                case BETWEEN:
+                    lower = Bound.tighter(lower, new Bound(operands[0], true), 1);
+                    upper = Bound.tighter(upper, new Bound(operands[1], true), -1);
+                    break;
+                default:
+                    putAll(excluded, operands);
+            }
+        }
+        if (values != null) {
+            final Bound from = lower;
+            final Bound to = upper;
+            values.entrySet().removeIf(value -> excluded.containsKey(value.getKey())
+                    || (from != null && !from.isBelow(value.getValue()))
+                    || (to != null && !to.isAbove(value.getValue())));
+            // EXISTS is implied by the equality, so only the equality is left
+            return values.isEmpty()
+                    ? Optional.empty()
+                    : Optional.of(Collections.singletonList(equality(column, values)));
+        }
+        final List<Expr> range = new ArrayList<>();
+        if (lower != null && upper != null) {
+            final int compared = compare(lower.literal, upper.literal);
+            if (compared > 0 || (compared == 0 && !(lower.inclusive && upper.inclusive))) {
+                return Optional.empty();
+            }
+            if (compared == 0) {
+                return excluded.containsKey(key(lower.literal))
+                        ? Optional.empty()
+                        : Optional.of(Collections.singletonList(EQ.apply(column, lower.literal)));
+            }
+            if (lower.inclusive && upper.inclusive) {
+                range.add(BETWEEN.apply(column, lower.literal, upper.literal));
+            } else {
+                range.add((lower.inclusive ? GE : GT).apply(column, lower.literal));
+                range.add((upper.inclusive ? LE : LT).apply(column, upper.literal));
+            }
+        } else if (lower != null) {
+            range.add((lower.inclusive ? GE : GT).apply(column, lower.literal));
+        } else if (upper != null) {
+            range.add((upper.inclusive ? LE : LT).apply(column, upper.literal));
+        } else {
+            range.addAll(rest);
+        }
+        // The values out of the range are excluded anyway
+        final Bound from = lower;
+        final Bound to = upper;
+        excluded.values().stream()
+                .filter(literal -> (from == null || from.isBelow(literal)) && (to == null || to.isAbove(literal)))
+                .forEach(literal -> range.add(NE_ANSI.apply(column, literal)));
+        return Optional.of(range);
+    }
+
+    /**
+     * Groups the scalars of the {@code operations} by the column, skipping the columns compared with the literals of
+     * the different types.
+     */
+    @SafeVarargs
+    private static Map<String, List<Scalar<?>>> byColumn(final List<Expr> terms, final Set<Operation>... operations) {
+        final Map<String, List<Scalar<?>>> scalars = new HashMap<>();
+        for (final Expr term : terms) {
+            if (term instanceof Scalar) {
+                final Scalar<?> scalar = (Scalar<?>) term;
+                for (final Set<Operation> group : operations) {
+                    if (group.contains(scalar.getOperation())) {
+                        scalars.computeIfAbsent(scalar.getColumnName(), column -> new ArrayList<>()).add(scalar);
+                        break;
+                    }
+                }
+            }
+        }
+        return scalars;
+    }
+
+    /**
+     * Returns all the grouped scalars of the column of the {@code term}, or {@code null} if it is not grouped.
+     */
+    private static List<Scalar<?>> grouped(final Map<String, List<Scalar<?>>> scalars, final Expr term) {
+        if (!(term instanceof Scalar)) {
+            return null;
+        }
+        final List<Scalar<?>> column = scalars.get(((Scalar<?>) term).getColumnName());
+        return column != null && column.contains(term) ? column : null;
+    }
+
+    private static Expr equality(final String column, final Map<String, String> values) {
+        final String[] literals = values.values().toArray(new String[0]);
+        return literals.length == 1 ? EQ.apply(column, literals[0]) : IN.apply(column, literals);
+    }
+
+    /**
+     * Puts the literals by their {@link #key(String)}, so {@code 1} and {@code 1.0} are the same value.
+     */
+    private static void putAll(final Map<String, String> values, final String... literals) {
+        for (final String literal : literals) {
+            values.putIfAbsent(key(literal), literal);
+        }
+    }
+
+    private static String key(final String literal) {
+        return Literals.isString(literal)
+                ? literal
+                : Literals.toNumber(literal).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Whether all the literals are either the strings or the numbers.
+     */
+    private static boolean isComparable(final String... literals) {
+        boolean strings = false;
+        boolean numbers = false;
+        for (final String literal : literals) {
+            if (Literals.isString(literal)) {
+                strings = true;
+            } else if (isNumber(literal)) {
+                numbers = true;
+            } else {
+                return false;
+            }
+        }
+        return !(strings && numbers);
+    }
+
+    private static boolean isNumber(final String literal) {
+        try {
+            new BigDecimal(literal);
+            return true;
+        } catch (final NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static int compare(final String literal1, final String literal2) {
+        if (!Literals.isString(literal1)) {
+            return Literals.toNumber(literal1).compareTo(Literals.toNumber(literal2));
+        }
+        return Attributes.compareUtf8(Literals.unquote(literal1), Literals.unquote(literal2));
+    }
+
+    private static List<Expr> disjuncts(final Expr expr) {
+        if (expr instanceof SQLQuery.OrExpr) {
+            final SQLQuery.OrExpr or = (SQLQuery.OrExpr) expr;
+            final List<Expr> disjuncts = new ArrayList<>(disjuncts(or.getLeft()));
+            disjuncts.addAll(disjuncts(or.getRight()));
+            return disjuncts;
+        }
+        return Collections.singletonList(expr);
+    }
+
+    private static Expr fold(final List<Expr> terms, final BinaryOperator<Expr> operator) {
+        Expr expr = terms.get(0);
+        for (int i = 1; i < terms.size(); i++) {
+            expr = operator.apply(expr, terms.get(i));
+        }
+        return expr;
+    }
+
+    private static final class Bound {
+        private final String literal;
+        private final boolean inclusive;
+
+        private Bound(final String literal, final boolean inclusive) {
+            this.literal = literal;
+            this.inclusive = inclusive;
+        }
+
+        /**
+         * Returns the tighter of the bounds, the greater one for the lower bound ({@code direction} is 1), and the
+         * smaller one for the upper bound ({@code direction} is -1).
+         */
+        private static Bound tighter(final Bound current, final Bound bound, final int direction) {
+            if (current == null) {
+                return bound;
+            }
+            final int compared = compare(bound.literal, current.literal) * direction;
+            return compared > 0 || (compared == 0 && !bound.inclusive) ? bound : current;
+        }
+
+        /**
+         * Whether the {@code literal} satisfies this lower bound.
+         */
+        private boolean isBelow(final String literal) {
+            final int compared = compare(this.literal, literal);
+            return compared < 0 || (compared == 0 && inclusive);
+        }
+
+        /**
+         * Whether the {@code literal} satisfies this upper bound.
+         */
+        private boolean isAbove(final String literal) {
+            final int compared = compare(this.literal, literal);
+            return compared > 0 || (compared == 0 && inclusive);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.akazlou.dynosql;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Client side {@code ORDER BY} and {@code DISTINCT} within the memory budget.
+ *
+ * <p>Items are buffered in memory until their estimated size exceeds the budget, then the buffer is sorted and
+ * spilled to the temporary file as the sorted run, using the compact {@link RowCodec} encoding. Once all the items
+ * are added, the runs are memory-mapped and merged together with the remaining buffer, streaming the items in order.
+ * With {@code DISTINCT} the duplicates are removed both in the buffer and while merging, so the low cardinality
+ * result never spills.</p>
+ *
+ * <p>Not thread-safe, the items must be added by one thread at a time.</p>
+ */
+final class ExternalSort implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ExternalSort.class.getName());
+    private static final String ALL_COLUMNS = "*";
+    // Rough per item overhead of the Java objects on top of the item size
+    private static final long ITEM_OVERHEAD_BYTES = 64;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Comparator<Map<String, AttributeValue>> comparator;
+    private final boolean distinct;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private Collection<Map<String, AttributeValue>> buffer;
+    private long bufferedBytes;
+    private long spilledBytes;
+
+    ExternalSort(final Comparator<Map<String, AttributeValue>> comparator,
+                 final boolean distinct,
+                 final long memoryBudgetBytes,
+                 final Path spillDirectory) {
+        this.comparator = comparator;
+        this.distinct = distinct;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.buffer = newBuffer();
+    }
+
+    /**
+     * Creates the sort of the {@code query} items, ordered by the {@code ORDER BY} columns, then by all the selected
+     * columns if the query is {@code DISTINCT}. {@code SELECT DISTINCT *} never has duplicates, as every item has the
+     * unique primary key.
+     */
+    static ExternalSort of(final SQLQuery query, final long memoryBudgetBytes, final Path spillDirectory) {
+        final List<Comparator<Map<String, AttributeValue>>> comparators = new ArrayList<>();
+        for (final SQLQuery.Order order : query.getOrderBy()) {
+            final Comparator<Map<String, AttributeValue>> comparator = attribute(query.attributeOf(order));
+            comparators.add(order.isDescending() ? comparator.reversed() : comparator);
+        }
+        final boolean allColumns = query.getColumns().stream().anyMatch(column -> ALL_COLUMNS.equals(column.getName()));
+        final boolean distinct = query.isDistinct() && !allColumns;
+        if (distinct) {
+            query.getColumns().forEach(column -> comparators.add(attribute(column.getName())));
+        }
+        final Comparator<Map<String, AttributeValue>> comparator = comparators.stream()
+                .reduce(Comparator::thenComparing)
+                .orElse((item1, item2) -> 0);
+        return new ExternalSort(comparator, distinct, memoryBudgetBytes, spillDirectory);
+    }
+
+    void addAll(final List<Map<String, AttributeValue>> items) {
+        for (final Map<String, AttributeValue> item : items) {
+            if (buffer.add(item)) {
+                bufferedBytes += ItemSizes.of(item) + ITEM_OVERHEAD_BYTES;
+            }
+            if (bufferedBytes > memoryBudgetBytes) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Pushes all the items in the sorted order into the {@code consumer}.
+     */
+    void forEach(final Consumer<Map<String, AttributeValue>> consumer) {
+        final List<Iterator<Map<String, AttributeValue>>> sources = new ArrayList<>(runs.size() + 1);
+        for (final Path run : runs) {
+            sources.add(new Run(run));
+        }
+        sources.add(sorted().iterator());
+        buffer = newBuffer();
+        bufferedBytes = 0;
+        if (sources.size() == 1) {
+            sources.get(0).forEachRemaining(consumer);
+            return;
+        }
+        // Sources are ordered by the spill order, so the equal items keep the order they were added in
+        final PriorityQueue<Head> heads = new PriorityQueue<>((head1, head2) -> {
+            final int compare = comparator.compare(head1.item, head2.item);
+            return compare != 0 ? compare : Integer.compare(head1.source, head2.source);
+        });
+        for (int source = 0; source < sources.size(); source++) {
+            if (sources.get(source).hasNext()) {
+                heads.add(new Head(source, sources.get(source).next()));
+            }
+        }
+        Map<String, AttributeValue> previous = null;
+        while (!heads.isEmpty()) {
+            final Head head = heads.poll();
+            if (!distinct || previous == null || comparator.compare(previous, head.item) != 0) {
+                consumer.accept(head.item);
+                previous = head.item;
+            }
+            final Iterator<Map<String, AttributeValue>> source = sources.get(head.source);
+            if (source.hasNext()) {
+                heads.add(new Head(head.source, source.next()));
+            }
+        }
+    }
+
+    /**
+     * Number of the sorted runs spilled to disk.
+     */
+    int getRuns() {
+        return runs.size();
+    }
+
+    long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public void close() {
+        for (final Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (final IOException ex) {
+                logger.log(Level.WARNING, String.format("Was not able to delete the sorted run %s", run), ex);
+            }
+        }
+        runs.clear();
+    }
+
+    private void spill() {
+        try {
+            final Path run = spillDirectory == null
+                    ? Files.createTempFile("dynosql-sort-", ".run")
+                    : Files.createTempFile(spillDirectory, "dynosql-sort-", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), WRITE_BUFFER_SIZE))) {
+                for (final Map<String, AttributeValue> item : sorted()) {
+                    RowCodec.write(out, item);
+                }
+                spilledBytes += out.size();
+            }
+            logger.fine(() -> String.format("Spilled %d bytes of the sorted items into %s", bufferedBytes, run));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException("Was not able to spill the sorted items", ex);
+        }
+        buffer = newBuffer();
+        bufferedBytes = 0;
+    }
+
+    private Collection<Map<String, AttributeValue>> sorted() {
+        if (buffer instanceof List) {
+            ((List<Map<String, AttributeValue>>) buffer).sort(comparator);
+        }
+        return buffer;
+    }
+
+    private Collection<Map<String, AttributeValue>> newBuffer() {
+        // TreeSet drops the duplicates as they are added
+        return distinct ? new TreeSet<>(comparator) : new ArrayList<>();
+    }
+
+    private static Comparator<Map<String, AttributeValue>> attribute(final String name) {
+        return (item1, item2) -> compare(Attributes.valueOf(item1, name), Attributes.valueOf(item2, name));
+    }
+
+    /**
+     * Missing and {@code NULL} values go first, then booleans, numbers, strings (by the UTF-8 bytes, as DynamoDB orders
+     * the RANGE keys), binaries and the rest (sets, lists and maps) compared by their textual representation.
+     */
+    static int compare(final AttributeValue value1, final AttributeValue value2) {
+        final int rank1 = rank(value1);
+        final int rank2 = rank(value2);
+        if (rank1 != rank2) {
+            return Integer.compare(rank1, rank2);
+        }
+        switch (rank1) {
+            case 0:
+                return 0;
+            case 1:
+                return Boolean.compare(value1.getBOOL(), value2.getBOOL());
+            case 2:
+                return new BigDecimal(value1.getN()).compareTo(new BigDecimal(value2.getN()));
+            case 3:
+                return Attributes.compareUtf8(value1.getS(), value2.getS());
+            case 4:
+                return compareUnsigned(value1.getB(), value2.getB());
+            default:
+                return value1.toString().compareTo(value2.toString());
+        }
+    }
+
+    private static int rank(final AttributeValue value) {
+        if (value == null || Boolean.TRUE.equals(value.getNULL())) {
+            return 0;
+        }
+        if (value.getBOOL() != null) {
+            return 1;
+        }
+        if (value.getN() != null) {
+            return 2;
+        }
+        if (value.getS() != null) {
+            return 3;
+        }
+        if (value.getB() != null) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static int compareUnsigned(final ByteBuffer bytes1, final ByteBuffer bytes2) {
+        final int length = Math.min(bytes1.remaining(), bytes2.remaining());
+        for (int i = 0; i < length; i++) {
+            final int compare = Integer.compare(
+                    bytes1.get(bytes1.position() + i) & 0xFF, bytes2.get(bytes2.position() + i) & 0xFF);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(bytes1.remaining(), bytes2.remaining());
+    }
+
+    private static final class Head {
+        private final int source;
+        private final Map<String, AttributeValue> item;
+
+        Head(final int source, final Map<String, AttributeValue> item) {
+            this.source = source;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Sorted run read through the memory-mapped file, so the decoded items are the only heap allocations.
+     */
+    private static final class Run implements Iterator<Map<String, AttributeValue>> {
+        private final MappedByteBuffer buffer;
+
+        Run(final Path path) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(String.format("Was not able to read the sorted run %s", path), ex);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return buffer.hasRemaining();
+        }
+
+        @Override
+        public Map<String, AttributeValue> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return RowCodec.read(buffer);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.amazonaws.AbortedException;
+
+/**
+ * Runs the tasks concurrently on the {@link TaskExecutor} and waits for all of them.
+ *
+ * <p>The calling thread runs the first task itself and then every task the executor has not started yet, so the
+ * progress is guaranteed even if the executor is saturated by the callers waiting here.</p>
+ */
+final class FanOut {
+    private FanOut() {
+    }
+
+    /**
+     * Runs all the {@code tasks} and throws the first failure (in the order of the tasks) once all of them are done.
+     */
+    static void run(final Executor executor, final List<? extends Runnable> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+        final List<FutureTask<Void>> futures = new ArrayList<>(tasks.size());
+        for (final Runnable task : tasks) {
+            futures.add(new FutureTask<>(task, null));
+        }
+        for (int i = 1; i < futures.size(); i++) {
+            try {
+                executor.execute(futures.get(i));
+            } catch (final RejectedExecutionException ex) {
+                // Run it in the calling thread below
+            }
+        }
+        // Not yet started tasks are run in the calling thread, run() is no-op for the already started ones
+        futures.forEach(FutureTask::run);
+        Throwable failure = null;
+        for (final FutureTask<Void> future : futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(other -> other.cancel(true));
+                throw new AbortedException("Interrupted while waiting for the concurrent DynamoDB calls", ex);
+            } catch (final ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * Starts the {@code task} on the executor, or leaves it to be run by {@link #join(FutureTask)} if the executor
+     * rejects it.
+     */
+    static <T> FutureTask<T> submit(final Executor executor, final Callable<T> task) {
+        final FutureTask<T> future = new FutureTask<>(task);
+        try {
+            executor.execute(future);
+        } catch (final RejectedExecutionException ex) {
+            // Run it in the joining thread
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the task started by {@link #submit(Executor, Callable)} (running it in the calling thread if it has
+     * not started yet) and returns its result, or throws its failure.
+     */
+    static <T> T join(final FutureTask<T> future) {
+        future.run();
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new AbortedException("Interrupted while waiting for the concurrent DynamoDB calls", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable failure = ex.getCause();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new IllegalStateException(failure);
+        }
+    }
+}
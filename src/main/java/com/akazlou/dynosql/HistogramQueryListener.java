@@ -0,0 +1,184 @@
+package com.akazlou.dynosql;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Default {@link QueryListener}, which aggregates the {@link QueryMetrics} per table and statement shape (the SQL
+ * query with the literal values replaced by {@code ?}) into the lock-free {@link LatencyHistogram}-s and counters.
+ *
+ * <p>Comparing the scanned and returned counts of the shape shows which queries waste the capacity on filtering.</p>
+ */
+@ThreadSafe
+public final class HistogramQueryListener implements QueryListener {
+    private static final String UNKNOWN_TABLE = "";
+
+    private final ConcurrentMap<Key, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void onQuery(final QueryMetrics metrics) {
+        final Key key = new Key(metrics.getTableName().orElse(UNKNOWN_TABLE), metrics.getShape());
+        Stats current = stats.get(key);
+        if (current == null) {
+            current = stats.computeIfAbsent(key, ignored -> new Stats());
+        }
+        current.record(metrics);
+    }
+
+    /**
+     * Returns the live view of the statistics per table and statement shape.
+     */
+    public Map<Key, Stats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Table and statement shape the statistics are aggregated by.
+     */
+    public static final class Key {
+        private final String tableName;
+        private final String shape;
+
+        Key(final String tableName, final String shape) {
+            this.tableName = tableName;
+            this.shape = shape;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(tableName, key.tableName) &&
+                    Objects.equals(shape, key.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, shape);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s", tableName, shape);
+        }
+    }
+
+    /**
+     * Aggregated statistics of the single table and statement shape.
+     */
+    @ThreadSafe
+    public static final class Stats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram parse = new LatencyHistogram();
+        private final LatencyHistogram plan = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder scannedCount = new LongAdder();
+        private final LongAdder returnedCount = new LongAdder();
+        private final LongAdder resultBytes = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final DoubleAdder consumedCapacity = new DoubleAdder();
+
+        Stats() {
+        }
+
+        void record(final QueryMetrics metrics) {
+            total.record(metrics.getTotalNanos());
+            parse.record(metrics.getParseNanos());
+            plan.record(metrics.getPlanNanos());
+            execute.record(metrics.getExecuteNanos());
+            if (metrics.getFailure().isPresent()) {
+                failures.increment();
+            }
+            calls.add(metrics.getCalls());
+            pages.add(metrics.getPages());
+            scannedCount.add(metrics.getScannedCount());
+            returnedCount.add(metrics.getReturnedCount());
+            resultBytes.add(metrics.getResultBytes());
+            cacheHits.add(metrics.getCacheHits());
+            consumedCapacity.add(metrics.getConsumedCapacity());
+        }
+
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+
+        public LatencyHistogram getParse() {
+            return parse;
+        }
+
+        public LatencyHistogram getPlan() {
+            return plan;
+        }
+
+        public LatencyHistogram getExecute() {
+            return execute;
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getPages() {
+            return pages.sum();
+        }
+
+        public long getScannedCount() {
+            return scannedCount.sum();
+        }
+
+        public long getReturnedCount() {
+            return returnedCount.sum();
+        }
+
+        public long getResultBytes() {
+            return resultBytes.sum();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        public double getConsumedCapacity() {
+            return consumedCapacity.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{total=%s, failures=%d, calls=%d, pages=%d, consumedCapacity=%.1f, "
+                            + "scanned=%d, returned=%d, resultBytes=%d, cacheHits=%d}",
+                    total, getFailures(), getCalls(), getPages(), getConsumedCapacity(), getScannedCount(),
+                    getReturnedCount(), getResultBytes(), getCacheHits());
+        }
+    }
+}
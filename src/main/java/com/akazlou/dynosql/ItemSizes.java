@@ -0,0 +1,85 @@
+package com.akazlou.dynosql;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Estimates the item size following the DynamoDB rules, see
+ * <a href="https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/CapacityUnitCalculations.html">Item
+ * Sizes</a>.
+ */
+final class ItemSizes {
+    private static final int LIST_OR_MAP_OVERHEAD = 3;
+    private static final int ELEMENT_OVERHEAD = 1;
+
+    private ItemSizes() {
+    }
+
+    static long of(final Map<String, AttributeValue> item) {
+        long size = 0;
+        for (final Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += utf8Length(entry.getKey()) + of(entry.getValue());
+        }
+        return size;
+    }
+
+    static long of(final AttributeValue value) {
+        if (value.getS() != null) {
+            return utf8Length(value.getS());
+        }
+        if (value.getN() != null) {
+            return numberLength(value.getN());
+        }
+        if (value.getB() != null) {
+            return value.getB().remaining();
+        }
+        if (value.getSS() != null) {
+            return value.getSS().stream().mapToLong(ItemSizes::utf8Length).sum();
+        }
+        if (value.getNS() != null) {
+            return value.getNS().stream().mapToLong(ItemSizes::numberLength).sum();
+        }
+        if (value.getBS() != null) {
+            return value.getBS().stream().mapToLong(ByteBuffer::remaining).sum();
+        }
+        if (value.getM() != null) {
+            return LIST_OR_MAP_OVERHEAD + of(value.getM()) + (long) ELEMENT_OVERHEAD * value.getM().size();
+        }
+        if (value.getL() != null) {
+            final List<AttributeValue> list = value.getL();
+            long size = LIST_OR_MAP_OVERHEAD;
+            for (final AttributeValue element : list) {
+                size += ELEMENT_OVERHEAD + of(element);
+            }
+            return size;
+        }
+        // BOOL or NULL
+        return 1;
+    }
+
+    private static long utf8Length(final String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static long numberLength(final String value) {
+        // Numbers are stored as up to 38 significant digits, 2 digits per byte plus 1 byte
+        return (value.length() + 1) / 2 + 1;
+    }
+}
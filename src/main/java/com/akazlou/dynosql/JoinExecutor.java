@@ -0,0 +1,241 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Executes the {@link JoinPlan} and the {@link SemiJoinPlan}, pushing the joined items page by page into the
+ * consumer.
+ *
+ * <p>The index nested-loop join streams the outer items, collecting the distinct values of the join column into the
+ * batches of up to 100 values. Every batch is looked up as {@code join column IN (values)} of the inner table, which
+ * is planned by the {@link QueryPlanner} as {@code BatchGetItem} (the primary key is bound) or the {@code Query} per
+ * value. The hash join reads the whole inner (build) side into memory first, then streams the outer (probe) side.</p>
+ *
+ * <p>The semi-join lookups are started on the executor as soon as the batch of the new distinct subquery values is
+ * collected, so they overlap with the subquery paging, and their items are pushed in the order of the batches.</p>
+ *
+ * <p>Only the string and number values of the join column match, as only they could be written as the literals.</p>
+ */
+@ThreadSafe
+final class JoinExecutor {
+    private static final int MAX_BATCH_VALUES = 100;
+
+    private final QueryPlanner planner;
+    private final QueryExecutor executor;
+    private final Executor taskExecutor;
+
+    JoinExecutor(final QueryPlanner planner, final QueryExecutor executor, final Executor taskExecutor) {
+        this.planner = planner;
+        this.executor = executor;
+        this.taskExecutor = taskExecutor;
+    }
+
+    void execute(final JoinPlan plan,
+                 final QueryStats stats,
+                 final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        switch (plan.getStrategy()) {
+            case NESTED_LOOP:
+                nestedLoop(plan, stats, consumer);
+                break;
+            case HASH:
+                hash(plan, stats, consumer);
+                break;
+            default:
+                throw new UnsupportedOperationException(
+                        String.format("Join strategy %s is not supported", plan.getStrategy()));
+        }
+    }
+
+    void execute(final SemiJoinPlan plan,
+                 final QueryStats stats,
+                 final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final Consumer<List<Map<String, AttributeValue>>> output = plan.isHiddenColumn()
+                ? page -> {
+                    page.forEach(item -> item.remove(plan.getColumn()));
+                    consumer.accept(page);
+                }
+                : consumer;
+        switch (plan.getStrategy()) {
+            case LOOKUP:
+                lookup(plan, stats, output);
+                break;
+            case FILTER:
+                filter(plan, stats, output);
+                break;
+            default:
+                throw new UnsupportedOperationException(
+                        String.format("Semi-join strategy %s is not supported", plan.getStrategy()));
+        }
+    }
+
+    private void lookup(final SemiJoinPlan plan,
+                        final QueryStats stats,
+                        final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final Set<String> seen = new HashSet<>();
+        final List<String> literals = new ArrayList<>(MAX_BATCH_VALUES);
+        final Queue<FutureTask<List<Map<String, AttributeValue>>>> batches = new LinkedList<>();
+        try {
+            executor.execute(plan.getSubqueryPlan(), stats, page -> {
+                for (final Map<String, AttributeValue> item : page) {
+                    final AttributeValue value = Attributes.valueOf(item, plan.getSubqueryColumn());
+                    final String key = Attributes.keyOf(value);
+                    if (key != null && seen.add(key)) {
+                        literals.add(Attributes.literalOf(value));
+                    }
+                    if (literals.size() == MAX_BATCH_VALUES) {
+                        batches.add(submit(plan, new ArrayList<>(literals), stats));
+                        literals.clear();
+                    }
+                }
+                // Push the completed batches, keeping the order
+                while (!batches.isEmpty() && batches.peek().isDone()) {
+                    consumer.accept(FanOut.join(batches.remove()));
+                }
+            });
+            if (!literals.isEmpty()) {
+                batches.add(submit(plan, literals, stats));
+            }
+            while (!batches.isEmpty()) {
+                consumer.accept(FanOut.join(batches.remove()));
+            }
+        } catch (final RuntimeException ex) {
+            batches.forEach(batch -> batch.cancel(true));
+            throw ex;
+        }
+    }
+
+    private FutureTask<List<Map<String, AttributeValue>>> submit(final SemiJoinPlan plan,
+                                                                 final List<String> literals,
+                                                                 final QueryStats stats) {
+        return FanOut.submit(taskExecutor, () -> {
+            final List<Map<String, AttributeValue>> items = new ArrayList<>();
+            executor.execute(planner.plan(plan.toQuery(literals), plan.getTable()), stats, items::addAll);
+            return items;
+        });
+    }
+
+    private void filter(final SemiJoinPlan plan,
+                        final QueryStats stats,
+                        final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        // Literals by the key
+        final Map<String, String> values = new LinkedHashMap<>();
+        executor.execute(plan.getSubqueryPlan(), stats, page -> {
+            for (final Map<String, AttributeValue> item : page) {
+                final AttributeValue value = Attributes.valueOf(item, plan.getSubqueryColumn());
+                final String key = Attributes.keyOf(value);
+                if (key != null) {
+                    values.putIfAbsent(key, Attributes.literalOf(value));
+                }
+            }
+        });
+        if (values.isEmpty()) {
+            return;
+        }
+        if (values.size() <= MAX_BATCH_VALUES) {
+            // Few enough values for the IN filter expression, so the items are matched by DynamoDB
+            executor.execute(planner.plan(plan.toQuery(values.values()), plan.getTable()), stats, consumer);
+            return;
+        }
+        executor.execute(plan.getPlan().get(), stats, page -> {
+            final List<Map<String, AttributeValue>> matched = new ArrayList<>(page.size());
+            for (final Map<String, AttributeValue> item : page) {
+                if (values.containsKey(Attributes.keyOf(Attributes.valueOf(item, plan.getColumn())))) {
+                    matched.add(item);
+                }
+            }
+            consumer.accept(matched);
+        });
+    }
+
+    private void nestedLoop(final JoinPlan plan,
+                            final QueryStats stats,
+                            final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final String outerColumn = plan.getOuter().getJoinColumn();
+        final List<Map<String, AttributeValue>> batch = new ArrayList<>();
+        final Set<String> literals = new LinkedHashSet<>();
+        executor.execute(plan.getOuterPlan(), stats, page -> {
+            for (final Map<String, AttributeValue> item : page) {
+                final String literal = Attributes.literalOf(item.get(outerColumn));
+                if (literal == null) {
+                    continue;
+                }
+                batch.add(item);
+                literals.add(literal);
+                if (literals.size() == MAX_BATCH_VALUES) {
+                    lookup(plan, batch, literals, stats, consumer);
+                }
+            }
+        });
+        if (!batch.isEmpty()) {
+            lookup(plan, batch, literals, stats, consumer);
+        }
+    }
+
+    private void lookup(final JoinPlan plan,
+                        final List<Map<String, AttributeValue>> batch,
+                        final Set<String> literals,
+                        final QueryStats stats,
+                        final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final JoinPlan.Side inner = plan.getInner();
+        final QueryPlan lookup = planner.plan(inner.toQuery(literals), inner.getTable());
+        final Map<String, List<Map<String, AttributeValue>>> matches = new HashMap<>();
+        executor.execute(lookup, stats, page -> index(page, inner.getJoinColumn(), matches));
+        consumer.accept(probe(plan, batch, matches));
+        batch.clear();
+        literals.clear();
+    }
+
+    private void hash(final JoinPlan plan,
+                      final QueryStats stats,
+                      final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final Map<String, List<Map<String, AttributeValue>>> table = new HashMap<>();
+        executor.execute(plan.getInnerPlan(), stats, page -> index(page, plan.getInner().getJoinColumn(), table));
+        if (table.isEmpty()) {
+            return;
+        }
+        executor.execute(plan.getOuterPlan(), stats, page -> consumer.accept(probe(plan, page, table)));
+    }
+
+    private static void index(final List<Map<String, AttributeValue>> items,
+                              final String column,
+                              final Map<String, List<Map<String, AttributeValue>>> index) {
+        for (final Map<String, AttributeValue> item : items) {
+            final String key = Attributes.keyOf(item.get(column));
+            if (key != null) {
+                index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(item);
+            }
+        }
+    }
+
+    private static List<Map<String, AttributeValue>> probe(final JoinPlan plan,
+                                                           final List<Map<String, AttributeValue>> outer,
+                                                           final Map<String, List<Map<String, AttributeValue>>> index) {
+        final String column = plan.getOuter().getJoinColumn();
+        final List<Map<String, AttributeValue>> joined = new ArrayList<>();
+        for (final Map<String, AttributeValue> outerItem : outer) {
+            final String key = Attributes.keyOf(outerItem.get(column));
+            if (key == null) {
+                continue;
+            }
+            index.getOrDefault(key, Collections.emptyList())
+                    .forEach(innerItem -> joined.add(plan.join(outerItem, innerItem)));
+        }
+        return joined;
+    }
+}
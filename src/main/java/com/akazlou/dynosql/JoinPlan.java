@@ -0,0 +1,206 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.akazlou.dynosql.SQLQuery.Expr;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Physical plan of the {@code JOIN} of two tables.
+ *
+ * <p>The outer side is read by its {@link QueryPlan}, and for every outer item the inner items with the same value of
+ * the join column are looked up either by the index nested-loop join (the inner join column is the HASH key of the
+ * table or of the index, so the batches of the outer values are looked up by {@code BatchGetItem} or {@code Query}),
+ * or by the hash join (the inner side is read once into the hash table by its own plan).</p>
+ */
+final class JoinPlan {
+    enum Strategy {
+        NESTED_LOOP,
+        HASH
+    }
+
+    private final Strategy strategy;
+    private final Side outer;
+    private final Side inner;
+    private final boolean outerIsLeft;
+    private final QueryPlan outerPlan;
+    private final QueryPlan innerPlan;
+    private final List<Projection> projections;
+    private final SQLQuery output;
+
+    JoinPlan(final Strategy strategy,
+             final Side outer,
+             final Side inner,
+             final boolean outerIsLeft,
+             final QueryPlan outerPlan,
+             final QueryPlan innerPlan,
+             final List<Projection> projections,
+             final SQLQuery output) {
+        this.strategy = strategy;
+        this.outer = outer;
+        this.inner = inner;
+        this.outerIsLeft = outerIsLeft;
+        this.outerPlan = outerPlan;
+        this.innerPlan = innerPlan;
+        this.projections = projections;
+        this.output = output;
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    Side getOuter() {
+        return outer;
+    }
+
+    Side getInner() {
+        return inner;
+    }
+
+    QueryPlan getOuterPlan() {
+        return outerPlan;
+    }
+
+    /**
+     * Plan of the hash join build side, the nested-loop join plans the inner lookups per batch of the outer values.
+     */
+    QueryPlan getInnerPlan() {
+        return innerPlan;
+    }
+
+    /**
+     * Query over the joined items, i.e. the selected columns by their output names with the {@code DISTINCT} and the
+     * {@code ORDER BY} of the output names.
+     */
+    SQLQuery getOutput() {
+        return output;
+    }
+
+    /**
+     * Builds the joined item of the selected columns. {@code SELECT *} returns all the attributes of both items
+     * qualified by the table alias (or name), ex. {@code u.id} and {@code o.id}.
+     */
+    Map<String, AttributeValue> join(final Map<String, AttributeValue> outerItem,
+                                     final Map<String, AttributeValue> innerItem) {
+        final Map<String, AttributeValue> left = outerIsLeft ? outerItem : innerItem;
+        final Map<String, AttributeValue> right = outerIsLeft ? innerItem : outerItem;
+        final Map<String, AttributeValue> joined = new LinkedHashMap<>();
+        if (projections.isEmpty()) {
+            final Side leftSide = outerIsLeft ? outer : inner;
+            final Side rightSide = outerIsLeft ? inner : outer;
+            left.forEach((name, value) -> joined.put(leftSide.qualifier + '.' + name, value));
+            right.forEach((name, value) -> joined.put(rightSide.qualifier + '.' + name, value));
+            return joined;
+        }
+        for (final Projection projection : projections) {
+            final AttributeValue value = Attributes.valueOf(projection.left ? left : right, projection.attribute);
+            if (value != null) {
+                joined.put(projection.name, value);
+            }
+        }
+        return joined;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(strategy.name())
+                .append(" JOIN ON ").append(outer.qualifier).append('.').append(outer.joinColumn)
+                .append(" = ").append(inner.qualifier).append('.').append(inner.joinColumn)
+                .append(", outer ").append(outer.qualifier).append(" [").append(outerPlan).append(']');
+        if (innerPlan != null) {
+            builder.append(", build ").append(inner.qualifier).append(" [").append(innerPlan).append(']');
+        } else {
+            builder.append(", lookup ").append(inner.qualifier).append(" by ").append(inner.joinColumn);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * One of the joined tables, with the columns and the conditions of the table only, without the qualifier.
+     */
+    static final class Side {
+        private final String qualifier;
+        private final TableMetadata table;
+        private final String joinColumn;
+        private final List<SQLQuery.Column> columns;
+        private final Expr conditions;
+
+        Side(final String qualifier,
+             final TableMetadata table,
+             final String joinColumn,
+             final List<SQLQuery.Column> columns,
+             final Expr conditions) {
+            this.qualifier = qualifier;
+            this.table = table;
+            this.joinColumn = joinColumn;
+            this.columns = columns;
+            this.conditions = conditions;
+        }
+
+        String getQualifier() {
+            return qualifier;
+        }
+
+        TableMetadata getTable() {
+            return table;
+        }
+
+        String getJoinColumn() {
+            return joinColumn;
+        }
+
+        /**
+         * Query of all the items of the side.
+         */
+        SQLQuery toQuery() {
+            return new SQLQuery(table.getTableName(), columns, conditions);
+        }
+
+        /**
+         * Query of the items with the join column equal to any of the {@code literals}.
+         */
+        SQLQuery toQuery(final Collection<String> literals) {
+            final Expr in = SQLQuery.Scalar.Operation.IN.apply(joinColumn, literals.toArray(new String[0]));
+            return new SQLQuery(table.getTableName(), columns,
+                    conditions == null ? in : new SQLQuery.AndExpr(in, conditions));
+        }
+    }
+
+    /**
+     * Selected column of the one side, by its output name.
+     */
+    static final class Projection {
+        private final boolean left;
+        private final String attribute;
+        private final String name;
+
+        Projection(final boolean left, final String attribute, final String name) {
+            this.left = left;
+            this.attribute = attribute;
+            this.name = name;
+        }
+
+        boolean isLeft() {
+            return left;
+        }
+
+        String getAttribute() {
+            return attribute;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    static List<SQLQuery.Column> outputColumns(final List<Projection> projections) {
+        final List<SQLQuery.Column> columns = new ArrayList<>(projections.size());
+        projections.forEach(projection -> columns.add(new SQLQuery.Column(projection.name)));
+        return columns;
+    }
+}
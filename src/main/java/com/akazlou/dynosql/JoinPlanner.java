@@ -0,0 +1,219 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.akazlou.dynosql.SQLQuery.Expr;
+
+/**
+ * Chooses the {@link JoinPlan} of the {@code JOIN} query, and the {@link SemiJoinPlan} of the
+ * {@code column IN (SELECT ...)} query.
+ *
+ * <p>The columns, the WHERE conditions and the ORDER BY of the query must be qualified by the table alias (or name),
+ * ex. {@code select u.name, o.total from users u join orders o on u.id = o.user_id where o.total > 10}. Every
+ * condition of the top level {@code AND} must refer to the single table, it is pushed down into the query of that
+ * table.</p>
+ *
+ * <p>If the join column of either table is the HASH key of the table or of the index covering the selected columns,
+ * the index nested-loop join is used with that table as the inner side (the joined table is preferred). Otherwise the
+ * hash join reads the smaller table (by the table size) into the hash table and streams the other one.</p>
+ *
+ * <p>The same way the subquery values are looked up in the outer table if the column is the HASH key of the table or
+ * of the index, otherwise the outer table is read and filtered by the values.</p>
+ */
+final class JoinPlanner {
+    private static final String ALL_COLUMNS = "*";
+    // Any literal works, it only probes whether the IN on the join column is served by the key
+    private static final String PROBE_LITERAL = "0";
+
+    private final QueryPlanner planner;
+
+    JoinPlanner(final QueryPlanner planner) {
+        this.planner = planner;
+    }
+
+    JoinPlan plan(final SQLQuery query, final TableMetadata leftTable, final TableMetadata rightTable) {
+        final SQLQuery.Join join = query.getJoin()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("Query %s is not JOIN", query)));
+        final String leftQualifier = join.getLeftQualifier();
+        final String rightQualifier = join.getRightQualifier();
+
+        final boolean allColumns = query.getColumns().size() == 1
+                && ALL_COLUMNS.equals(query.getColumns().get(0).getName());
+        final List<JoinPlan.Projection> projections = new ArrayList<>();
+        final Set<String> leftAttributes = new HashSet<>();
+        final Set<String> rightAttributes = new HashSet<>();
+        if (!allColumns) {
+            final Set<String> names = new HashSet<>();
+            for (final SQLQuery.Column column : query.getColumns()) {
+                final boolean left = isLeft(column.getName(), join);
+                final String attribute = unqualified(column.getName(), left ? leftQualifier : rightQualifier);
+                final String name = column.getAlias().orElse(attribute);
+                if (!names.add(name)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Column %s is selected more than once, use the alias to rename it", name));
+                }
+                projections.add(new JoinPlan.Projection(left, attribute, name));
+                (left ? leftAttributes : rightAttributes).add(attribute);
+            }
+            leftAttributes.add(join.getLeftColumn());
+            rightAttributes.add(join.getRightColumn());
+        }
+
+        final List<Expr> leftConditions = new ArrayList<>();
+        final List<Expr> rightConditions = new ArrayList<>();
+        query.getConditions().ifPresent(conditions -> {
+            for (final Expr conjunct : QueryPlanner.conjuncts(conditions)) {
+                final Set<String> columns = new HashSet<>();
+                QueryPlanner.collectColumnNames(conjunct, columns);
+                final Set<Boolean> sides = new HashSet<>();
+                columns.forEach(column -> sides.add(isLeft(column, join)));
+                if (sides.size() > 1) {
+                    throw new IllegalArgumentException(String.format(
+                            "Condition %s refers to both joined tables, only ON is supported for that", conjunct));
+                }
+                final boolean left = sides.contains(true);
+                final String qualifier = left ? leftQualifier : rightQualifier;
+                (left ? leftConditions : rightConditions)
+                        .add(conjunct.mapColumns(column -> unqualified(column, qualifier)));
+            }
+        });
+
+        final JoinPlan.Side left = new JoinPlan.Side(leftQualifier, leftTable, join.getLeftColumn(),
+                columns(allColumns, leftAttributes), and(leftConditions));
+        final JoinPlan.Side right = new JoinPlan.Side(rightQualifier, rightTable, join.getRightColumn(),
+                columns(allColumns, rightAttributes), and(rightConditions));
+        final SQLQuery output = output(query, projections, allColumns);
+
+        if (isLookup(right)) {
+            return new JoinPlan(JoinPlan.Strategy.NESTED_LOOP, left, right, true,
+                    planner.plan(left.toQuery(), leftTable), null, projections, output);
+        }
+        if (isLookup(left)) {
+            return new JoinPlan(JoinPlan.Strategy.NESTED_LOOP, right, left, false,
+                    planner.plan(right.toQuery(), rightTable), null, projections, output);
+        }
+        final boolean buildRight = rightTable.getSizeBytes() <= leftTable.getSizeBytes();
+        final JoinPlan.Side probe = buildRight ? left : right;
+        final JoinPlan.Side build = buildRight ? right : left;
+        return new JoinPlan(JoinPlan.Strategy.HASH, probe, build, buildRight,
+                planner.plan(probe.toQuery(), probe.getTable()),
+                planner.plan(build.toQuery(), build.getTable()),
+                projections,
+                output);
+    }
+
+    SemiJoinPlan planSemiJoin(final SQLQuery query, final TableMetadata table, final TableMetadata subqueryTable) {
+        final SQLQuery.SemiJoin semiJoin = query.getSemiJoin().orElseThrow(() -> new IllegalArgumentException(
+                String.format("Query %s has no IN (SELECT ...)", query)));
+        final SQLQuery subquery = semiJoin.getQuery();
+        if (subquery.getSemiJoin().isPresent()) {
+            throw new IllegalArgumentException(
+                    String.format("Nested IN (SELECT ...) of the subquery %s is not supported", subquery));
+        }
+        final String column = semiJoin.getColumn();
+        final String subqueryColumn = subquery.getColumns().get(0).getName();
+        final QueryPlan subqueryPlan = planner.plan(subquery, subqueryTable);
+        final SQLQuery outer = query.withSemiJoin(null);
+        final SemiJoinPlan lookup = new SemiJoinPlan(SemiJoinPlan.Strategy.LOOKUP, column, outer, table, false,
+                subqueryColumn, subqueryTable, subqueryPlan, null);
+        if (planner.plan(lookup.toQuery(Collections.singletonList(PROBE_LITERAL)), table).getOperation()
+                != QueryPlan.Operation.SCAN) {
+            return lookup;
+        }
+        // The column is matched on the client side if there are too many values for the IN filter
+        final boolean hiddenColumn = outer.getColumns().stream()
+                .map(SQLQuery.Column::getName)
+                .noneMatch(name -> name.equals(ALL_COLUMNS) || name.equals(column));
+        final SQLQuery filtered;
+        if (hiddenColumn) {
+            final List<SQLQuery.Column> columns = new ArrayList<>(outer.getColumns());
+            columns.add(new SQLQuery.Column(column));
+            filtered = new SQLQuery(outer.getTableName(), columns, outer.getConditions().orElse(null))
+                    .withSorting(outer.isDistinct(), outer.getOrderBy())
+                    .withHints(outer.getHints());
+        } else {
+            filtered = outer;
+        }
+        return new SemiJoinPlan(SemiJoinPlan.Strategy.FILTER, column, filtered, table, hiddenColumn,
+                subqueryColumn, subqueryTable, subqueryPlan, planner.plan(filtered, table));
+    }
+
+    private boolean isLookup(final JoinPlan.Side side) {
+        return planner.plan(side.toQuery(Collections.singletonList(PROBE_LITERAL)), side.getTable()).getOperation()
+                != QueryPlan.Operation.SCAN;
+    }
+
+    /**
+     * Output query of the joined items, mapping the ORDER BY columns to the output names.
+     */
+    private static SQLQuery output(final SQLQuery query,
+                                   final List<JoinPlan.Projection> projections,
+                                   final boolean allColumns) {
+        final List<SQLQuery.Column> columns = allColumns
+                ? query.getColumns()
+                : JoinPlan.outputColumns(projections);
+        final SQLQuery output = new SQLQuery(query.getTableName(), columns, null);
+        if (!query.isSorted()) {
+            return output;
+        }
+        final SQLQuery.Join join = query.getJoin().get();
+        final List<SQLQuery.Order> orderBy = new ArrayList<>();
+        for (final SQLQuery.Order order : query.getOrderBy()) {
+            orderBy.add(new SQLQuery.Order(
+                    allColumns ? order.getColumn() : outputName(order.getColumn(), projections, join),
+                    order.isDescending()));
+        }
+        return output.withSorting(query.isDistinct(), orderBy);
+    }
+
+    private static String outputName(final String column,
+                                     final List<JoinPlan.Projection> projections,
+                                     final SQLQuery.Join join) {
+        for (final JoinPlan.Projection projection : projections) {
+            if (projection.getName().equals(column)) {
+                return column;
+            }
+        }
+        final boolean left = isLeft(column, join);
+        final String attribute = unqualified(column, left ? join.getLeftQualifier() : join.getRightQualifier());
+        for (final JoinPlan.Projection projection : projections) {
+            if (projection.isLeft() == left && projection.getAttribute().equals(attribute)) {
+                return projection.getName();
+            }
+        }
+        throw new IllegalArgumentException(String.format("ORDER BY column %s of JOIN must be selected", column));
+    }
+
+    private static List<SQLQuery.Column> columns(final boolean allColumns, final Set<String> attributes) {
+        final List<SQLQuery.Column> columns = new ArrayList<>();
+        if (allColumns) {
+            columns.add(new SQLQuery.Column(ALL_COLUMNS));
+        } else {
+            attributes.forEach(attribute -> columns.add(new SQLQuery.Column(attribute)));
+        }
+        return columns;
+    }
+
+    private static boolean isLeft(final String column, final SQLQuery.Join join) {
+        if (column.startsWith(join.getLeftQualifier() + '.')) {
+            return true;
+        }
+        if (column.startsWith(join.getRightQualifier() + '.')) {
+            return false;
+        }
+        throw new IllegalArgumentException(String.format("Column %s of JOIN must be qualified by either %s or %s",
+                column, join.getLeftQualifier(), join.getRightQualifier()));
+    }
+
+    private static String unqualified(final String column, final String qualifier) {
+        return column.substring(qualifier.length() + 1);
+    }
+
+    private static Expr and(final List<Expr> conjuncts) {
+        return conjuncts.stream().reduce(SQLQuery.AndExpr::new).orElse(null);
+    }
+}
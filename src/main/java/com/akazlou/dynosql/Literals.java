@@ -0,0 +1,46 @@
+package com.akazlou.dynosql;
+
+import java.math.BigDecimal;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Helpers to deal with the literal values as they appear in the SQL query, i.e. {@code 'text'} for the strings and
+ * {@code 1.5} for the numbers.
+ */
+final class Literals {
+    private static final char SINGLE_QUOTE = '\'';
+    private static final String NULL = "null";
+
+    private Literals() {
+    }
+
+    static boolean isNull(final String literal) {
+        return NULL.equalsIgnoreCase(literal);
+    }
+
+    static boolean isString(final String literal) {
+        return literal.length() > 1
+                && literal.charAt(0) == SINGLE_QUOTE
+                && literal.charAt(literal.length() - 1) == SINGLE_QUOTE;
+    }
+
+    static String unquote(final String literal) {
+        return isString(literal) ? literal.substring(1, literal.length() - 1) : literal;
+    }
+
+    static BigDecimal toNumber(final String literal) {
+        try {
+            return new BigDecimal(literal);
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    String.format("Value %s is neither quoted string nor number", literal), ex);
+        }
+    }
+
+    static AttributeValue toAttributeValue(final String literal) {
+        return isString(literal)
+                ? new AttributeValue().withS(unquote(literal))
+                : new AttributeValue().withN(toNumber(literal).toPlainString());
+    }
+}
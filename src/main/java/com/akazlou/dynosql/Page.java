@@ -0,0 +1,38 @@
+package com.akazlou.dynosql;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.amazonaws.annotation.Immutable;
+
+/**
+ * Single page of the query result, returned by {@link DynoSQL#queryPage(String, int, String)}.
+ *
+ * <p>The cursor is the opaque URL-safe string, which could be stored or passed to the client as is, and passed back
+ * to resume the same query exactly where this page has stopped.</p>
+ */
+@Immutable
+public final class Page<T> {
+    private final List<T> items;
+    private final String cursor;
+
+    Page(final List<T> items, final String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Cursor of the next page, or empty if this is the last page.
+     */
+    public Optional<String> getCursor() {
+        return Optional.ofNullable(cursor);
+    }
+
+    public boolean hasMore() {
+        return cursor != null;
+    }
+}
@@ -0,0 +1,186 @@
+package com.akazlou.dynosql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Position of the paged query, i.e. the {@code LastEvaluatedKey} per partition or scan segment of the plan, or the
+ * number of the keys already read by {@code BatchGetItem}.
+ *
+ * <p>Encoded as the URL-safe Base64 of the version, the fingerprint of the query (so the cursor of the other query is
+ * rejected), the key offset and the state per request followed by the key in the {@link RowCodec} encoding. The
+ * fingerprint is the first 128 bits of the SHA-256 of the SQL, with the whitespace outside of the string literals
+ * collapsed, and of the table, index, partitions and scan segments of the plan.</p>
+ */
+final class PageCursor {
+    private static final byte VERSION = 2;
+    private static final int FINGERPRINT_BYTES = 16;
+    private static final char SINGLE_QUOTE = '\'';
+    private static final byte NOT_STARTED = 0;
+    private static final byte STARTED = 1;
+    private static final byte DONE = 2;
+    // Marks the done request in the positions, as the null is the not started one
+    private static final Map<String, AttributeValue> DONE_POSITION = Collections.emptyMap();
+
+    private final byte[] fingerprint;
+    private final int offset;
+    private final List<Map<String, AttributeValue>> positions;
+
+    private PageCursor(final byte[] fingerprint, final int offset, final List<Map<String, AttributeValue>> positions) {
+        this.fingerprint = fingerprint;
+        this.offset = offset;
+        this.positions = positions;
+    }
+
+    /**
+     * Cursor of the first page of the query with the {@code requests} partitions or scan segments.
+     */
+    static PageCursor start(final String sql, final QueryPlan plan, final int requests) {
+        return new PageCursor(fingerprint(sql, plan), 0, new ArrayList<>(Collections.nCopies(requests, null)));
+    }
+
+    /**
+     * Decodes the {@code cursor} returned by the previous page of the same query.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to the other query
+     */
+    static PageCursor decode(final String cursor, final String sql, final QueryPlan plan, final int requests) {
+        final byte[] fingerprint = fingerprint(sql, plan);
+        final ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        } catch (final IllegalArgumentException ex) {
+            throw new IllegalArgumentException(String.format("Cursor %s is malformed", cursor), ex);
+        }
+        try {
+            final byte version = buffer.get();
+            final byte[] actual = new byte[FINGERPRINT_BYTES];
+            buffer.get(actual);
+            if (version != VERSION || !MessageDigest.isEqual(actual, fingerprint)) {
+                throw new IllegalArgumentException(
+                        String.format("Cursor %s doesn't belong to the query %s", cursor, sql));
+            }
+            final int offset = buffer.getInt();
+            final int size = buffer.getInt();
+            if (size != requests) {
+                throw new IllegalArgumentException(
+                        String.format("Cursor %s doesn't belong to the query %s", cursor, sql));
+            }
+            final List<Map<String, AttributeValue>> positions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                final byte state = buffer.get();
+                positions.add(state == STARTED ? RowCodec.read(buffer) : state == DONE ? DONE_POSITION : null);
+            }
+            return new PageCursor(fingerprint, offset, positions);
+        } catch (final BufferUnderflowException | IllegalStateException | NegativeArraySizeException ex) {
+            throw new IllegalArgumentException(String.format("Cursor %s is malformed", cursor), ex);
+        }
+    }
+
+    String encode() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.write(fingerprint);
+            out.writeInt(offset);
+            out.writeInt(positions.size());
+            for (final Map<String, AttributeValue> position : positions) {
+                if (position == null) {
+                    out.writeByte(NOT_STARTED);
+                } else if (position == DONE_POSITION) {
+                    out.writeByte(DONE);
+                } else {
+                    out.writeByte(STARTED);
+                    RowCodec.write(out, position);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException("Was not able to encode the cursor", ex);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Number of the {@code BatchGetItem} keys already read.
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    PageCursor withOffset(final int offset) {
+        return new PageCursor(fingerprint, offset, positions);
+    }
+
+    boolean isDone(final int request) {
+        return positions.get(request) == DONE_POSITION;
+    }
+
+    /**
+     * {@code ExclusiveStartKey} of the request, or {@code null} if it is not started yet.
+     */
+    Map<String, AttributeValue> getPosition(final int request) {
+        final Map<String, AttributeValue> position = positions.get(request);
+        return position == DONE_POSITION ? null : position;
+    }
+
+    /**
+     * Returns the copy of the cursor with the {@code request} moved to the {@code lastEvaluatedKey}, which is done
+     * if the key is empty.
+     */
+    PageCursor withPosition(final int request, final Map<String, AttributeValue> lastEvaluatedKey) {
+        final List<Map<String, AttributeValue>> moved = new ArrayList<>(positions);
+        moved.set(request, lastEvaluatedKey == null || lastEvaluatedKey.isEmpty() ? DONE_POSITION : lastEvaluatedKey);
+        return new PageCursor(fingerprint, offset, moved);
+    }
+
+    private static byte[] fingerprint(final String sql, final QueryPlan plan) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        final String query = String.format("%s\n%s %s %s %d %d", normalize(sql), plan.getOperation(),
+                plan.getTableName(), plan.getIndexName().orElse(""), plan.getPartitions(), plan.getParallelism());
+        return Arrays.copyOf(digest.digest(query.getBytes(StandardCharsets.UTF_8)), FINGERPRINT_BYTES);
+    }
+
+    /**
+     * Trims the SQL and collapses the whitespace outside of the string literals into the single space.
+     */
+    private static String normalize(final String sql) {
+        final StringBuilder builder = new StringBuilder(sql.length());
+        boolean quoted = false;
+        boolean space = false;
+        for (final char c : sql.trim().toCharArray()) {
+            if (c == SINGLE_QUOTE) {
+                quoted = !quoted;
+            }
+            if (!quoted && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                builder.append(' ');
+                space = false;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Reads the single page of the {@link QueryPlan} from the {@link PageCursor} position.
+ *
+ * <p>The partitions of the {@code Query} are read one after another, in the plan order. The parallel {@code Scan}
+ * segments are read concurrently, every segment evaluating its share of the page items (DynamoDB {@code Limit}), so
+ * the page never exceeds the requested size. Every partition or segment is called at most once per page, so the page
+ * evaluates at most {@code pageSize} items per partition or segment, and could be smaller (even empty) if the filter
+ * expression drops the items, while more items remain. The {@code BatchGetItem} keys are read in the plan order, at
+ * most 100 keys per call.</p>
+ */
+@ThreadSafe
+final class PageReader {
+    private static final int MAX_BATCH_GET_KEYS = 100;
+
+    private final QueryExecutor executor;
+    private final Executor taskExecutor;
+
+    PageReader(final QueryExecutor executor, final Executor taskExecutor) {
+        this.executor = executor;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Reads up to {@code pageSize} items of the {@code sql} query from the {@code cursor}, or from the beginning if it
+     * is {@code null}.
+     */
+    Page<Map<String, AttributeValue>> read(final QueryPlan plan,
+                                          final String sql,
+                                          final String cursor,
+                                          final int pageSize,
+                                          final QueryStats stats) {
+        final int requests = QueryExecutor.getPagedRequests(plan);
+        PageCursor position = cursor == null
+                ? PageCursor.start(sql, plan, requests)
+                : PageCursor.decode(cursor, sql, plan, requests);
+        final List<Map<String, AttributeValue>> items = new ArrayList<>(pageSize);
+        if (plan.getOperation() == QueryPlan.Operation.GET) {
+            final List<Map<String, AttributeValue>> keys = plan.getKeys().getKeys();
+            int offset = position.getOffset();
+            while (items.size() < pageSize && offset < keys.size()) {
+                final int to = Math.min(keys.size(), offset + Math.min(MAX_BATCH_GET_KEYS, pageSize - items.size()));
+                executor.executeKeys(plan, new ArrayList<>(keys.subList(offset, to)), stats, items::addAll);
+                offset = to;
+            }
+            return new Page<>(items, offset < keys.size() ? position.withOffset(offset).encode() : null);
+        }
+        final boolean[] called = new boolean[requests];
+        while (items.size() < pageSize) {
+            final int remaining = pageSize - items.size();
+            final List<Integer> active = new ArrayList<>();
+            for (int request = 0; request < requests && active.size() < remaining; request++) {
+                if (!position.isDone(request)) {
+                    if (!called[request]) {
+                        active.add(request);
+                    }
+                    // The next partition is started only once the previous one is done
+                    if (plan.getOperation() == QueryPlan.Operation.QUERY) {
+                        break;
+                    }
+                }
+            }
+            if (active.isEmpty()) {
+                break;
+            }
+            final int limit = remaining / active.size();
+            final List<List<Map<String, AttributeValue>>> pages = new ArrayList<>(active.size());
+            final List<Map<String, AttributeValue>> lastEvaluatedKeys = new ArrayList<>(active.size());
+            final List<Runnable> tasks = new ArrayList<>(active.size());
+            for (int i = 0; i < active.size(); i++) {
+                final int request = active.get(i);
+                final int index = i;
+                final Map<String, AttributeValue> exclusiveStartKey = position.getPosition(request);
+                pages.add(new ArrayList<>());
+                lastEvaluatedKeys.add(null);
+                tasks.add(() -> lastEvaluatedKeys.set(index, executor.executePage(
+                        plan, request, exclusiveStartKey, limit, stats, pages.get(index)::addAll)));
+            }
+            FanOut.run(taskExecutor, tasks);
+            for (int i = 0; i < active.size(); i++) {
+                items.addAll(pages.get(i));
+                position = position.withPosition(active.get(i), lastEvaluatedKeys.get(i));
+                called[active.get(i)] = true;
+            }
+        }
+        for (int request = 0; request < requests; request++) {
+            if (!position.isDone(request)) {
+                return new Page<>(items, position.encode());
+            }
+        }
+        return new Page<>(items, null);
+    }
+}
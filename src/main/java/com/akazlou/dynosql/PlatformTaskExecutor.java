@@ -0,0 +1,49 @@
+package com.akazlou.dynosql;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * {@link TaskExecutor} backed by the fixed pool of the daemon platform threads.
+ *
+ * <p>At most as many tasks as there are threads wait in the queue, the rest are rejected, so they are run by the
+ * calling thread (see {@link FanOut}) rather than queued behind the tasks of the other queries.</p>
+ */
+@ThreadSafe
+final class PlatformTaskExecutor implements TaskExecutor {
+    private final ThreadPoolExecutor pool;
+
+    PlatformTaskExecutor(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        pool.execute(task);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "dynosql-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.akazlou.dynosql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.amazonaws.annotation.Immutable;
+
+/**
+ * SQL query parsed once, with the {@code ?} placeholders for the values, ex.
+ * {@code select * from T where id = ? and ts between ? and ?}, created by {@link DynoSQL#prepare(String)}.
+ *
+ * <p>Values are bound using {@link #bind(Object...)}, which returns the new instance, so the same prepared query can
+ * be shared between the threads and bound with the different values. Supported values are the strings (and any other
+ * {@link CharSequence}) and the numbers.</p>
+ */
+@Immutable
+public final class PreparedQuery {
+    private static final char PLACEHOLDER = '?';
+    private static final char SINGLE_QUOTE = '\'';
+
+    private final String sql;
+    private final String[] fragments;
+    private final SQLQuery template;
+    private final String[] literals;
+
+    private PreparedQuery(final String sql,
+                          final String[] fragments,
+                          final SQLQuery template,
+                          final String[] literals) {
+        this.sql = sql;
+        this.fragments = fragments;
+        this.template = template;
+        this.literals = literals;
+    }
+
+    static PreparedQuery prepare(final String sql, final SQLParser parser) {
+        final String[] fragments = split(sql);
+        final StringBuilder numbered = new StringBuilder(fragments[0]);
+        for (int i = 1; i < fragments.length; i++) {
+            numbered.append(PLACEHOLDER).append(i).append(fragments[i]);
+        }
+        final Optional<SQLQuery> template = parser.parse(numbered.toString());
+        if (!template.isPresent()) {
+            throw new IllegalArgumentException(String.format("Was not able to parse SQL query %s", sql));
+        }
+        return new PreparedQuery(sql, fragments, template.get(), null);
+    }
+
+    /**
+     * Binds the values to the placeholders in the order they appear in the query.
+     *
+     * @throws IllegalArgumentException if the number of the values doesn't match the number of the placeholders, or
+     *                                  the value is neither string nor number
+     */
+    public PreparedQuery bind(final Object... values) {
+        if (values.length != getParameterCount()) {
+            throw new IllegalArgumentException(String.format("Query %s expects %d values, but got %d",
+                    sql, getParameterCount(), values.length));
+        }
+        return new PreparedQuery(sql, fragments, template, Arrays.stream(values)
+                .map(PreparedQuery::toLiteral)
+                .toArray(String[]::new));
+    }
+
+    public int getParameterCount() {
+        return fragments.length - 1;
+    }
+
+    /**
+     * Returns the SQL query with the bound values in place of the placeholders.
+     */
+    public String getSql() {
+        if (literals == null) {
+            return sql;
+        }
+        final StringBuilder builder = new StringBuilder(fragments[0]);
+        for (int i = 1; i < fragments.length; i++) {
+            builder.append(literals[i - 1]).append(fragments[i]);
+        }
+        return builder.toString();
+    }
+
+    SQLQuery toQuery() {
+        if (getParameterCount() == 0) {
+            return template;
+        }
+        if (literals == null) {
+            throw new IllegalStateException(String.format("Values are not bound for the query %s", sql));
+        }
+        return template.mapValues(value -> isPlaceholder(value)
+                ? literals[Integer.parseInt(value.substring(1)) - 1]
+                : value);
+    }
+
+    private static boolean isPlaceholder(final String value) {
+        return value.length() > 1 && value.charAt(0) == PLACEHOLDER;
+    }
+
+    /**
+     * Splits the SQL query by the placeholders outside of the quoted strings.
+     */
+    private static String[] split(final String sql) {
+        final List<String> fragments = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (c == SINGLE_QUOTE) {
+                quoted = !quoted;
+            }
+            if (c == PLACEHOLDER && !quoted) {
+                fragments.add(builder.toString());
+                builder.setLength(0);
+            } else {
+                builder.append(c);
+            }
+        }
+        fragments.add(builder.toString());
+        return fragments.toArray(new String[0]);
+    }
+
+    private static String toLiteral(final Object value) {
+        if (value instanceof CharSequence || value instanceof Character) {
+            return SINGLE_QUOTE + value.toString() + SINGLE_QUOTE;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString()).toPlainString();
+        }
+        throw new IllegalArgumentException(String.format("Value %s must be either string or number", value));
+    }
+
+    @Override
+    public String toString() {
+        return getSql();
+    }
+}
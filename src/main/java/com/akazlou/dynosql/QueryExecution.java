@@ -0,0 +1,135 @@
+package com.akazlou.dynosql;
+
+/**
+ * State of the single SQL query execution, i.e. the parsed query, chosen read, write or join plan, statistics and the
+ * phases timing, which is reported as {@link QueryMetrics} once the query is done.
+ */
+final class QueryExecution {
+    private final String sql;
+    private final QueryStats stats;
+    private final long started = System.nanoTime();
+    // Elapsed time since the start, -1 if the phase was not reached
+    private long parsed = -1;
+    private long planned = -1;
+    private SQLQuery query;
+    private TableMetadata table;
+    private QueryPlan plan;
+    private WritePlan writePlan;
+    private JoinPlan joinPlan;
+    private SemiJoinPlan semiJoinPlan;
+
+    QueryExecution(final String sql, final QueryHandle handle) {
+        this.sql = sql;
+        this.stats = new QueryStats(handle);
+    }
+
+    void parsed(final SQLQuery query) {
+        this.parsed = System.nanoTime() - started;
+        this.query = query;
+    }
+
+    void planned(final TableMetadata table, final QueryPlan plan) {
+        this.planned = System.nanoTime() - started;
+        this.table = table;
+        this.plan = plan;
+    }
+
+    void planned(final TableMetadata table, final WritePlan writePlan) {
+        this.planned = System.nanoTime() - started;
+        this.table = table;
+        this.writePlan = writePlan;
+    }
+
+    void planned(final TableMetadata table, final JoinPlan joinPlan) {
+        this.planned = System.nanoTime() - started;
+        this.table = table;
+        this.joinPlan = joinPlan;
+    }
+
+    void planned(final TableMetadata table, final SemiJoinPlan semiJoinPlan) {
+        this.planned = System.nanoTime() - started;
+        this.table = table;
+        this.semiJoinPlan = semiJoinPlan;
+    }
+
+    /**
+     * Whether any of the read, write or join plans was chosen.
+     */
+    boolean isPlanned() {
+        return planned >= 0;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    QueryStats getStats() {
+        return stats;
+    }
+
+    SQLQuery getQuery() {
+        return query;
+    }
+
+    TableMetadata getTable() {
+        return table;
+    }
+
+    QueryPlan getPlan() {
+        return plan;
+    }
+
+    WritePlan getWritePlan() {
+        return writePlan;
+    }
+
+    JoinPlan getJoinPlan() {
+        return joinPlan;
+    }
+
+    SemiJoinPlan getSemiJoinPlan() {
+        return semiJoinPlan;
+    }
+
+    QueryMetrics toMetrics(final Throwable failure) {
+        final long finished = System.nanoTime() - started;
+        final long parseNanos = parsed < 0 ? finished : parsed;
+        final long planNanos = parsed < 0 ? 0 : (planned < 0 ? finished : planned) - parsed;
+        final long executeNanos = planned < 0 ? 0 : finished - planned;
+        final String operation;
+        final String indexName;
+        final String description;
+        if (plan != null) {
+            operation = plan.getOperation().name();
+            indexName = plan.getIndexName().orElse(null);
+            description = plan.toString();
+        } else if (writePlan != null) {
+            operation = writePlan.getOperation().name();
+            indexName = writePlan.getRead().flatMap(QueryPlan::getIndexName).orElse(null);
+            description = writePlan.toString();
+        } else if (joinPlan != null) {
+            operation = joinPlan.getStrategy().name() + "_JOIN";
+            indexName = joinPlan.getOuterPlan().getIndexName().orElse(null);
+            description = joinPlan.toString();
+        } else if (semiJoinPlan != null) {
+            operation = semiJoinPlan.getStrategy().name() + "_SEMI_JOIN";
+            indexName = semiJoinPlan.getPlan().flatMap(QueryPlan::getIndexName).orElse(null);
+            description = semiJoinPlan.toString();
+        } else {
+            operation = null;
+            indexName = null;
+            description = null;
+        }
+        return new QueryMetrics(
+                sql,
+                query == null ? null : query.getTableName(),
+                operation,
+                indexName,
+                description,
+                parseNanos,
+                planNanos,
+                executeNanos,
+                stats,
+                failure);
+    }
+}
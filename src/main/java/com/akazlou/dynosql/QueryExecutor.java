@@ -0,0 +1,241 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+/**
+ * Executes the {@link QueryPlan}, pushing the result page by page into the consumer, so the caller decides whether
+ * to accumulate or to stream the items.
+ *
+ * <p>The independent requests of the plan, i.e. {@code BatchGetItem} chunks, {@code Query} per HASH key value and
+ * the parallel {@code Scan} segments, run concurrently on the executor. The consumer is never called concurrently,
+ * but the pages of the different requests may interleave.</p>
+ */
+@ThreadSafe
+final class QueryExecutor {
+    private static final int MAX_BATCH_GET_KEYS = 100;
+
+    private final AmazonDynamoDB client;
+    private final Executor executor;
+
+    QueryExecutor(final AmazonDynamoDB client, final Executor executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    void execute(final QueryPlan plan,
+                 final QueryStats stats,
+                 final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        final List<Consumer<Consumer<List<Map<String, AttributeValue>>>>> requests = requests(plan, stats);
+        if (requests.size() == 1) {
+            requests.get(0).accept(consumer);
+            return;
+        }
+        final Object lock = new Object();
+        final Consumer<List<Map<String, AttributeValue>>> synchronizedConsumer = page -> {
+            synchronized (lock) {
+                consumer.accept(page);
+            }
+        };
+        final List<Runnable> tasks = new ArrayList<>(requests.size());
+        requests.forEach(request -> tasks.add(() -> request.accept(synchronizedConsumer)));
+        FanOut.run(executor, tasks);
+    }
+
+    /**
+     * Executes the plan, pushing the pages of the request {@code i} (i.e. {@code BatchGetItem} chunk, partition or
+     * scan segment in the plan order) into the {@code consumers.apply(i)}.
+     *
+     * <p>Consumers of the different requests are called concurrently, but every single consumer is called by one
+     * request only, so it doesn't need to be thread-safe. Returns the number of the requests.</p>
+     */
+    int executeRequests(final QueryPlan plan,
+                        final QueryStats stats,
+                        final IntFunction<Consumer<List<Map<String, AttributeValue>>>> consumers) {
+        final List<Consumer<Consumer<List<Map<String, AttributeValue>>>>> requests = requests(plan, stats);
+        final List<Runnable> tasks = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final Consumer<Consumer<List<Map<String, AttributeValue>>>> request = requests.get(i);
+            final int index = i;
+            tasks.add(() -> request.accept(consumers.apply(index)));
+        }
+        FanOut.run(executor, tasks);
+        return requests.size();
+    }
+
+    /**
+     * Number of the partitions or scan segments of the {@code Query} or {@code Scan} plan, which could be paged
+     * independently by {@link #executePage}.
+     */
+    static int getPagedRequests(final QueryPlan plan) {
+        switch (plan.getOperation()) {
+            case QUERY:
+                return plan.getQueries().size();
+            case SCAN:
+                return plan.getParallelism();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Makes the single call of the partition or scan segment {@code request} of the plan, starting after the
+     * {@code exclusiveStartKey} (or from the beginning if it is {@code null}) and evaluating at most {@code limit}
+     * items. Returns the {@code LastEvaluatedKey}, which is {@code null} or empty if the request is done.
+     */
+    Map<String, AttributeValue> executePage(final QueryPlan plan,
+                                            final int request,
+                                            final Map<String, AttributeValue> exclusiveStartKey,
+                                            final int limit,
+                                            final QueryStats stats,
+                                            final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        if (plan.getOperation() == QueryPlan.Operation.QUERY) {
+            final QueryRequest query = plan.getQueries().get(request);
+            final QueryResult result = stats.getHandle().call(query.clone()
+                    .withExclusiveStartKey(exclusiveStartKey)
+                    .withLimit(limit(query.getLimit(), limit)), client::query);
+            stats.recordCall(result.getConsumedCapacity());
+            stats.recordPage(result.getScannedCount(), result.getCount());
+            consumer.accept(result.getItems());
+            return result.getLastEvaluatedKey();
+        }
+        final int segments = plan.getParallelism();
+        final ScanRequest template = segments == 1
+                ? plan.getScan()
+                : plan.getScan().clone().withSegment(request).withTotalSegments(segments);
+        final ScanResult result = stats.getHandle().call(template.clone()
+                .withExclusiveStartKey(exclusiveStartKey)
+                .withLimit(limit(template.getLimit(), limit)), client::scan);
+        stats.recordCall(result.getConsumedCapacity());
+        stats.recordPage(result.getScannedCount(), result.getCount());
+        consumer.accept(result.getItems());
+        return result.getLastEvaluatedKey();
+    }
+
+    /**
+     * Reads the {@code keys} (at most 100) of the {@code BatchGetItem} plan, retrying the unprocessed ones.
+     */
+    void executeKeys(final QueryPlan plan,
+                     final List<Map<String, AttributeValue>> keys,
+                     final QueryStats stats,
+                     final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        get(plan.getTableName(), plan.getKeys().clone().withKeys(keys), stats, consumer);
+    }
+
+    private List<Consumer<Consumer<List<Map<String, AttributeValue>>>>> requests(final QueryPlan plan,
+                                                                                 final QueryStats stats) {
+        final List<Consumer<Consumer<List<Map<String, AttributeValue>>>>> requests = new ArrayList<>();
+        switch (plan.getOperation()) {
+            case GET:
+                final KeysAndAttributes keys = plan.getKeys();
+                final List<Map<String, AttributeValue>> allKeys = keys.getKeys();
+                for (int from = 0; from < allKeys.size(); from += MAX_BATCH_GET_KEYS) {
+                    final KeysAndAttributes chunk = keys.clone().withKeys(new ArrayList<>(
+                            allKeys.subList(from, Math.min(from + MAX_BATCH_GET_KEYS, allKeys.size()))));
+                    requests.add(pages -> get(plan.getTableName(), chunk, stats, pages));
+                }
+                break;
+            case QUERY:
+                for (final QueryRequest request : plan.getQueries()) {
+                    requests.add(pages -> query(request, stats, pages));
+                }
+                break;
+            case SCAN:
+                final int segments = plan.getParallelism();
+                for (int segment = 0; segment < segments; segment++) {
+                    final ScanRequest request = segments == 1
+                            ? plan.getScan()
+                            : plan.getScan().clone().withSegment(segment).withTotalSegments(segments);
+                    requests.add(pages -> scan(request, stats, pages));
+                }
+                break;
+            case NONE:
+                break;
+            default:
+                throw new UnsupportedOperationException(
+                        String.format("Operation %s is not supported", plan.getOperation()));
+        }
+        return requests;
+    }
+
+    private void query(final QueryRequest template,
+                       final QueryStats stats,
+                       final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            final QueryResult result = stats.getHandle().call(
+                    template.clone().withExclusiveStartKey(lastEvaluatedKey), client::query);
+            stats.recordCall(result.getConsumedCapacity());
+            stats.recordPage(result.getScannedCount(), result.getCount());
+            consumer.accept(result.getItems());
+            lastEvaluatedKey = result.getLastEvaluatedKey();
+        } while (hasMore(lastEvaluatedKey));
+    }
+
+    private void scan(final ScanRequest template,
+                      final QueryStats stats,
+                      final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            final ScanResult result = stats.getHandle().call(
+                    template.clone().withExclusiveStartKey(lastEvaluatedKey), client::scan);
+            stats.recordCall(result.getConsumedCapacity());
+            stats.recordPage(result.getScannedCount(), result.getCount());
+            consumer.accept(result.getItems());
+            lastEvaluatedKey = result.getLastEvaluatedKey();
+        } while (hasMore(lastEvaluatedKey));
+    }
+
+    private void get(final String tableName,
+                     final KeysAndAttributes keys,
+                     final QueryStats stats,
+                     final Consumer<List<Map<String, AttributeValue>>> consumer) {
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName, keys);
+        int attempt = 0;
+        while (!requestItems.isEmpty()) {
+            if (attempt > 0) {
+                Backoff.sleep(attempt, stats.getHandle(), "Interrupted while retrying the unprocessed keys");
+            }
+            final BatchGetItemResult result = stats.getHandle().call(new BatchGetItemRequest()
+                    .withRequestItems(requestItems)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), client::batchGetItem);
+            stats.recordCall(result.getConsumedCapacity());
+            final List<Map<String, AttributeValue>> items =
+                    result.getResponses().getOrDefault(tableName, Collections.emptyList());
+            stats.recordPage(items.size(), items.size());
+            consumer.accept(items);
+            requestItems = result.getUnprocessedKeys() == null
+                    ? Collections.emptyMap()
+                    : result.getUnprocessedKeys();
+            attempt++;
+        }
+    }
+
+    /**
+     * The smaller of the {@code PAGE_SIZE} hint of the request (if any) and the page {@code limit}.
+     */
+    private static int limit(final Integer pageSize, final int limit) {
+        return pageSize == null ? limit : Math.min(pageSize, limit);
+    }
+
+    private static boolean hasMore(final Map<String, AttributeValue> lastEvaluatedKey) {
+        return lastEvaluatedKey != null && !lastEvaluatedKey.isEmpty();
+    }
+}
@@ -0,0 +1,202 @@
+package com.akazlou.dynosql;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Describes the {@link QueryPlan} as the single result row of the {@code EXPLAIN} (and {@code EXPLAIN ANALYZE})
+ * query.
+ *
+ * <p>The estimated read capacity is based on the table item count and size from the {@code DescribeTable}, which
+ * DynamoDB refreshes approximately every six hours. {@code GetItem} reads one average item per key, {@code Scan}
+ * reads the whole table, and {@code Query} reads one average item per partition if it runs on the table primary key
+ * without the RANGE key, otherwise (including the global secondary index, which HASH key is not unique) it is bounded
+ * by the single 1 MB page per partition. The strongly consistent reads ({@code CONSISTENT} hint) cost twice as much
+ * as the eventually consistent ones.</p>
+ *
+ * <p>The estimates of the different operations are not directly comparable: {@code GetItem} rounds every key up to
+ * the whole 4 KB read unit, as DynamoDB does, while {@code Scan} rounds the size of the whole table up only once, so
+ * it is the aggregate lower bound, as DynamoDB rounds up every page of the scan.</p>
+ */
+final class QueryExplainer {
+    private static final long READ_UNIT_BYTES = 4 * 1024;
+    private static final long MAX_PAGE_BYTES = 1024 * 1024;
+    private static final double EVENTUALLY_CONSISTENT_FACTOR = 0.5;
+    private static final Pattern PLACEHOLDER = Pattern.compile("[#:]\\w+");
+
+    Map<String, AttributeValue> explain(final QueryPlan plan, final TableMetadata table) {
+        final Map<String, AttributeValue> row = new LinkedHashMap<>();
+        row.put("operation", string(plan.getOperation().name()));
+        row.put("table", string(plan.getTableName()));
+        plan.getIndexName().ifPresent(index -> row.put("index", string(index)));
+        plan.getKeyConditionExpression()
+                .ifPresent(expression -> row.put("keyConditionExpression", string(render(expression, plan))));
+        plan.getFilterExpression()
+                .ifPresent(expression -> row.put("filterExpression", string(render(expression, plan))));
+        plan.getProjectionExpression()
+                .ifPresent(expression -> row.put("projectionExpression", string(render(expression, plan))));
+        if (plan.getOperation() == QueryPlan.Operation.GET) {
+            row.put("keys", new AttributeValue().withL(plan.getKeys().getKeys().stream()
+                    .map(key -> new AttributeValue().withM(key))
+                    .toArray(AttributeValue[]::new)));
+        }
+        row.put("partitions", number(plan.getPartitions()));
+        row.put("parallelism", number(plan.getParallelism()));
+        if (plan.isConsistentRead()) {
+            row.put("consistentRead", new AttributeValue().withBOOL(true));
+        }
+        row.put("estimatedReadCapacityUnits", number(estimateReadCapacity(plan, table)));
+        return row;
+    }
+
+    /**
+     * Describes the join by the plans of its sides, the nested-loop join lookups of the inner side are planned per
+     * batch of the outer values at run time, so only the inner join column is reported, and the lookups are not
+     * included into the estimated read capacity.
+     */
+    Map<String, AttributeValue> explain(final JoinPlan plan) {
+        final Map<String, AttributeValue> row = new LinkedHashMap<>();
+        row.put("operation", string(plan.getStrategy().name() + "_JOIN"));
+        row.put("on", string(String.format("%s.%s = %s.%s",
+                plan.getOuter().getQualifier(), plan.getOuter().getJoinColumn(),
+                plan.getInner().getQualifier(), plan.getInner().getJoinColumn())));
+        row.put("outer", new AttributeValue().withM(explain(plan.getOuterPlan(), plan.getOuter().getTable())));
+        double units = estimateReadCapacity(plan.getOuterPlan(), plan.getOuter().getTable());
+        if (plan.getInnerPlan() != null) {
+            row.put("build", new AttributeValue().withM(explain(plan.getInnerPlan(), plan.getInner().getTable())));
+            units += estimateReadCapacity(plan.getInnerPlan(), plan.getInner().getTable());
+        } else {
+            row.put("lookup", string(plan.getInner().getTable().getTableName() + '.'
+                    + plan.getInner().getJoinColumn()));
+        }
+        row.put("estimatedReadCapacityUnits", number(units));
+        return row;
+    }
+
+    /**
+     * Describes the semi-join by the plan of the subquery and the filtered outer table, the lookups are planned per
+     * batch of the subquery values at run time, the same way as of the nested-loop join.
+     */
+    Map<String, AttributeValue> explain(final SemiJoinPlan plan) {
+        final Map<String, AttributeValue> row = new LinkedHashMap<>();
+        row.put("operation", string(plan.getStrategy().name() + "_SEMI_JOIN"));
+        row.put("in", string(plan.getColumn()));
+        row.put("subquery", new AttributeValue().withM(explain(plan.getSubqueryPlan(), plan.getSubqueryTable())));
+        double units = estimateReadCapacity(plan.getSubqueryPlan(), plan.getSubqueryTable());
+        if (plan.getPlan().isPresent()) {
+            row.put("filter", new AttributeValue().withM(explain(plan.getPlan().get(), plan.getTable())));
+            units += estimateReadCapacity(plan.getPlan().get(), plan.getTable());
+        } else {
+            row.put("lookup", string(plan.getTable().getTableName() + '.' + plan.getColumn()));
+        }
+        row.put("estimatedReadCapacityUnits", number(units));
+        return row;
+    }
+
+    Map<String, AttributeValue> analyze(final QueryPlan plan,
+                                        final TableMetadata table,
+                                        final QueryStats stats,
+                                        final long executeNanos) {
+        return analyzed(explain(plan, table), stats, executeNanos);
+    }
+
+    Map<String, AttributeValue> analyze(final JoinPlan plan, final QueryStats stats, final long executeNanos) {
+        return analyzed(explain(plan), stats, executeNanos);
+    }
+
+    Map<String, AttributeValue> analyze(final SemiJoinPlan plan, final QueryStats stats, final long executeNanos) {
+        return analyzed(explain(plan), stats, executeNanos);
+    }
+
+    private static Map<String, AttributeValue> analyzed(final Map<String, AttributeValue> row,
+                                                        final QueryStats stats,
+                                                        final long executeNanos) {
+        row.put("executionMillis", number(TimeUnit.NANOSECONDS.toMillis(executeNanos)));
+        row.put("calls", number(stats.getCalls()));
+        row.put("pages", number(stats.getPages()));
+        row.put("scannedCount", number(stats.getScannedCount()));
+        row.put("returnedCount", number(stats.getReturnedCount()));
+        row.put("resultBytes", number(stats.getResultBytes()));
+        row.put("consumedCapacity", number(stats.getConsumedCapacity()));
+        return row;
+    }
+
+    double estimateReadCapacity(final QueryPlan plan, final TableMetadata table) {
+        final long averageItemBytes = table.getItemCount() == 0 ? 0 : table.getSizeBytes() / table.getItemCount();
+        final double units;
+        switch (plan.getOperation()) {
+            case GET:
+                units = plan.getKeys().getKeys().size() * readUnits(averageItemBytes);
+                break;
+            case QUERY:
+                // Only the primary key without the RANGE key is unique, the HASH key of the global index is not
+                final boolean singleItem = !plan.getIndexName().isPresent()
+                        && !table.getPrimaryKey().getRangeKey().isPresent();
+                units = plan.getPartitions() * readUnits(
+                        singleItem ? averageItemBytes : Math.min(table.getSizeBytes(), MAX_PAGE_BYTES));
+                break;
+            case NONE:
+                units = 0;
+                break;
+            default:
+                units = readUnits(table.getSizeBytes());
+        }
+        return plan.isConsistentRead() ? units : units * EVENTUALLY_CONSISTENT_FACTOR;
+    }
+
+    private static long readUnits(final long bytes) {
+        return Math.max(1, (bytes + READ_UNIT_BYTES - 1) / READ_UNIT_BYTES);
+    }
+
+    /**
+     * Replaces the expression attribute names and values placeholders with the actual names and values.
+     */
+    static String render(final String expression, final QueryPlan plan) {
+        final Map<String, String> names = plan.getExpressionAttributeNames();
+        final Map<String, AttributeValue> values = plan.getExpressionAttributeValues();
+        final Matcher matcher = PLACEHOLDER.matcher(expression);
+        final StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            final String placeholder = matcher.group();
+            final String replacement;
+            if (names.containsKey(placeholder)) {
+                replacement = names.get(placeholder);
+            } else if (values.containsKey(placeholder)) {
+                replacement = literal(values.get(placeholder));
+            } else {
+                replacement = placeholder;
+            }
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    private static String literal(final AttributeValue value) {
+        if (value.getS() != null) {
+            return "'" + value.getS() + "'";
+        }
+        if (value.getN() != null) {
+            return value.getN();
+        }
+        return value.toString();
+    }
+
+    private static AttributeValue string(final String value) {
+        return new AttributeValue().withS(value);
+    }
+
+    private static AttributeValue number(final long value) {
+        return new AttributeValue().withN(Long.toString(value));
+    }
+
+    private static AttributeValue number(final double value) {
+        return new AttributeValue().withN(BigDecimal.valueOf(value).stripTrailingZeros().toPlainString());
+    }
+}
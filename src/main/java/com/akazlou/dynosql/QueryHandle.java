@@ -0,0 +1,170 @@
+package com.akazlou.dynosql;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+
+/**
+ * Timeout and cancellation of the running query, passed to ex. {@link DynoSQL#query(String, QueryHandle)}.
+ *
+ * <p>Every DynamoDB call of the query, i.e. every page, parallel scan segment and {@code BatchGetItem} chunk, goes
+ * through the handle, and so do the backoff sleeps between the retries of the unprocessed keys. Once the handle is
+ * cancelled, or its timeout (counted from the creation of the handle) has passed, no further call is made. The query
+ * then fails with {@link AbortedException} if it is cancelled, or {@link ClientExecutionTimeoutException} if it has
+ * timed out.</p>
+ *
+ * <p>The time left is set as the SDK client execution timeout of every call, so the call in flight is aborted once the
+ * timeout passes. The cancellation only interrupts the threads making the calls, which stops the backoff sleeps and
+ * the SDK retries, but not the HTTP request already waiting for the DynamoDB response: such a call completes (or hits
+ * the socket timeout) before the query fails, as the SDK client provides no way to abort the request on demand.</p>
+ *
+ * <p>The handle could be cancelled from any thread, and is meant for the single query, but cancels all the queries it
+ * is passed to.</p>
+ */
+@ThreadSafe
+public final class QueryHandle {
+    private final long timeoutMillis;
+    private final long deadline;
+    // Threads making the DynamoDB calls, and those of them interrupted by the cancellation, guarded by calling
+    private final Set<Thread> calling = new HashSet<>();
+    private final Set<Thread> interrupted = new HashSet<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Handle without the timeout, the query is stopped by {@link #cancel()} only.
+     */
+    public QueryHandle() {
+        this(0);
+    }
+
+    private QueryHandle(final long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Handle of the query, which must complete within the {@code timeoutMillis} from now.
+     *
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public static QueryHandle withTimeout(final long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Query timeout must be positive");
+        }
+        return new QueryHandle(timeoutMillis);
+    }
+
+    /**
+     * Handle with the optional timeout, {@code 0} means no timeout.
+     */
+    static QueryHandle of(final long timeoutMillis) {
+        return new QueryHandle(timeoutMillis);
+    }
+
+    /**
+     * Stops the query, interrupting the threads making its DynamoDB calls, no-op if the query is already done.
+     */
+    public void cancel() {
+        synchronized (calling) {
+            cancelled = true;
+            for (final Thread thread : calling) {
+                // The thread already interrupted by someone else keeps its interrupt after the call
+                if (!thread.isInterrupted()) {
+                    thread.interrupt();
+                    interrupted.add(thread);
+                }
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws if the query is cancelled or has timed out.
+     */
+    void check() {
+        if (cancelled) {
+            throw cancellation();
+        }
+        if (timeoutMillis > 0 && remainingMillis() <= 0) {
+            throw new ClientExecutionTimeoutException(
+                    String.format("Query has not completed within the timeout of %d ms", timeoutMillis));
+        }
+    }
+
+    /**
+     * Makes the DynamoDB {@code call} of the {@code request}, unless the query is cancelled or has timed out, limiting
+     * the call by the time left.
+     */
+    <R extends AmazonWebServiceRequest, T> T call(final R request, final Function<R, T> call) {
+        check();
+        if (timeoutMillis > 0) {
+            request.setSdkClientExecutionTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, remainingMillis())));
+        }
+        final Thread thread = enter();
+        try {
+            // Could be cancelled right before the thread is registered
+            check();
+            return call.apply(request);
+        } catch (final AbortedException | ClientExecutionTimeoutException ex) {
+            // Reported as the cancellation or timeout of the whole query rather than of the single call
+            check();
+            throw ex;
+        } finally {
+            exit(thread);
+        }
+    }
+
+    /**
+     * Sleeps for the {@code millis}, but no longer than the time left, unless the query is cancelled or has timed out.
+     */
+    void sleep(final long millis, final String message) {
+        final Thread thread = enter();
+        try {
+            check();
+            Thread.sleep(timeoutMillis > 0 ? Math.min(millis, Math.max(0, remainingMillis())) : millis);
+        } catch (final InterruptedException ex) {
+            if (cancelled) {
+                throw cancellation();
+            }
+            Thread.currentThread().interrupt();
+            throw new AbortedException(message, ex);
+        } finally {
+            exit(thread);
+        }
+    }
+
+    private Thread enter() {
+        final Thread thread = Thread.currentThread();
+        synchronized (calling) {
+            calling.add(thread);
+        }
+        return thread;
+    }
+
+    private void exit(final Thread thread) {
+        synchronized (calling) {
+            calling.remove(thread);
+            if (interrupted.remove(thread)) {
+                // The interrupt is meant for the call only, not for the rest of the work of the (pool) thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static AbortedException cancellation() {
+        return new AbortedException("Query was cancelled");
+    }
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,15 @@
+package com.akazlou.dynosql;
+
+/**
+ * Receives the {@link QueryMetrics} of every SQL query executed by {@link DynoSQL}.
+ *
+ * <p>Listener is called synchronously on the query thread, right after the query has finished (either successfully
+ * or not), so implementations must be thread-safe and cheap. Exceptions thrown by the listener are logged and
+ * otherwise ignored.</p>
+ *
+ * @see HistogramQueryListener
+ */
+@FunctionalInterface
+public interface QueryListener {
+    void onQuery(QueryMetrics metrics);
+}
@@ -0,0 +1,194 @@
+package com.akazlou.dynosql;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the single SQL query execution, reported to the {@link QueryListener}-s.
+ *
+ * <p>All the durations are in nanoseconds. Counters are accumulated over all the DynamoDB calls made by the query,
+ * i.e. over all the pages, partitions and batches.</p>
+ */
+public final class QueryMetrics {
+    private final String sql;
+    private final String shape;
+    private final String tableName;
+    private final String operation;
+    private final String indexName;
+    private final String plan;
+    private final long parseNanos;
+    private final long planNanos;
+    private final long executeNanos;
+    private final long calls;
+    private final long pages;
+    private final double consumedCapacity;
+    private final long scannedCount;
+    private final long returnedCount;
+    private final long resultBytes;
+    private final long cacheHits;
+    private final Throwable failure;
+
+    QueryMetrics(final String sql,
+                 final String tableName,
+                 final String operation,
+                 final String indexName,
+                 final String plan,
+                 final long parseNanos,
+                 final long planNanos,
+                 final long executeNanos,
+                 final QueryStats stats,
+                 final Throwable failure) {
+        this.sql = sql;
+        this.shape = StatementShape.of(sql);
+        this.tableName = tableName;
+        this.operation = operation;
+        this.indexName = indexName;
+        this.plan = plan;
+        this.parseNanos = parseNanos;
+        this.planNanos = planNanos;
+        this.executeNanos = executeNanos;
+        this.calls = stats.getCalls();
+        this.pages = stats.getPages();
+        this.consumedCapacity = stats.getConsumedCapacity();
+        this.scannedCount = stats.getScannedCount();
+        this.returnedCount = stats.getReturnedCount();
+        this.resultBytes = stats.getResultBytes();
+        this.cacheHits = stats.getCacheHits();
+        this.failure = failure;
+    }
+
+    /**
+     * SQL query as it was passed to {@link DynoSQL}.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * SQL query with all the literal values replaced by {@code ?}, used to group the same queries together.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Name of the queried table, or empty if the query could not be parsed.
+     */
+    public Optional<String> getTableName() {
+        return Optional.ofNullable(tableName);
+    }
+
+    /**
+     * Chosen DynamoDB operation, i.e. {@code GET} ({@code BatchGetItem}), {@code QUERY} or {@code SCAN} for the reads,
+     * and {@code PUT}, {@code UPDATE} or {@code DELETE} for the writes, or empty if the query has failed before it was
+     * planned.
+     */
+    public Optional<String> getOperation() {
+        return Optional.ofNullable(operation);
+    }
+
+    /**
+     * Secondary index used by the query, if any.
+     */
+    public Optional<String> getIndexName() {
+        return Optional.ofNullable(indexName);
+    }
+
+    /**
+     * Textual representation of the physical plan, if the query was planned.
+     */
+    public Optional<String> getPlan() {
+        return Optional.ofNullable(plan);
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Time spent on the planning, including the table metadata lookup.
+     */
+    public long getPlanNanos() {
+        return planNanos;
+    }
+
+    /**
+     * Time spent on the execution, including the DynamoDB calls and the result mapping.
+     */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public long getTotalNanos() {
+        return parseNanos + planNanos + executeNanos;
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getTotalNanos());
+    }
+
+    /**
+     * Number of the DynamoDB calls, including the retries of the unprocessed keys.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Number of the result pages returned by DynamoDB.
+     */
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * Total capacity units consumed by the query, as reported by DynamoDB.
+     */
+    public double getConsumedCapacity() {
+        return consumedCapacity;
+    }
+
+    /**
+     * Number of the items evaluated by DynamoDB before the filter expression was applied.
+     */
+    public long getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * Number of the items returned by DynamoDB after the filter expression was applied.
+     */
+    public long getReturnedCount() {
+        return returnedCount;
+    }
+
+    /**
+     * Estimated size of the returned items, following the DynamoDB item size rules.
+     */
+    public long getResultBytes() {
+        return resultBytes;
+    }
+
+    /**
+     * Number of the lookups served from the cache (ex. table metadata, or the result shared with the identical query
+     * in flight) instead of calling DynamoDB.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Failure of the query, if any.
+     */
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryMetrics{sql='%s', plan=%s, parse=%dns, plan=%dns, execute=%dns, calls=%d, pages=%d, "
+                        + "consumedCapacity=%.1f, scanned=%d, returned=%d, resultBytes=%d, cacheHits=%d, failure=%s}",
+                sql, plan, parseNanos, planNanos, executeNanos, calls, pages, consumedCapacity, scannedCount,
+                returnedCount, resultBytes, cacheHits, failure);
+    }
+}
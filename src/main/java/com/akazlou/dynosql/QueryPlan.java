@@ -0,0 +1,248 @@
+package com.akazlou.dynosql;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+
+/**
+ * Physical plan of the SQL query, i.e. which DynamoDB operation(s) to run to get the result.
+ *
+ * <p>Plan holds the fully prepared requests, which are cloned by the executor for every page.</p>
+ */
+final class QueryPlan {
+    enum Operation {
+        /**
+         * {@code BatchGetItem} for the fully specified primary keys.
+         */
+        GET,
+        /**
+         * {@code Query} per every HASH key value, either against table or the secondary index.
+         */
+        QUERY,
+        /**
+         * {@code Scan} of the table, with all the conditions applied as the filter expression.
+         */
+        SCAN,
+        /**
+         * No DynamoDB call at all, as the conditions are always false, so the result is empty.
+         */
+        NONE
+    }
+
+    private final Operation operation;
+    private final String tableName;
+    private final String indexName;
+    private final KeysAndAttributes keys;
+    private final List<QueryRequest> queries;
+    private final ScanRequest scan;
+    private final int parallelism;
+
+    private QueryPlan(final Operation operation,
+                      final String tableName,
+                      final String indexName,
+                      final KeysAndAttributes keys,
+                      final List<QueryRequest> queries,
+                      final ScanRequest scan,
+                      final int parallelism) {
+        this.operation = operation;
+        this.tableName = tableName;
+        this.indexName = indexName;
+        this.keys = keys;
+        this.queries = queries;
+        this.scan = scan;
+        this.parallelism = parallelism;
+    }
+
+    static QueryPlan get(final String tableName, final KeysAndAttributes keys) {
+        return new QueryPlan(Operation.GET, tableName, null, keys, Collections.emptyList(), null, 1);
+    }
+
+    static QueryPlan query(final String tableName, final String indexName, final List<QueryRequest> queries) {
+        return new QueryPlan(
+                Operation.QUERY, tableName, indexName, null, Collections.unmodifiableList(queries), null, 1);
+    }
+
+    static QueryPlan scan(final String tableName, final ScanRequest scan, final int segments) {
+        return scan(tableName, null, scan, segments);
+    }
+
+    static QueryPlan scan(final String tableName, final String indexName, final ScanRequest scan, final int segments) {
+        return new QueryPlan(Operation.SCAN, tableName, indexName, null, Collections.emptyList(), scan, segments);
+    }
+
+    static QueryPlan none(final String tableName) {
+        return new QueryPlan(Operation.NONE, tableName, null, null, Collections.emptyList(), null, 1);
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    Optional<String> getIndexName() {
+        return Optional.ofNullable(indexName);
+    }
+
+    KeysAndAttributes getKeys() {
+        return keys;
+    }
+
+    List<QueryRequest> getQueries() {
+        return queries;
+    }
+
+    ScanRequest getScan() {
+        return scan;
+    }
+
+    /**
+     * Number of the parallel scan segments, 1 for the other operations.
+     */
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Whether the plan requests the strongly consistent reads.
+     */
+    boolean isConsistentRead() {
+        switch (operation) {
+            case GET:
+                return Boolean.TRUE.equals(keys.getConsistentRead());
+            case QUERY:
+                return queries.stream().anyMatch(query -> Boolean.TRUE.equals(query.getConsistentRead()));
+            case NONE:
+                return false;
+            default:
+                return Boolean.TRUE.equals(scan.getConsistentRead());
+        }
+    }
+
+    /**
+     * Number of the independent DynamoDB requests, i.e. keys to get or partitions to query.
+     */
+    int getPartitions() {
+        switch (operation) {
+            case GET:
+                return keys.getKeys().size();
+            case QUERY:
+                return queries.size();
+            case NONE:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Names and values of the placeholders used in the expressions of the (first) request.
+     */
+    Map<String, String> getExpressionAttributeNames() {
+        final Map<String, String> names;
+        switch (operation) {
+            case GET:
+                names = keys.getExpressionAttributeNames();
+                break;
+            case QUERY:
+                names = queries.get(0).getExpressionAttributeNames();
+                break;
+            case NONE:
+                names = null;
+                break;
+            default:
+                names = scan.getExpressionAttributeNames();
+        }
+        return names == null ? Collections.emptyMap() : names;
+    }
+
+    Map<String, AttributeValue> getExpressionAttributeValues() {
+        final Map<String, AttributeValue> values;
+        switch (operation) {
+            case QUERY:
+                values = queries.get(0).getExpressionAttributeValues();
+                break;
+            case SCAN:
+                values = scan.getExpressionAttributeValues();
+                break;
+            default:
+                values = null;
+        }
+        return values == null ? Collections.emptyMap() : values;
+    }
+
+    Optional<String> getKeyConditionExpression() {
+        return queries.stream().findFirst().map(QueryRequest::getKeyConditionExpression);
+    }
+
+    Optional<String> getFilterExpression() {
+        switch (operation) {
+            case QUERY:
+                return queries.stream().findFirst().map(QueryRequest::getFilterExpression);
+            case SCAN:
+                return Optional.ofNullable(scan.getFilterExpression());
+            default:
+                return Optional.empty();
+        }
+    }
+
+    Optional<String> getProjectionExpression() {
+        switch (operation) {
+            case GET:
+                return Optional.ofNullable(keys.getProjectionExpression());
+            case QUERY:
+                return queries.stream().findFirst().map(QueryRequest::getProjectionExpression);
+            case SCAN:
+                return Optional.ofNullable(scan.getProjectionExpression());
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryPlan)) {
+            return false;
+        }
+        final QueryPlan plan = (QueryPlan) o;
+        return operation == plan.operation &&
+                Objects.equals(tableName, plan.tableName) &&
+                Objects.equals(indexName, plan.indexName) &&
+                Objects.equals(keys, plan.keys) &&
+                Objects.equals(queries, plan.queries) &&
+                Objects.equals(scan, plan.scan) &&
+                parallelism == plan.parallelism;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(operation, tableName, indexName, keys, queries, scan, parallelism);
+    }
+
+    @Override
+    public String toString() {
+        switch (operation) {
+            case GET:
+                return String.format("%s %s keys %s", operation, tableName, keys.getKeys());
+            case QUERY:
+                return String.format("%s %s%s %s", operation, tableName,
+                        indexName == null ? "" : "." + indexName, queries);
+            case NONE:
+                return String.format("%s %s", operation, tableName);
+            default:
+                return String.format("%s %s %s", operation, tableName, scan);
+        }
+    }
+}
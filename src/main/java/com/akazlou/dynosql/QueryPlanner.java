@@ -0,0 +1,305 @@
+package com.akazlou.dynosql;
+
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.BETWEEN;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.EQ;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.GE;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.GT;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.IN;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.LE;
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.LT;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.akazlou.dynosql.SQLQuery.Expr;
+import com.akazlou.dynosql.SQLQuery.Scalar;
+import com.akazlou.dynosql.SQLQuery.Scalar.Operation;
+import com.akazlou.dynosql.TableMetadata.KeySchema;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.xspec.Condition;
+import com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder;
+import com.amazonaws.services.dynamodbv2.xspec.GetItemExpressionSpec;
+import com.amazonaws.services.dynamodbv2.xspec.QueryExpressionSpec;
+import com.amazonaws.services.dynamodbv2.xspec.ScanExpressionSpec;
+
+/**
+ * Chooses the physical plan for the parsed SQL query.
+ *
+ * <p>The WHERE conditions are split into the AND-ed terms, and the primary key together with every secondary index
+ * (which projects all the referenced attributes) is checked whether its HASH key is bound by either {@code =} or
+ * {@code IN}. The one which also has its RANGE key bound wins, with the table itself preferred over the indexes. If
+ * the primary key is fully bound by the equalities only, and there are no other conditions, the plan is
+ * {@code BatchGetItem}, otherwise {@code Query} per every HASH key value (with the rest of the conditions as the
+ * filter). If no HASH key is bound the plan falls back to {@code Scan}.</p>
+ *
+ * <p>The conditions are simplified by the {@link ExprRewriter} first, and if they are always false the plan is
+ * {@link QueryPlan.Operation#NONE}, which makes no DynamoDB call.</p>
+ *
+ * <p>The {@link SQLQuery.Hints} override these choices: {@code INDEX} restricts the candidates to the named index
+ * (which is scanned if its HASH key is not bound), {@code CONSISTENT} requests the strongly consistent reads and so
+ * excludes the global secondary indexes, {@code PARALLEL} sets the number of the scan segments and
+ * {@code PAGE_SIZE} sets the {@code Limit} of every {@code Query} and {@code Scan} call.</p>
+ */
+final class QueryPlanner {
+    private static final String ALL_COLUMNS = "*";
+    private static final Set<Operation> HASH_OPERATIONS = Collections.unmodifiableSet(EnumSet.of(EQ, IN));
+    private static final Set<Operation> RANGE_OPERATIONS =
+            Collections.unmodifiableSet(EnumSet.of(EQ, LT, LE, GT, GE, BETWEEN));
+
+    private final int scanSegments;
+
+    QueryPlanner() {
+        this(1);
+    }
+
+    /**
+     * @param scanSegments number of the segments the {@code Scan} is split into, to run them in parallel
+     */
+    QueryPlanner(final int scanSegments) {
+        this.scanSegments = scanSegments;
+    }
+
+    QueryPlan plan(final SQLQuery query, final TableMetadata table) {
+        return ExprRewriter.rewrite(query)
+                .map(rewritten -> planRewritten(rewritten, table))
+                .orElseGet(() -> QueryPlan.none(table.getTableName()));
+    }
+
+    private QueryPlan planRewritten(final SQLQuery query, final TableMetadata table) {
+        final List<Expr> conjuncts = query.getConditions()
+                .map(QueryPlanner::conjuncts)
+                .orElse(Collections.emptyList());
+        final Set<String> attributes = new HashSet<>();
+        query.getColumns().forEach(column -> attributes.add(column.getName()));
+        query.getOrderBy().forEach(order -> attributes.add(query.attributeOf(order)));
+        query.getConditions().ifPresent(conditions -> collectColumnNames(conditions, attributes));
+
+        final SQLQuery.Hints hints = query.getHints();
+        final List<KeySchema> schemas = new ArrayList<>();
+        if (hints.getIndex().isPresent()) {
+            schemas.add(hintedIndex(hints, table, attributes));
+        } else {
+            schemas.add(table.getPrimaryKey());
+            for (final KeySchema index : table.getIndexes()) {
+                if (!hints.isConsistent() || !index.isGlobal()) {
+                    schemas.add(index);
+                }
+            }
+        }
+        KeySchema best = null;
+        Scalar<?> bestHash = null;
+        Scalar<?> bestRange = null;
+        for (final KeySchema schema : schemas) {
+            if (!schema.covers(attributes)) {
+                continue;
+            }
+            final Optional<Scalar<?>> hash = find(conjuncts, schema.getHashKey(), HASH_OPERATIONS);
+            if (!hash.isPresent()) {
+                continue;
+            }
+            final Optional<Scalar<?>> range = schema.getRangeKey()
+                    .flatMap(rangeKey -> find(conjuncts, rangeKey, RANGE_OPERATIONS));
+            if (best == null || (bestRange == null && range.isPresent())) {
+                best = schema;
+                bestHash = hash.get();
+                bestRange = range.orElse(null);
+            }
+        }
+        if (best == null) {
+            return scan(query, table, hints.getIndex().isPresent() ? schemas.get(0) : table.getPrimaryKey());
+        }
+        final List<Expr> rest = new ArrayList<>(conjuncts);
+        rest.remove(bestHash);
+        rest.remove(bestRange);
+        final boolean primaryKeyBound = best == table.getPrimaryKey()
+                && (!best.getRangeKey().isPresent() || (bestRange != null && bestRange.getOperation() == EQ));
+        if (primaryKeyBound && rest.isEmpty()) {
+            return get(query, table, bestHash, bestRange);
+        }
+        return query(query, table, best, bestHash, bestRange, rest);
+    }
+
+    private QueryPlan get(final SQLQuery query,
+                          final TableMetadata table,
+                          final Scalar<?> hash,
+                          final Scalar<?> range) {
+        final List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (final String value : hash.values()) {
+            final Map<String, AttributeValue> key = new HashMap<>();
+            key.put(hash.getColumnName(), Literals.toAttributeValue(value));
+            if (range != null) {
+                key.put(range.getColumnName(), Literals.toAttributeValue(range.values()[0]));
+            }
+            keys.add(key);
+        }
+        final KeysAndAttributes keysAndAttributes = new KeysAndAttributes()
+                .withKeys(keys)
+                .withConsistentRead(consistentRead(query));
+        final List<String> projection = projection(query);
+        if (!projection.isEmpty()) {
+            final ExpressionSpecBuilder builder = new ExpressionSpecBuilder();
+            projection.forEach(builder::addProjection);
+            final GetItemExpressionSpec spec = builder.buildForGetItem();
+            keysAndAttributes
+                    .withProjectionExpression(spec.getProjectionExpression())
+                    .withExpressionAttributeNames(spec.getNameMap());
+        }
+        return QueryPlan.get(table.getTableName(), keysAndAttributes);
+    }
+
+    private QueryPlan query(final SQLQuery query,
+                            final TableMetadata table,
+                            final KeySchema schema,
+                            final Scalar<?> hash,
+                            final Scalar<?> range,
+                            final List<Expr> rest) {
+        final Optional<Condition> filter = and(rest);
+        final List<String> projection = projection(query);
+        final List<QueryRequest> requests = new ArrayList<>();
+        for (final String value : hash.values()) {
+            final ExpressionSpecBuilder builder = new ExpressionSpecBuilder();
+            Condition keyCondition = EQ.toCondition(hash.getColumnName(), value);
+            if (range != null) {
+                keyCondition = keyCondition.and(range.toCondition());
+            }
+            builder.withKeyCondition(keyCondition);
+            filter.ifPresent(builder::withCondition);
+            projection.forEach(builder::addProjection);
+            final QueryExpressionSpec spec = builder.buildForQuery();
+            requests.add(new QueryRequest(table.getTableName())
+                    .withIndexName(schema.getIndexName().orElse(null))
+                    .withKeyConditionExpression(spec.getKeyConditionExpression())
+                    .withFilterExpression(spec.getFilterExpression())
+                    .withProjectionExpression(spec.getProjectionExpression())
+                    .withExpressionAttributeNames(nullIfEmpty(spec.getNameMap()))
+                    .withExpressionAttributeValues(toAttributeValues(spec.getValueMap()))
+                    .withConsistentRead(consistentRead(query))
+                    .withLimit(query.getHints().getPageSize().orElse(null))
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+        }
+        return QueryPlan.query(table.getTableName(), schema.getIndexName().orElse(null), requests);
+    }
+
+    private QueryPlan scan(final SQLQuery query, final TableMetadata table, final KeySchema schema) {
+        final ExpressionSpecBuilder builder = new ExpressionSpecBuilder();
+        query.getConditions().map(Expr::toCondition).ifPresent(builder::withCondition);
+        projection(query).forEach(builder::addProjection);
+        final ScanExpressionSpec spec = builder.buildForScan();
+        final String indexName = schema.getIndexName().orElse(null);
+        return QueryPlan.scan(table.getTableName(), indexName, new ScanRequest(table.getTableName())
+                .withIndexName(indexName)
+                .withFilterExpression(spec.getFilterExpression())
+                .withProjectionExpression(spec.getProjectionExpression())
+                .withExpressionAttributeNames(nullIfEmpty(spec.getNameMap()))
+                .withExpressionAttributeValues(toAttributeValues(spec.getValueMap()))
+                .withConsistentRead(consistentRead(query))
+                .withLimit(query.getHints().getPageSize().orElse(null))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL),
+                query.getHints().getParallel().orElse(scanSegments));
+    }
+
+    private static KeySchema hintedIndex(final SQLQuery.Hints hints,
+                                         final TableMetadata table,
+                                         final Set<String> attributes) {
+        final String name = hints.getIndex().get();
+        final KeySchema index = table.getIndexes().stream()
+                .filter(schema -> schema.getIndexName().get().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        String.format("Index %s doesn't exist in the table %s", name, table.getTableName())));
+        if (!index.covers(attributes)) {
+            throw new IllegalArgumentException(
+                    String.format("Index %s doesn't project all the attributes %s", name, attributes));
+        }
+        if (hints.isConsistent() && index.isGlobal()) {
+            throw new IllegalArgumentException(
+                    String.format("Index %s is global, which doesn't support the consistent reads", name));
+        }
+        return index;
+    }
+
+    private static Boolean consistentRead(final SQLQuery query) {
+        // null keeps the request default, i.e. the eventually consistent reads
+        return query.getHints().isConsistent() ? Boolean.TRUE : null;
+    }
+
+    static List<Expr> conjuncts(final Expr expr) {
+        if (expr instanceof SQLQuery.AndExpr) {
+            final SQLQuery.AndExpr and = (SQLQuery.AndExpr) expr;
+            final List<Expr> conjuncts = new ArrayList<>(conjuncts(and.getLeft()));
+            conjuncts.addAll(conjuncts(and.getRight()));
+            return conjuncts;
+        }
+        return Collections.singletonList(expr);
+    }
+
+    static void collectColumnNames(final Expr expr, final Set<String> names) {
+        if (expr instanceof SQLQuery.AndExpr) {
+            collectColumnNames(((SQLQuery.AndExpr) expr).getLeft(), names);
+            collectColumnNames(((SQLQuery.AndExpr) expr).getRight(), names);
+        } else if (expr instanceof SQLQuery.OrExpr) {
+            collectColumnNames(((SQLQuery.OrExpr) expr).getLeft(), names);
+            collectColumnNames(((SQLQuery.OrExpr) expr).getRight(), names);
+        } else if (expr instanceof Scalar) {
+            names.add(((Scalar<?>) expr).getColumnName());
+        }
+    }
+
+    private static Optional<Scalar<?>> find(final List<Expr> conjuncts,
+                                            final String columnName,
+                                            final Set<Operation> operations) {
+        for (final Expr expr : conjuncts) {
+            if (expr instanceof Scalar) {
+                final Scalar<?> scalar = (Scalar<?>) expr;
+                if (scalar.getColumnName().equals(columnName) && operations.contains(scalar.getOperation())) {
+                    return Optional.of(scalar);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Condition> and(final List<Expr> exprs) {
+        return exprs.stream()
+                .map(Expr::toCondition)
+                .reduce((condition1, condition2) -> condition1.and(condition2));
+    }
+
+    private static List<String> projection(final SQLQuery query) {
+        final List<String> projection = new ArrayList<>();
+        for (final SQLQuery.Column column : query.getColumns()) {
+            if (ALL_COLUMNS.equals(column.getName())) {
+                return Collections.emptyList();
+            }
+            projection.add(column.getName());
+        }
+        // Items are sorted on the client side, so the ORDER BY attributes must be fetched as well
+        for (final SQLQuery.Order order : query.getOrderBy()) {
+            final String attribute = query.attributeOf(order);
+            if (!projection.contains(attribute)) {
+                projection.add(attribute);
+            }
+        }
+        return projection;
+    }
+
+    private static <V> Map<String, V> nullIfEmpty(final Map<String, V> map) {
+        return map == null || map.isEmpty() ? null : map;
+    }
+
+    private static Map<String, AttributeValue> toAttributeValues(final Map<String, Object> values) {
+        return values == null || values.isEmpty() ? null : ItemUtils.fromSimpleMap(values);
+    }
+}
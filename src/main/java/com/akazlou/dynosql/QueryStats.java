@@ -0,0 +1,102 @@
+package com.akazlou.dynosql;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+
+/**
+ * Accumulates the runtime statistics of the single query execution, and carries its {@link QueryHandle}, so every
+ * DynamoDB call accounted here goes through the handle as well.
+ *
+ * <p>Could be updated concurrently, ex. by the parallel scan segments.</p>
+ */
+@ThreadSafe
+final class QueryStats {
+    private final QueryHandle handle;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder scannedCount = new LongAdder();
+    private final LongAdder returnedCount = new LongAdder();
+    private final LongAdder resultBytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final DoubleAdder consumedCapacity = new DoubleAdder();
+
+    QueryStats() {
+        this(new QueryHandle());
+    }
+
+    QueryStats(final QueryHandle handle) {
+        this.handle = handle;
+    }
+
+    QueryHandle getHandle() {
+        return handle;
+    }
+
+    void recordCall(final ConsumedCapacity capacity) {
+        calls.increment();
+        recordCapacity(capacity);
+    }
+
+    void recordCall(final Collection<ConsumedCapacity> capacities) {
+        calls.increment();
+        if (capacities != null) {
+            capacities.forEach(this::recordCapacity);
+        }
+    }
+
+    private void recordCapacity(final ConsumedCapacity capacity) {
+        if (capacity != null && capacity.getCapacityUnits() != null) {
+            consumedCapacity.add(capacity.getCapacityUnits());
+        }
+    }
+
+    void recordPage(final Integer scanned, final Integer returned) {
+        pages.increment();
+        if (scanned != null) {
+            scannedCount.add(scanned);
+        }
+        if (returned != null) {
+            returnedCount.add(returned);
+        }
+    }
+
+    void recordResultBytes(final long bytes) {
+        resultBytes.add(bytes);
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getPages() {
+        return pages.sum();
+    }
+
+    long getScannedCount() {
+        return scannedCount.sum();
+    }
+
+    long getReturnedCount() {
+        return returnedCount.sum();
+    }
+
+    long getResultBytes() {
+        return resultBytes.sum();
+    }
+
+    long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    double getConsumedCapacity() {
+        return consumedCapacity.sum();
+    }
+}
@@ -0,0 +1,335 @@
+package com.akazlou.dynosql;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Streams the result of the {@link QueryPlan} into the file, page by page, so the memory use doesn't depend on the
+ * size of the result.
+ *
+ * <p>Every request of the plan (i.e. the parallel scan segment, the partition or the {@code BatchGetItem} chunk) is
+ * written concurrently into its own part file next to the target, through the {@link FileChannel} and the pooled
+ * direct buffer. Once all the requests are done the parts are merged into the target in the plan order by
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, and deleted. If the export fails
+ * the target is not created (or left as it was), and the parts are deleted.</p>
+ *
+ * <p>If the query is sorted, the items are passed through the {@link ExternalSort} and written into the single part
+ * instead.</p>
+ */
+@ThreadSafe
+final class ResultExporter {
+    private static final Logger logger = Logger.getLogger(ResultExporter.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ALL_COLUMNS = "*";
+    private static final char NEW_LINE = '\n';
+    private static final char COMMA = ',';
+    private static final char DOUBLE_QUOTE = '"';
+
+    private final QueryExecutor executor;
+    private final BufferPool buffers;
+
+    ResultExporter(final QueryExecutor executor, final int maxPooledBuffers) {
+        this.executor = executor;
+        this.buffers = new BufferPool(BUFFER_SIZE, maxPooledBuffers);
+    }
+
+    long export(final QueryPlan plan,
+                final List<SQLQuery.Column> columns,
+                final Path target,
+                final ExportFormat format,
+                final QueryStats stats,
+                final ExternalSort sort) {
+        final boolean allColumns = columns.size() == 1 && ALL_COLUMNS.equals(columns.get(0).getName());
+        if (format == ExportFormat.CSV && allColumns) {
+            throw new IllegalArgumentException("CSV export requires the columns to be listed explicitly");
+        }
+        final Function<Map<String, AttributeValue>, String> encoder = format == ExportFormat.CSV
+                ? item -> toCsv(item, columns)
+                : item -> toJson(item, allColumns ? null : columns);
+        final Path directory = target.toAbsolutePath().getParent();
+        final String prefix = target.getFileName() + ".part-";
+        final ConcurrentMap<Integer, Part> parts = new ConcurrentHashMap<>();
+        final LongAdder exported = new LongAdder();
+        try {
+            final int requests;
+            if (sort == null) {
+                requests = executor.executeRequests(plan, stats, request -> page -> {
+                    // Pages of the same request are never pushed concurrently
+                    final Part part = parts.computeIfAbsent(request, index -> Part.create(directory, prefix, buffers));
+                    for (final Map<String, AttributeValue> item : page) {
+                        stats.recordResultBytes(ItemSizes.of(item));
+                        part.writer.write(encoder.apply(item));
+                        exported.increment();
+                    }
+                });
+            } else {
+                // Sorted items are written sequentially into the single part
+                executor.execute(plan, stats, sort::addAll);
+                final Part part = Part.create(directory, prefix, buffers);
+                parts.put(0, part);
+                sort.forEach(item -> {
+                    stats.recordResultBytes(ItemSizes.of(item));
+                    part.writer.write(encoder.apply(item));
+                    exported.increment();
+                });
+                requests = 1;
+            }
+            for (final Part part : parts.values()) {
+                part.writer.close();
+            }
+            merge(target, format == ExportFormat.CSV ? toCsvHeader(columns) : null, parts, requests);
+            return exported.sum();
+        } finally {
+            parts.values().forEach(Part::delete);
+        }
+    }
+
+    private void merge(final Path target, final String header, final Map<Integer, Part> parts, final int requests) {
+        final Path merging = target.resolveSibling(target.getFileName() + ".merging");
+        try {
+            try (FileChannel out = FileChannel.open(merging, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                if (header != null) {
+                    final ChannelWriter writer = new ChannelWriter(out, buffers.acquire());
+                    try {
+                        writer.write(header);
+                        writer.flush();
+                    } finally {
+                        buffers.release(writer.buffer);
+                    }
+                }
+                for (int request = 0; request < requests; request++) {
+                    final Part part = parts.get(request);
+                    if (part == null) {
+                        continue;
+                    }
+                    try (FileChannel in = FileChannel.open(part.path, StandardOpenOption.READ)) {
+                        final long size = in.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            Files.move(merging, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            delete(merging);
+            throw new UncheckedIOException(String.format("Was not able to write %s", target), ex);
+        }
+    }
+
+    private static String toJson(final Map<String, AttributeValue> item, final List<SQLQuery.Column> columns) {
+        if (columns == null) {
+            return ItemUtils.toItem(item).toJSON();
+        }
+        final Map<String, AttributeValue> selected = new LinkedHashMap<>();
+        for (final SQLQuery.Column column : columns) {
+            final AttributeValue value = Attributes.valueOf(item, column.getName());
+            if (value != null) {
+                selected.put(column.getAlias().orElse(column.getName()), value);
+            }
+        }
+        return ItemUtils.toItem(selected).toJSON();
+    }
+
+    private static String toCsvHeader(final List<SQLQuery.Column> columns) {
+        final StringBuilder builder = new StringBuilder();
+        for (final SQLQuery.Column column : columns) {
+            if (builder.length() > 0) {
+                builder.append(COMMA);
+            }
+            appendCsv(builder, column.getAlias().orElse(column.getName()));
+        }
+        return builder.toString();
+    }
+
+    private static String toCsv(final Map<String, AttributeValue> item, final List<SQLQuery.Column> columns) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                builder.append(COMMA);
+            }
+            final AttributeValue value = Attributes.valueOf(item, columns.get(i).getName());
+            if (value != null) {
+                appendCsv(builder, toCsvValue(value));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Scalars as is, {@code NULL} as the empty value, and the documents and sets as JSON.
+     */
+    private static String toCsvValue(final AttributeValue value) {
+        if (value.getS() != null) {
+            return value.getS();
+        }
+        if (value.getN() != null) {
+            return value.getN();
+        }
+        if (value.getBOOL() != null) {
+            return value.getBOOL().toString();
+        }
+        if (Boolean.TRUE.equals(value.getNULL())) {
+            return "";
+        }
+        final String attribute = "value";
+        return ItemUtils.toItem(Collections.singletonMap(attribute, value)).getJSON(attribute);
+    }
+
+    private static void appendCsv(final StringBuilder builder, final String value) {
+        if (value.indexOf(COMMA) < 0 && value.indexOf(DOUBLE_QUOTE) < 0
+                && value.indexOf(NEW_LINE) < 0 && value.indexOf('\r') < 0) {
+            builder.append(value);
+            return;
+        }
+        builder.append(DOUBLE_QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == DOUBLE_QUOTE) {
+                builder.append(DOUBLE_QUOTE);
+            }
+            builder.append(c);
+        }
+        builder.append(DOUBLE_QUOTE);
+    }
+
+    private static void delete(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException ex) {
+            logger.log(Level.WARNING, String.format("Was not able to delete %s", path), ex);
+        }
+    }
+
+    /**
+     * Part file of the single request of the plan.
+     */
+    private static final class Part {
+        private final Path path;
+        private final ChannelWriter writer;
+        private final BufferPool buffers;
+
+        private Part(final Path path, final ChannelWriter writer, final BufferPool buffers) {
+            this.path = path;
+            this.writer = writer;
+            this.buffers = buffers;
+        }
+
+        static Part create(final Path directory, final String prefix, final BufferPool buffers) {
+            try {
+                final Path path = Files.createTempFile(directory, prefix, "");
+                return new Part(path,
+                        new ChannelWriter(FileChannel.open(path, StandardOpenOption.WRITE), buffers.acquire()),
+                        buffers);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(String.format("Was not able to create the part file in %s", directory),
+                        ex);
+            }
+        }
+
+        void delete() {
+            try {
+                writer.closeChannel();
+            } finally {
+                buffers.release(writer.buffer);
+                ResultExporter.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Encodes the lines as UTF-8 directly into the buffer, writing it into the channel once it is full.
+     */
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ChannelWriter(final FileChannel channel, final ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void write(final String line) {
+            final CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    flush();
+                }
+            } while (result.isOverflow());
+            while (encoder.flush(buffer).isOverflow()) {
+                flush();
+            }
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) NEW_LINE);
+        }
+
+        void flush() {
+            try {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                closeChannel();
+            }
+        }
+
+        /**
+         * Closes the channel discarding the buffered data, if any.
+         */
+        void closeChannel() {
+            try {
+                channel.close();
+            } catch (final IOException ex) {
+                logger.log(Level.WARNING, "Was not able to close the channel", ex);
+            }
+        }
+    }
+}
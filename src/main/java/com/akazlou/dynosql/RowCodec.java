@@ -0,0 +1,193 @@
+package com.akazlou.dynosql;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Compact binary encoding of the item, used to spill the items to disk.
+ *
+ * <p>Every value is encoded as the single byte type tag followed by the payload, the lengths and the counts are
+ * encoded as the variable length integers (7 bits per byte), and the strings and the numbers as UTF-8.</p>
+ */
+final class RowCodec {
+    private static final byte S = 1;
+    private static final byte N = 2;
+    private static final byte B = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte NULL = 6;
+    private static final byte SS = 7;
+    private static final byte NS = 8;
+    private static final byte BS = 9;
+    private static final byte L = 10;
+    private static final byte M = 11;
+
+    private RowCodec() {
+    }
+
+    static void write(final DataOutput out, final Map<String, AttributeValue> item) throws IOException {
+        writeVarInt(out, item.size());
+        for (final Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            writeString(out, entry.getKey());
+            write(out, entry.getValue());
+        }
+    }
+
+    static Map<String, AttributeValue> read(final ByteBuffer in) {
+        final int size = readVarInt(in);
+        final Map<String, AttributeValue> item = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            item.put(readString(in), readValue(in));
+        }
+        return item;
+    }
+
+    private static void write(final DataOutput out, final AttributeValue value) throws IOException {
+        if (value.getS() != null) {
+            out.writeByte(S);
+            writeString(out, value.getS());
+        } else if (value.getN() != null) {
+            out.writeByte(N);
+            writeString(out, value.getN());
+        } else if (value.getB() != null) {
+            out.writeByte(B);
+            writeBytes(out, value.getB());
+        } else if (value.getBOOL() != null) {
+            out.writeByte(value.getBOOL() ? TRUE : FALSE);
+        } else if (value.getSS() != null) {
+            out.writeByte(SS);
+            writeStrings(out, value.getSS());
+        } else if (value.getNS() != null) {
+            out.writeByte(NS);
+            writeStrings(out, value.getNS());
+        } else if (value.getBS() != null) {
+            out.writeByte(BS);
+            writeVarInt(out, value.getBS().size());
+            for (final ByteBuffer bytes : value.getBS()) {
+                writeBytes(out, bytes);
+            }
+        } else if (value.getL() != null) {
+            out.writeByte(L);
+            writeVarInt(out, value.getL().size());
+            for (final AttributeValue element : value.getL()) {
+                write(out, element);
+            }
+        } else if (value.getM() != null) {
+            out.writeByte(M);
+            write(out, value.getM());
+        } else {
+            out.writeByte(NULL);
+        }
+    }
+
+    private static AttributeValue readValue(final ByteBuffer in) {
+        final byte type = in.get();
+        switch (type) {
+            case S:
+                return new AttributeValue().withS(readString(in));
+            case N:
+                return new AttributeValue().withN(readString(in));
+            case B:
+                return new AttributeValue().withB(readBytes(in));
+            case TRUE:
+                return new AttributeValue().withBOOL(true);
+            case FALSE:
+                return new AttributeValue().withBOOL(false);
+            case NULL:
+                return new AttributeValue().withNULL(true);
+            case SS:
+                return new AttributeValue().withSS(readStrings(in));
+            case NS:
+                return new AttributeValue().withNS(readStrings(in));
+            case BS:
+                final int size = readVarInt(in);
+                final List<ByteBuffer> bytes = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    bytes.add(readBytes(in));
+                }
+                return new AttributeValue().withBS(bytes);
+            case L:
+                final int length = readVarInt(in);
+                final List<AttributeValue> list = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    list.add(readValue(in));
+                }
+                return new AttributeValue().withL(list);
+            case M:
+                return new AttributeValue().withM(read(in));
+            default:
+                throw new IllegalStateException(String.format("Unknown type %d of the encoded value", type));
+        }
+    }
+
+    private static void writeStrings(final DataOutput out, final List<String> values) throws IOException {
+        writeVarInt(out, values.size());
+        for (final String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(final ByteBuffer in) {
+        final int size = readVarInt(in);
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeString(final DataOutput out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(final DataOutput out, final ByteBuffer value) throws IOException {
+        final ByteBuffer bytes = value.duplicate();
+        writeVarInt(out, bytes.remaining());
+        while (bytes.hasRemaining()) {
+            out.writeByte(bytes.get());
+        }
+    }
+
+    private static ByteBuffer readBytes(final ByteBuffer in) {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void writeVarInt(final DataOutput out, final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(final ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
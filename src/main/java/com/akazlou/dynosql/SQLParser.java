@@ -15,13 +15,16 @@ import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NE_ANSI;
 import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NE_C;
 import static com.akazlou.dynosql.SQLQuery.Scalar.Operation.NOT_EXISTS;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -34,19 +37,79 @@ import com.akazlou.dynosql.SQLQuery.Scalar.Keyword;
 
 /**
  * SQL parser.
+ *
+ * <p>Supports {@code SELECT [DISTINCT] ... [ORDER BY column [ASC|DESC], ...]} (optionally prefixed with
+ * {@code EXPLAIN [ANALYZE]}) with the optional {@code [INNER] JOIN table [alias] ON column = column} after the
+ * {@code FROM table [alias]} and the single {@code column IN (SELECT column FROM ...)} condition in the WHERE,
+ * {@code INSERT INTO ... VALUES},
+ * {@code UPDATE ... SET ... WHERE} and {@code DELETE FROM ... WHERE}.</p>
+ *
+ * <p>The {@code SELECT} accepts the optimizer hints {@code INDEX(name) PARALLEL(n) CONSISTENT PAGE_SIZE(n)} in the
+ * comment right after it, ex.
+ * {@code select /}{@code *+ INDEX(by_email) CONSISTENT *}{@code / * from T where email = 'a'}.</p>
  */
 class SQLParser {
     private static final Pattern SELECT_QUERY_PATTERN = Pattern.compile(
-            "^select\\s+(?<columns>[\\w.*,\\s\\-]+)"
+            "^(?<explain>explain(?<analyze>\\s+analyze)?\\s+)?"
+                    + "select\\s+(/\\*\\+(?<hints>.*?)\\*/\\s*)?(?<distinct>distinct\\s+)?(?<columns>[\\w.*,\\s\\-]+)"
                     + "\\s+from\\s+(?<table>[\\w.\\-]+)"
-                    + "(\\s+where\\s+(?<conditions>.+?))?;?$",
+                    + "(\\s+(as\\s+)?(?<alias>(?!(where|join|inner|order)\\b)\\w+))?"
+                    + "(\\s+(inner\\s+)?join\\s+(?<joinTable>[\\w.\\-]+)"
+                    + "(\\s+(as\\s+)?(?<joinAlias>(?!on\\b)\\w+))?"
+                    + "\\s+on\\s+(?<left>[\\w.\\-]+)\\s*=\\s*(?<right>[\\w.\\-]+))?"
+                    + "(\\s+where\\s+(?<conditions>.+?))?"
+                    + "(\\s+order\\s+by\\s+(?<orderBy>[\\w.,\\s\\-]+?))?\\s*;?$",
             Pattern.CASE_INSENSITIVE);
+    private static final Pattern SEMI_JOIN_PATTERN = Pattern.compile(
+            "(?<column>[\\w.\\-]+)\\s+in\\s*\\(\\s*(?<subquery>select\\s)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HINT_PATTERN = Pattern.compile(
+            "(?<name>\\w+)(\\s*\\(\\s*(?<argument>[\\w.\\-]+)\\s*\\))?", Pattern.CASE_INSENSITIVE);
+    // The keyword only, not the "as" inside the column name, ex. last_name or password
+    private static final Pattern ALIAS_PATTERN = Pattern.compile("\\s+as\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_PATTERN = Pattern.compile(
+            "^(?<column>[\\w.\\-]+)(\\s+(?<direction>asc|desc))?$", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern INSERT_QUERY_PATTERN = Pattern.compile(
+            "^insert\\s+into\\s+(?<table>[\\w.\\-]+)"
+                    + "\\s*\\((?<columns>[\\w.,\\s\\-]+)\\)"
+                    + "\\s*values\\s*(?<values>\\(.+\\))\\s*;?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern UPDATE_QUERY_PATTERN = Pattern.compile(
+            "^update\\s+(?<table>[\\w.\\-]+)"
+                    + "\\s+set\\s+(?<assignments>.+?)"
+                    + "(\\s+where\\s+(?<conditions>.+?))?;?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DELETE_QUERY_PATTERN = Pattern.compile(
+            "^delete\\s+from\\s+(?<table>[\\w.\\-]+)"
+                    + "(\\s+where\\s+(?<conditions>.+?))?;?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
+    private static final String EXPLAIN_MATCHER_GROUP = "explain";
+    private static final String ANALYZE_MATCHER_GROUP = "analyze";
     private static final String COLUMNS_MATCHER_GROUP = "columns";
     private static final String TABLE_MATCHER_GROUP = "table";
     private static final String CONDITIONS_MATCHER_GROUP = "conditions";
+    private static final String VALUES_MATCHER_GROUP = "values";
+    private static final String ASSIGNMENTS_MATCHER_GROUP = "assignments";
+    private static final String DISTINCT_MATCHER_GROUP = "distinct";
+    private static final String ORDER_BY_MATCHER_GROUP = "orderBy";
+    private static final String COLUMN_MATCHER_GROUP = "column";
+    private static final String DIRECTION_MATCHER_GROUP = "direction";
+    private static final String DESC_KEYWORD = "desc";
+    private static final String ALIAS_MATCHER_GROUP = "alias";
+    private static final String JOIN_TABLE_MATCHER_GROUP = "joinTable";
+    private static final String JOIN_ALIAS_MATCHER_GROUP = "joinAlias";
+    private static final String LEFT_MATCHER_GROUP = "left";
+    private static final String RIGHT_MATCHER_GROUP = "right";
+    private static final String SUBQUERY_MATCHER_GROUP = "subquery";
+    private static final String HINTS_MATCHER_GROUP = "hints";
+    private static final String NAME_MATCHER_GROUP = "name";
+    private static final String ARGUMENT_MATCHER_GROUP = "argument";
+    // Stands for the IN (SELECT ...) subquery while parsing the WHERE conditions of the outer query
+    private static final String SEMI_JOIN_PLACEHOLDER = "$subquery";
+    private static final char QUALIFIER_SEPARATOR = '.';
+    private static final String ALL_COLUMNS = "*";
     private static final String COLUMNS_SEPARATOR = ",";
-    private static final String AS_KEYWORD = "as";
 
     private static final List<Operation> OPERATIONS = Arrays.asList(
             GE,
@@ -82,30 +145,316 @@ class SQLParser {
     }
 
     public Optional<SQLQuery> parse(final String query) {
-        final Matcher matcher = SELECT_QUERY_PATTERN.matcher(query.trim());
+        final String trimmed = query.trim();
+        final Matcher semiJoin = SEMI_JOIN_PATTERN.matcher(trimmed);
+        while (semiJoin.find()) {
+            if (!isQuoted(trimmed, semiJoin.start())) {
+                return parseSemiJoin(trimmed, semiJoin);
+            }
+        }
+        final Matcher matcher = SELECT_QUERY_PATTERN.matcher(trimmed);
         if (!matcher.matches()) {
-            return Optional.empty();
+            return parseWrite(trimmed);
         }
         final List<SQLQuery.Column> columns = parseColumns(matcher.group(COLUMNS_MATCHER_GROUP).split(COLUMNS_SEPARATOR));
         final String table = matcher.group(TABLE_MATCHER_GROUP).trim();
         final Optional<Expr> conditions = parseConditions(matcher.group(CONDITIONS_MATCHER_GROUP));
+        final SQLQuery.Explain explain = matcher.group(EXPLAIN_MATCHER_GROUP) == null
+                ? null
+                : matcher.group(ANALYZE_MATCHER_GROUP) == null ? SQLQuery.Explain.PLAN : SQLQuery.Explain.ANALYZE;
+
+        final boolean distinct = matcher.group(DISTINCT_MATCHER_GROUP) != null;
+        final List<SQLQuery.Order> orderBy = parseOrderBy(matcher.group(ORDER_BY_MATCHER_GROUP));
+        if (distinct) {
+            for (final SQLQuery.Order order : orderBy) {
+                if (columns.stream().noneMatch(column -> column.getName().equals(order.getColumn())
+                        || column.getName().equals(ALL_COLUMNS)
+                        || column.getAlias().filter(order.getColumn()::equals).isPresent())) {
+                    throw new IllegalArgumentException(String.format(
+                            "ORDER BY column %s must be selected with DISTINCT: %s", order.getColumn(), query));
+                }
+            }
+        }
+        final SQLQuery select = new SQLQuery(table, columns, conditions.orElse(null), explain)
+                .withHints(parseHints(matcher.group(HINTS_MATCHER_GROUP)));
+        final SQLQuery sorted = distinct || !orderBy.isEmpty() ? select.withSorting(distinct, orderBy) : select;
+        if (matcher.group(JOIN_TABLE_MATCHER_GROUP) == null) {
+            // Alias is only supported to qualify the columns of the JOIN
+            return matcher.group(ALIAS_MATCHER_GROUP) == null ? Optional.of(sorted) : Optional.empty();
+        }
+        return Optional.of(sorted.withJoin(parseJoin(matcher, query)));
+    }
+
+    /**
+     * Parses the {@code column IN (SELECT ...)} subquery and the outer query with the subquery replaced by the
+     * placeholder, which must be one of the top level AND conditions.
+     */
+    private Optional<SQLQuery> parseSemiJoin(final String query, final Matcher matcher) {
+        final int start = matcher.start(SUBQUERY_MATCHER_GROUP);
+        final int end = closingParens(query, start);
+        final String column = matcher.group(COLUMN_MATCHER_GROUP);
+        final Optional<SQLQuery> parsed = parse(query.substring(0, matcher.start()) + column + " IN ("
+                + SEMI_JOIN_PLACEHOLDER + ")" + query.substring(end + 1));
+        if (!parsed.isPresent()) {
+            return parsed;
+        }
+        final SQLQuery outer = parsed.get();
+        if (outer.getType() != SQLQuery.Type.SELECT || outer.getSemiJoin().isPresent()) {
+            throw new IllegalArgumentException(String.format(
+                    "Could not parse IN (SELECT ...), it is supported once per SELECT query: %s", query));
+        }
+        final SQLQuery subquery = parse(query.substring(start, end)).orElseThrow(() -> new IllegalArgumentException(
+                String.format("Could not parse the subquery of IN (SELECT ...): %s", query)));
+        if (subquery.getColumns().size() != 1 || subquery.getColumns().get(0).getName().equals(ALL_COLUMNS)
+                || subquery.getExplain().isPresent() || subquery.getJoin().isPresent()) {
+            throw new IllegalArgumentException(String.format(
+                    "Could not parse IN (SELECT ...), the subquery must select the single column: %s", query));
+        }
+        final List<Expr> conjuncts = new ArrayList<>(QueryPlanner.conjuncts(outer.getConditions().get()));
+        if (!conjuncts.remove(IN.apply(column, SEMI_JOIN_PLACEHOLDER))) {
+            throw new IllegalArgumentException(String.format(
+                    "Could not parse IN (SELECT ...), it must not be part of OR: %s", query));
+        }
+        final Expr conditions = conjuncts.stream().reduce(SQLQuery.AndExpr::new).orElse(null);
+        return Optional.of(outer.withConditions(conditions).withSemiJoin(new SQLQuery.SemiJoin(column, subquery)));
+    }
+
+    /**
+     * Returns the index of the parens closing the one opened right before the {@code start}.
+     */
+    private static int closingParens(final String query, final int start) {
+        boolean quoted = false;
+        int depth = 1;
+        for (int i = start; i < query.length(); i++) {
+            final char c = query.charAt(i);
+            if (c == SINGLE_QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted && c == OPEN_PARENS) {
+                depth++;
+            } else if (!quoted && c == CLOSED_PARENS && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(
+                String.format("Could not parse IN (SELECT ...), no matching closed parens: %s", query));
+    }
 
-        return Optional.of(new SQLQuery(table, columns, conditions.orElse(null)));
+    private static boolean isQuoted(final String query, final int index) {
+        boolean quoted = false;
+        for (int i = 0; i < index; i++) {
+            if (query.charAt(i) == SINGLE_QUOTE) {
+                quoted = !quoted;
+            }
+        }
+        return quoted;
+    }
+
+    private SQLQuery.Join parseJoin(final Matcher matcher, final String query) {
+        final String leftQualifier = Optional.ofNullable(matcher.group(ALIAS_MATCHER_GROUP))
+                .orElse(matcher.group(TABLE_MATCHER_GROUP));
+        final String table = matcher.group(JOIN_TABLE_MATCHER_GROUP);
+        final String rightQualifier = Optional.ofNullable(matcher.group(JOIN_ALIAS_MATCHER_GROUP)).orElse(table);
+        if (leftQualifier.equals(rightQualifier)) {
+            throw new IllegalArgumentException(
+                    String.format("Could not parse JOIN, the joined tables must have the different aliases: %s", query));
+        }
+        String left = matcher.group(LEFT_MATCHER_GROUP);
+        String right = matcher.group(RIGHT_MATCHER_GROUP);
+        if (right.startsWith(leftQualifier + QUALIFIER_SEPARATOR)) {
+            final String swap = left;
+            left = right;
+            right = swap;
+        }
+        if (!left.startsWith(leftQualifier + QUALIFIER_SEPARATOR)
+                || !right.startsWith(rightQualifier + QUALIFIER_SEPARATOR)) {
+            throw new IllegalArgumentException(String.format(
+                    "Could not parse JOIN, expected ON %s.column = %s.column: %s", leftQualifier, rightQualifier, query));
+        }
+        return new SQLQuery.Join(leftQualifier, table, rightQualifier,
+                left.substring(leftQualifier.length() + 1), right.substring(rightQualifier.length() + 1));
+    }
+
+    private SQLQuery.Hints parseHints(final String hints) {
+        if (hints == null) {
+            return SQLQuery.Hints.NONE;
+        }
+        String index = null;
+        int parallel = 0;
+        boolean consistent = false;
+        int pageSize = 0;
+        final Matcher matcher = HINT_PATTERN.matcher(hints);
+        int end = 0;
+        while (matcher.find()) {
+            verifySeparator(hints, hints.substring(end, matcher.start()));
+            end = matcher.end();
+            final String name = matcher.group(NAME_MATCHER_GROUP).toUpperCase(Locale.ROOT);
+            final String argument = matcher.group(ARGUMENT_MATCHER_GROUP);
+            switch (name) {
+                case "INDEX":
+                    index = requireArgument(name, argument);
+                    break;
+                case "PARALLEL":
+                    parallel = positive(name, requireArgument(name, argument));
+                    break;
+                case "CONSISTENT":
+                    if (argument != null) {
+                        throw new IllegalArgumentException(
+                                String.format("Could not parse hint %s, it has no argument: %s", name, hints));
+                    }
+                    consistent = true;
+                    break;
+                case "PAGE_SIZE":
+                    pageSize = positive(name, requireArgument(name, argument));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown hint %s: %s", name, hints));
+            }
+        }
+        verifySeparator(hints, hints.substring(end));
+        return new SQLQuery.Hints(index, parallel, consistent, pageSize);
+    }
+
+    private static void verifySeparator(final String hints, final String separator) {
+        if (!separator.trim().isEmpty() && !separator.trim().equals(COLUMNS_SEPARATOR)) {
+            throw new IllegalArgumentException(
+                    String.format("Could not parse hints, unexpected %s: %s", separator.trim(), hints));
+        }
+    }
+
+    private static String requireArgument(final String name, final String argument) {
+        if (argument == null) {
+            throw new IllegalArgumentException(
+                    String.format("Could not parse hint %s, expected %s(value)", name, name));
+        }
+        return argument;
+    }
+
+    private static int positive(final String name, final String argument) {
+        final int value;
+        try {
+            value = Integer.parseInt(argument);
+        } catch (final NumberFormatException ex) {
+            throw new IllegalArgumentException(
+                    String.format("Could not parse hint %s, expected the number, but got %s", name, argument), ex);
+        }
+        if (value < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Could not parse hint %s, expected the positive number, but got %s", name, argument));
+        }
+        return value;
+    }
+
+    private List<SQLQuery.Order> parseOrderBy(final String orderBy) {
+        if (orderBy == null) {
+            return Collections.emptyList();
+        }
+        final List<SQLQuery.Order> orders = new ArrayList<>();
+        for (final String order : orderBy.split(COLUMNS_SEPARATOR)) {
+            final Matcher matcher = ORDER_PATTERN.matcher(order.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(
+                        String.format("Could not parse ORDER BY, expected column [ASC|DESC], but got %s", order));
+            }
+            orders.add(new SQLQuery.Order(
+                    matcher.group(COLUMN_MATCHER_GROUP),
+                    DESC_KEYWORD.equalsIgnoreCase(matcher.group(DIRECTION_MATCHER_GROUP))));
+        }
+        return orders;
+    }
+
+    private Optional<SQLQuery> parseWrite(final String query) {
+        final Matcher insert = INSERT_QUERY_PATTERN.matcher(query);
+        if (insert.matches()) {
+            final List<SQLQuery.Column> columns = Arrays
+                    .stream(insert.group(COLUMNS_MATCHER_GROUP).split(COLUMNS_SEPARATOR))
+                    .map(String::trim)
+                    .map(SQLQuery.Column::new)
+                    .collect(Collectors.toList());
+            final List<List<String>> rows = parseRows(insert.group(VALUES_MATCHER_GROUP));
+            for (final List<String> row : rows) {
+                if (row.size() != columns.size()) {
+                    throw new IllegalArgumentException(String.format(
+                            "Could not parse INSERT, expected %d values per row, but got %d: %s",
+                            columns.size(), row.size(), query));
+                }
+            }
+            return Optional.of(SQLQuery.insert(insert.group(TABLE_MATCHER_GROUP), columns, rows));
+        }
+        final Matcher update = UPDATE_QUERY_PATTERN.matcher(query);
+        if (update.matches()) {
+            final Map<String, String> assignments = new LinkedHashMap<>();
+            for (final String assignment : split(update.group(ASSIGNMENTS_MATCHER_GROUP), COMMA)) {
+                final int equal = assignment.indexOf(EQUAL);
+                if (equal <= 0) {
+                    throw new IllegalArgumentException(
+                            String.format("Could not parse UPDATE, expected column = value, but got %s", assignment));
+                }
+                assignments.put(assignment.substring(0, equal).trim(), assignment.substring(equal + 1).trim());
+            }
+            return Optional.of(SQLQuery.update(
+                    update.group(TABLE_MATCHER_GROUP),
+                    assignments,
+                    parseConditions(update.group(CONDITIONS_MATCHER_GROUP)).orElse(null)));
+        }
+        final Matcher delete = DELETE_QUERY_PATTERN.matcher(query);
+        if (delete.matches()) {
+            return Optional.of(SQLQuery.delete(
+                    delete.group(TABLE_MATCHER_GROUP),
+                    parseConditions(delete.group(CONDITIONS_MATCHER_GROUP)).orElse(null)));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Parses the {@code (value, ...), (value, ...)} rows of the {@code INSERT}.
+     */
+    private List<List<String>> parseRows(final String values) {
+        final List<List<String>> rows = new ArrayList<>();
+        for (final String row : split(values, COMMA)) {
+            if (row.length() < 2 || row.charAt(0) != OPEN_PARENS || row.charAt(row.length() - 1) != CLOSED_PARENS) {
+                throw new IllegalArgumentException(
+                        String.format("Could not parse INSERT, expected (values) row, but got %s", row));
+            }
+            rows.add(split(row.substring(1, row.length() - 1), COMMA));
+        }
+        return rows;
+    }
+
+    /**
+     * Splits by the {@code separator} outside of the quoted strings and the parens, trimming the parts.
+     */
+    private static List<String> split(final String value, final char separator) {
+        final List<String> parts = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder();
+        boolean quoted = false;
+        int depth = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == SINGLE_QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted && c == OPEN_PARENS) {
+                depth++;
+            } else if (!quoted && c == CLOSED_PARENS) {
+                depth--;
+            } else if (!quoted && depth == 0 && c == separator) {
+                parts.add(builder.toString().trim());
+                builder.setLength(0);
+                continue;
+            }
+            builder.append(c);
+        }
+        parts.add(builder.toString().trim());
+        return parts;
     }
 
     private List<SQLQuery.Column> parseColumns(final String[] columns) {
         return Arrays.stream(columns)
                 .map(String::trim)
                 .map(column -> {
-                    final String columnLower = column.toLowerCase(Locale.ROOT);
-                    if (columnLower.contains(AS_KEYWORD)) {
-                        final int asKeywordIndex = columnLower.indexOf(AS_KEYWORD);
-                        final String name = column.substring(0, asKeywordIndex).trim();
-                        final String alias = column.substring(asKeywordIndex + AS_KEYWORD.length())
-                                .trim();
-                        return new SQLQuery.Column(name, alias);
-                    }
-                    return new SQLQuery.Column(column);
+                    final String[] parts = ALIAS_PATTERN.split(column, 2);
+                    return parts.length == 2
+                            ? new SQLQuery.Column(parts[0].trim(), parts[1].trim())
+                            : new SQLQuery.Column(column);
                 })
                 .collect(Collectors.toList());
     }
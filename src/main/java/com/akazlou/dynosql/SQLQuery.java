@@ -6,33 +6,106 @@ import static com.akazlou.dynosql.SQLQuery.Scalar.Args.TWO;
 import static com.akazlou.dynosql.SQLQuery.Scalar.Args.ZERO;
 import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.N;
 import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.S;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.attribute_exists;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.attribute_not_exists;
+import static java.util.stream.Collectors.toList;
 
+import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
-import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
 import com.amazonaws.services.dynamodbv2.xspec.Condition;
-import com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder;
-import com.amazonaws.services.dynamodbv2.xspec.PathOperand;
+import com.amazonaws.services.dynamodbv2.xspec.N;
+import com.amazonaws.services.dynamodbv2.xspec.S;
 
 /**
  * Represents parsed SQL query.
  */
 class SQLQuery {
 
+    private final Type type;
     private final String tableName;
     private final List<Column> columns;
     private final Expr conditions;
+    private final Explain explain;
+    private final List<List<String>> rows;
+    private final Map<String, String> assignments;
+    private final boolean distinct;
+    private final List<Order> orderBy;
+    private final Join join;
+    private final SemiJoin semiJoin;
+    private final Hints hints;
 
     SQLQuery(final String tableName, final List<Column> columns, final Expr conditions) {
+        this(tableName, columns, conditions, null);
+    }
+
+    SQLQuery(final String tableName, final List<Column> columns, final Expr conditions, final Explain explain) {
+        this(Type.SELECT, tableName, columns, conditions, explain, Collections.emptyList(), Collections.emptyMap(), false,
+                Collections.emptyList(), null, null, Hints.NONE);
+    }
+
+    private SQLQuery(final Type type,
+                     final String tableName,
+                     final List<Column> columns,
+                     final Expr conditions,
+                     final Explain explain,
+                     final List<List<String>> rows,
+                     final Map<String, String> assignments,
+                     final boolean distinct,
+                     final List<Order> orderBy,
+                     final Join join,
+                     final SemiJoin semiJoin,
+                     final Hints hints) {
+        this.type = type;
         this.tableName = tableName;
         this.columns = columns;
         this.conditions = conditions;
+        this.explain = explain;
+        this.rows = rows;
+        this.assignments = assignments;
+        this.distinct = distinct;
+        this.orderBy = orderBy;
+        this.join = join;
+        this.semiJoin = semiJoin;
+        this.hints = hints;
+    }
+
+    /**
+     * {@code INSERT INTO table (columns) VALUES (row), (row)...}, every row has the literal value per column.
+     */
+    static SQLQuery insert(final String tableName, final List<Column> columns, final List<List<String>> rows) {
+        return new SQLQuery(Type.INSERT, tableName, columns, null, null, rows, Collections.emptyMap(), false,
+                Collections.emptyList(), null, null, Hints.NONE);
+    }
+
+    /**
+     * {@code UPDATE table SET column = value, ... WHERE conditions}, the {@code NULL} value removes the attribute.
+     */
+    static SQLQuery update(final String tableName, final Map<String, String> assignments, final Expr conditions) {
+        return new SQLQuery(Type.UPDATE, tableName, Collections.emptyList(), conditions, null, Collections.emptyList(),
+                assignments, false, Collections.emptyList(), null, null, Hints.NONE);
+    }
+
+    /**
+     * {@code DELETE FROM table WHERE conditions}.
+     */
+    static SQLQuery delete(final String tableName, final Expr conditions) {
+        return new SQLQuery(Type.DELETE, tableName, Collections.emptyList(), conditions, null, Collections.emptyList(),
+                Collections.emptyMap(), false, Collections.emptyList(), null, null, Hints.NONE);
+    }
+
+    Type getType() {
+        return type;
     }
 
     String getTableName() {
@@ -47,6 +120,157 @@ class SQLQuery {
         return Optional.ofNullable(conditions);
     }
 
+    /**
+     * Returns whether the query was prefixed with either {@code EXPLAIN} or {@code EXPLAIN ANALYZE}.
+     */
+    Optional<Explain> getExplain() {
+        return Optional.ofNullable(explain);
+    }
+
+    /**
+     * Literal values of the {@code INSERT} rows, in the order of the {@link #getColumns()}.
+     */
+    List<List<String>> getRows() {
+        return rows;
+    }
+
+    /**
+     * Literal values of the {@code UPDATE} assignments per column.
+     */
+    Map<String, String> getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * {@code SELECT DISTINCT}, i.e. the duplicate rows (by the values of the selected columns) are removed.
+     */
+    boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * {@code ORDER BY} columns, or empty if the order is not specified.
+     */
+    List<Order> getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * Returns the attribute name of the {@code ORDER BY} column, i.e. the name of the selected column if the order
+     * refers to its alias.
+     */
+    String attributeOf(final Order order) {
+        for (final Column column : columns) {
+            if (column.getAlias().filter(order.getColumn()::equals).isPresent()) {
+                return column.getName();
+            }
+        }
+        return order.getColumn();
+    }
+
+    /**
+     * Returns whether the items must be sorted on the client side, i.e. the query has either {@code DISTINCT} or
+     * {@code ORDER BY}.
+     */
+    boolean isSorted() {
+        return distinct || !orderBy.isEmpty();
+    }
+
+    /**
+     * Returns the copy of the {@code SELECT} query with {@code DISTINCT} and {@code ORDER BY}.
+     */
+    SQLQuery withSorting(final boolean distinct, final List<Order> orderBy) {
+        return new SQLQuery(type, tableName, columns, conditions, explain, rows, assignments, distinct,
+                Collections.unmodifiableList(orderBy), join, semiJoin, hints);
+    }
+
+    /**
+     * Returns the copy of the {@code SELECT} query joining the {@code join} table.
+     */
+    SQLQuery withJoin(final Join join) {
+        return new SQLQuery(type, tableName, columns, conditions, explain, rows, assignments, distinct, orderBy, join,
+                semiJoin, hints);
+    }
+
+    /**
+     * {@code JOIN} of the second table, the column names of the query are qualified by the table name or alias.
+     */
+    Optional<Join> getJoin() {
+        return Optional.ofNullable(join);
+    }
+
+    /**
+     * Returns the copy of the {@code SELECT} query with the {@code column IN (SELECT ...)} condition, which is ANDed
+     * with the rest of the conditions.
+     */
+    SQLQuery withSemiJoin(final SemiJoin semiJoin) {
+        return new SQLQuery(type, tableName, columns, conditions, explain, rows, assignments, distinct, orderBy, join,
+                semiJoin, hints);
+    }
+
+    /**
+     * {@code column IN (SELECT ...)} condition of the query, it is not part of the {@link #getConditions()}.
+     */
+    Optional<SemiJoin> getSemiJoin() {
+        return Optional.ofNullable(semiJoin);
+    }
+
+    /**
+     * Returns the copy of the query with the {@code conditions} instead of the current ones.
+     */
+    SQLQuery withConditions(final Expr conditions) {
+        return new SQLQuery(type, tableName, columns, conditions, explain, rows, assignments, distinct, orderBy, join,
+                semiJoin, hints);
+    }
+
+    /**
+     * Returns the copy of the {@code SELECT} query with the optimizer {@code hints}.
+     */
+    SQLQuery withHints(final Hints hints) {
+        return new SQLQuery(type, tableName, columns, conditions, explain, rows, assignments, distinct, orderBy, join,
+                semiJoin, hints);
+    }
+
+    /**
+     * Optimizer hints of the {@code SELECT} query, {@link Hints#NONE} if there are no hints.
+     */
+    Hints getHints() {
+        return hints;
+    }
+
+    /**
+     * Returns the copy of the query with every literal value (of the conditions, rows and assignments) replaced using
+     * the {@code mapper}.
+     */
+    SQLQuery mapValues(final UnaryOperator<String> mapper) {
+        final List<List<String>> mappedRows = rows.stream()
+                .map(row -> row.stream().map(mapper).collect(toList()))
+                .collect(toList());
+        final Map<String, String> mappedAssignments = new LinkedHashMap<>();
+        assignments.forEach((column, value) -> mappedAssignments.put(column, mapper.apply(value)));
+        return new SQLQuery(type, tableName, columns, conditions == null ? null : conditions.mapValues(mapper), explain,
+                mappedRows, mappedAssignments, distinct, orderBy, join,
+                semiJoin == null ? null : new SemiJoin(semiJoin.column, semiJoin.query.mapValues(mapper)), hints);
+    }
+
+    enum Type {
+        SELECT,
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    enum Explain {
+        /**
+         * {@code EXPLAIN}, only plan the query.
+         */
+        PLAN,
+        /**
+         * {@code EXPLAIN ANALYZE}, plan and execute the query, reporting the actual statistics.
+         */
+        ANALYZE
+    }
+
     static final class Column {
         private final String name;
         private final String alias;
@@ -87,8 +311,248 @@ class SQLQuery {
         }
     }
 
+    /**
+     * Column of the {@code ORDER BY}, either the attribute name or the alias of the selected column.
+     */
+    static final class Order {
+        private final String column;
+        private final boolean descending;
+
+        Order(final String column, final boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        boolean isDescending() {
+            return descending;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            final Order order = (Order) o;
+            return descending == order.descending &&
+                    Objects.equals(column, order.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(column, descending);
+        }
+
+        @Override
+        public String toString() {
+            return column + (descending ? " DESC" : " ASC");
+        }
+    }
+
+    /**
+     * {@code FROM table [alias] JOIN tableName [alias] ON column = column}, the {@link #getLeftColumn()} belongs to the
+     * {@code FROM} table and the {@link #getRightColumn()} to the joined table, both without the qualifier.
+     */
+    static final class Join {
+        private final String leftQualifier;
+        private final String tableName;
+        private final String rightQualifier;
+        private final String leftColumn;
+        private final String rightColumn;
+
+        Join(final String leftQualifier,
+             final String tableName,
+             final String rightQualifier,
+             final String leftColumn,
+             final String rightColumn) {
+            this.leftQualifier = leftQualifier;
+            this.tableName = tableName;
+            this.rightQualifier = rightQualifier;
+            this.leftColumn = leftColumn;
+            this.rightColumn = rightColumn;
+        }
+
+        /**
+         * Alias of the {@code FROM} table, or its name if the alias is not set.
+         */
+        String getLeftQualifier() {
+            return leftQualifier;
+        }
+
+        String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Alias of the joined table, or its name if the alias is not set.
+         */
+        String getRightQualifier() {
+            return rightQualifier;
+        }
+
+        String getLeftColumn() {
+            return leftColumn;
+        }
+
+        String getRightColumn() {
+            return rightColumn;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Join)) {
+                return false;
+            }
+            final Join join = (Join) o;
+            return Objects.equals(leftQualifier, join.leftQualifier) &&
+                    Objects.equals(tableName, join.tableName) &&
+                    Objects.equals(rightQualifier, join.rightQualifier) &&
+                    Objects.equals(leftColumn, join.leftColumn) &&
+                    Objects.equals(rightColumn, join.rightColumn);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(leftQualifier, tableName, rightQualifier, leftColumn, rightColumn);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("JOIN %s %s ON %s.%s = %s.%s",
+                    tableName, rightQualifier, leftQualifier, leftColumn, rightQualifier, rightColumn);
+        }
+    }
+
+    /**
+     * {@code column IN (SELECT ...)}, the subquery selects the single column, which values are matched against the
+     * {@code column} of the query.
+     */
+    static final class SemiJoin {
+        private final String column;
+        private final SQLQuery query;
+
+        SemiJoin(final String column, final SQLQuery query) {
+            this.column = column;
+            this.query = query;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        SQLQuery getQuery() {
+            return query;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final SemiJoin semiJoin = (SemiJoin) o;
+            return column.equals(semiJoin.column) && query.tableName.equals(semiJoin.query.tableName)
+                    && query.columns.equals(semiJoin.query.columns)
+                    && Objects.equals(query.conditions, semiJoin.query.conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(column, query.tableName);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s IN (SELECT %s FROM %s%s)", column, query.columns.get(0).getName(),
+                    query.tableName, query.conditions == null ? "" : " WHERE " + query.conditions);
+        }
+    }
+
+    /**
+     * Optimizer hints {@code INDEX(name)}, {@code PARALLEL(n)}, {@code CONSISTENT} and {@code PAGE_SIZE(n)}, which
+     * override the choices of the planner for the single query. The joins plan their sides without the hints.
+     */
+    static final class Hints {
+        static final Hints NONE = new Hints(null, 0, false, 0);
+
+        private final String index;
+        private final int parallel;
+        private final boolean consistent;
+        private final int pageSize;
+
+        /**
+         * @param index      name of the secondary index to use, or {@code null}
+         * @param parallel   number of the scan segments, or 0 to use the default
+         * @param consistent whether to use the strongly consistent reads
+         * @param pageSize   DynamoDB {@code Limit} of every {@code Query} and {@code Scan} call, or 0 for no limit
+         */
+        Hints(final String index, final int parallel, final boolean consistent, final int pageSize) {
+            this.index = index;
+            this.parallel = parallel;
+            this.consistent = consistent;
+            this.pageSize = pageSize;
+        }
+
+        Optional<String> getIndex() {
+            return Optional.ofNullable(index);
+        }
+
+        Optional<Integer> getParallel() {
+            return parallel == 0 ? Optional.empty() : Optional.of(parallel);
+        }
+
+        boolean isConsistent() {
+            return consistent;
+        }
+
+        Optional<Integer> getPageSize() {
+            return pageSize == 0 ? Optional.empty() : Optional.of(pageSize);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Hints hints = (Hints) o;
+            return parallel == hints.parallel
+                    && consistent == hints.consistent
+                    && pageSize == hints.pageSize
+                    && Objects.equals(index, hints.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, parallel, consistent, pageSize);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("INDEX(%s) PARALLEL(%d) CONSISTENT(%s) PAGE_SIZE(%d)",
+                    index, parallel, consistent, pageSize);
+        }
+    }
+
     interface Expr {
-        Condition apply(ExpressionSpecBuilder builder, PrimaryKey pk);
+        Condition toCondition();
+
+        Expr mapValues(UnaryOperator<String> mapper);
+
+        Expr mapColumns(UnaryOperator<String> mapper);
     }
 
     enum Operator {
@@ -115,6 +579,14 @@ class SQLQuery {
             this.ex2 = ex2;
         }
 
+        Expr getLeft() {
+            return ex1;
+        }
+
+        Expr getRight() {
+            return ex2;
+        }
+
         @Override
         public boolean equals(final Object o) {
             if (this == o) {
@@ -139,10 +611,18 @@ class SQLQuery {
         }
 
         @Override
-        public Condition apply(final ExpressionSpecBuilder builder, final PrimaryKey pk) {
-            final Condition condition1 = ex1.apply(builder, pk);
-            final Condition condition2 = ex2.apply(builder, pk);
-            return null;
+        public Condition toCondition() {
+            return ex1.toCondition().and(ex2.toCondition());
+        }
+
+        @Override
+        public Expr mapValues(final UnaryOperator<String> mapper) {
+            return new AndExpr(ex1.mapValues(mapper), ex2.mapValues(mapper));
+        }
+
+        @Override
+        public Expr mapColumns(final UnaryOperator<String> mapper) {
+            return new AndExpr(ex1.mapColumns(mapper), ex2.mapColumns(mapper));
         }
     }
 
@@ -155,6 +635,14 @@ class SQLQuery {
             this.ex2 = ex2;
         }
 
+        Expr getLeft() {
+            return ex1;
+        }
+
+        Expr getRight() {
+            return ex2;
+        }
+
         @Override
         public boolean equals(final Object o) {
             if (this == o) {
@@ -169,8 +657,18 @@ class SQLQuery {
         }
 
         @Override
-        public Condition apply(final ExpressionSpecBuilder builder, final PrimaryKey pk) {
-            throw new UnsupportedOperationException("OR ");
+        public Condition toCondition() {
+            return ex1.toCondition().or(ex2.toCondition());
+        }
+
+        @Override
+        public Expr mapValues(final UnaryOperator<String> mapper) {
+            return new OrExpr(ex1.mapValues(mapper), ex2.mapValues(mapper));
+        }
+
+        @Override
+        public Expr mapColumns(final UnaryOperator<String> mapper) {
+            return new OrExpr(ex1.mapColumns(mapper), ex2.mapColumns(mapper));
         }
 
         @Override
@@ -222,9 +720,49 @@ class SQLQuery {
         }
 
         @Override
-        public Condition apply(final ExpressionSpecBuilder builder, final PrimaryKey pk) {
-            S()
-            return null;
+        public Condition toCondition() {
+            return operation.toCondition(columnName, values());
+        }
+
+        @Override
+        public Expr mapValues(final UnaryOperator<String> mapper) {
+            if (value instanceof Between) {
+                final Between<?> between = (Between<?>) value;
+                return new Scalar<>(columnName, new Between<>(
+                        mapper.apply(String.valueOf(between.from)), mapper.apply(String.valueOf(between.to))),
+                        operation);
+            }
+            if (value instanceof In) {
+                return new Scalar<>(columnName, new In<>(((In<?>) value).values.stream()
+                        .map(String::valueOf)
+                        .map(mapper)
+                        .collect(Collectors.toSet())),
+                        operation);
+            }
+            if (value instanceof String) {
+                return new Scalar<>(columnName, mapper.apply((String) value), operation);
+            }
+            return this;
+        }
+
+        @Override
+        public Expr mapColumns(final UnaryOperator<String> mapper) {
+            return new Scalar<>(mapper.apply(columnName), value, operation);
+        }
+
+        /**
+         * Returns the literal values of the condition, i.e. single value for the comparison, two values for the
+         * {@code BETWEEN} and all the values for the {@code IN}.
+         */
+        String[] values() {
+            if (value instanceof Between) {
+                final Between<?> between = (Between<?>) value;
+                return new String[]{String.valueOf(between.from), String.valueOf(between.to)};
+            }
+            if (value instanceof In) {
+                return ((In<?>) value).values.stream().map(String::valueOf).toArray(String[]::new);
+            }
+            return new String[]{String.valueOf(value)};
         }
 
         @Override
@@ -316,10 +854,9 @@ class SQLQuery {
             }
 
             Condition toCondition(final String columnName, final String... value) {
-                final PathOperand operand = args == ONE ? defineValueType(columnName, value[0]) : null;
                 switch (this) {
                     case GE:
-                        return operand.equals()
+                        // fall through
                     case LE:
                         // fall through
                     case NE_ANSI:
@@ -331,30 +868,75 @@ class SQLQuery {
                     case LT:
                         // fall through
                     case EQ:
-                        return new Scalar<>(column, value[0], this);
+                        return Literals.isString(value[0])
+                                ? compare(S(columnName), Literals.unquote(value[0]))
+                                : compare(N(columnName), Literals.toNumber(value[0]));
                     case IS_NULL:
                         // Pass through
+                    case NOT_EXISTS:
+                        return attribute_not_exists(columnName);
                     case IS_NOT_NULL:
                         // Pass through
                     case EXISTS:
-                        // Pass through
-                    case NOT_EXISTS:
-                        return new Scalar<>(column, true, this);
+                        return attribute_exists(columnName);
                     case BETWEEN:
-                        return new Scalar<>(column, new Between<>(value[0], value[1]), this);
+                        return Literals.isString(value[0])
+                                ? S(columnName).between(Literals.unquote(value[0]), Literals.unquote(value[1]))
+                                : N(columnName).between(Literals.toNumber(value[0]), Literals.toNumber(value[1]));
                     case IN:
-                        return new Scalar<>(column, new In<>(new HashSet<>(Arrays.asList(value))), this);
+                        return Literals.isString(value[0])
+                                ? S(columnName).in(Arrays.stream(value).map(Literals::unquote).collect(toList()))
+                                : N(columnName).in(Arrays.stream(value).map(Literals::toNumber).collect(toList()));
                     default:
                         throw new UnsupportedOperationException(
                                 String.format("Operation %s is not supported", this));
                 }
             }
 
-            private PathOperand defineValueType(final String columnName, final String value) {
-                return value.startsWith("'") && value.endsWith("'")
-                        ? S(columnName)
-                        : N(columnName);
+            private Condition compare(final S operand, final String value) {
+                switch (this) {
+                    case GE:
+                        return operand.ge(value);
+                    case LE:
+                        return operand.le(value);
+                    case NE_ANSI:
+                        // fall through
+                    case NE_C:
+                        return operand.ne(value);
+                    case GT:
+                        return operand.gt(value);
+                    case LT:
+                        return operand.lt(value);
+                    case EQ:
+                        return operand.eq(value);
+                    default:
+                        throw new UnsupportedOperationException(
+                                String.format("Operation %s is not a comparison", this));
+                }
+            }
+
+            private Condition compare(final N operand, final BigDecimal value) {
+                switch (this) {
+                    case GE:
+                        return operand.ge(value);
+                    case LE:
+                        return operand.le(value);
+                    case NE_ANSI:
+                        // fall through
+                    case NE_C:
+                        return operand.ne(value);
+                    case GT:
+                        return operand.gt(value);
+                    case LT:
+                        return operand.lt(value);
+                    case EQ:
+                        return operand.eq(value);
+                    default:
+                        throw new UnsupportedOperationException(
+                                String.format("Operation %s is not a comparison", this));
+                }
             }
+
         }
 
         static final class Between<T> {
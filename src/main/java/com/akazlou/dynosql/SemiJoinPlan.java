@@ -0,0 +1,119 @@
+package com.akazlou.dynosql;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import com.akazlou.dynosql.SQLQuery.Expr;
+
+/**
+ * Physical plan of the {@code column IN (SELECT ...)} query.
+ *
+ * <p>The subquery is read by its {@link QueryPlan}, and its distinct values are either looked up in the batches as
+ * {@code column IN (values)} of the outer table (the column is the HASH key of the table or of the index), or matched
+ * against the outer table items read by its own plan.</p>
+ */
+final class SemiJoinPlan {
+    enum Strategy {
+        /**
+         * Batches of the subquery values are looked up by {@code BatchGetItem} or {@code Query} as they arrive.
+         */
+        LOOKUP,
+        /**
+         * All the subquery values are read first, then the outer table is read and filtered by them.
+         */
+        FILTER
+    }
+
+    private final Strategy strategy;
+    private final String column;
+    private final SQLQuery query;
+    private final TableMetadata table;
+    private final boolean hiddenColumn;
+    private final String subqueryColumn;
+    private final TableMetadata subqueryTable;
+    private final QueryPlan subqueryPlan;
+    private final QueryPlan plan;
+
+    SemiJoinPlan(final Strategy strategy,
+                 final String column,
+                 final SQLQuery query,
+                 final TableMetadata table,
+                 final boolean hiddenColumn,
+                 final String subqueryColumn,
+                 final TableMetadata subqueryTable,
+                 final QueryPlan subqueryPlan,
+                 final QueryPlan plan) {
+        this.strategy = strategy;
+        this.column = column;
+        this.query = query;
+        this.table = table;
+        this.hiddenColumn = hiddenColumn;
+        this.subqueryColumn = subqueryColumn;
+        this.subqueryTable = subqueryTable;
+        this.subqueryPlan = subqueryPlan;
+        this.plan = plan;
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Column of the outer table matched against the subquery values.
+     */
+    String getColumn() {
+        return column;
+    }
+
+    TableMetadata getTable() {
+        return table;
+    }
+
+    /**
+     * Returns whether the {@link #getColumn()} is fetched only to match the items, and is not selected.
+     */
+    boolean isHiddenColumn() {
+        return hiddenColumn;
+    }
+
+    String getSubqueryColumn() {
+        return subqueryColumn;
+    }
+
+    TableMetadata getSubqueryTable() {
+        return subqueryTable;
+    }
+
+    QueryPlan getSubqueryPlan() {
+        return subqueryPlan;
+    }
+
+    /**
+     * Plan of the outer table without the subquery condition, for the {@link Strategy#FILTER} only.
+     */
+    Optional<QueryPlan> getPlan() {
+        return Optional.ofNullable(plan);
+    }
+
+    /**
+     * Outer query of the items with the column equal to any of the {@code literals}.
+     */
+    SQLQuery toQuery(final Collection<String> literals) {
+        final Expr in = SQLQuery.Scalar.Operation.IN.apply(column, literals.toArray(new String[0]));
+        return query.withConditions(query.getConditions().<Expr>map(conditions -> new SQLQuery.AndExpr(in, conditions))
+                .orElse(in));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(strategy.name())
+                .append(" SEMI JOIN ").append(column).append(" IN ").append(subqueryColumn)
+                .append(", subquery [").append(subqueryPlan).append(']');
+        if (plan != null) {
+            builder.append(", filter [").append(plan).append(']');
+        } else {
+            builder.append(", lookup ").append(table.getTableName()).append(" by ").append(column);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.akazlou.dynosql;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Coalesces the concurrent loads of the same key, so only the first caller (the leader) runs the loader, while all
+ * the others arriving before it is done wait for and share its result (or failure).
+ *
+ * <p>Nothing is cached, the key is forgotten as soon as the load is done, so the subsequent calls load again.</p>
+ */
+@ThreadSafe
+final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the value of the {@code key}, either by running the {@code loader} or by waiting for the load already in
+     * flight, in which case {@code onCoalesced} is run first.
+     */
+    V execute(final K key, final Supplier<V> loader, final Runnable onCoalesced) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            onCoalesced.run();
+            return await(existing);
+        }
+        try {
+            final V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (final RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    int size() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(final CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while waiting for the coalesced query", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.akazlou.dynosql;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * {@link QueryListener} which logs the queries crossing either the latency or the consumed capacity threshold,
+ * together with the plan, duration, consumed capacity and the scanned to returned items ratio. The threshold of
+ * {@code 0} is disabled, ex. {@code new SlowQueryLog(500, 0)} logs the queries taking 500 ms or more only.
+ *
+ * <p>The query thread only puts the {@link QueryMetrics} into the bounded lock-free queue, formatting and writing the
+ * log entry happens on the single background daemon thread. If the queue is full the entry is dropped (and counted
+ * in {@link #getDropped()}) rather than blocking the query.</p>
+ *
+ * <p>Remember to {@link #close()} the log, which is done by {@link DynoSQL#close()} if it is registered using
+ * {@link DynoSQL.Builder#withSlowQueryLog(long, double)}.</p>
+ */
+@ThreadSafe
+public final class SlowQueryLog implements QueryListener, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long latencyThresholdNanos;
+    private final double capacityThreshold;
+    private final int capacity;
+    private final Consumer<String> writer;
+    private final Queue<QueryMetrics> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    /**
+     * Creates the log writing into the {@code java.util.logging} logger {@code com.akazlou.dynosql.SlowQueryLog} at
+     * the {@code WARNING} level.
+     *
+     * @param latencyThresholdMillis queries taking this or more milliseconds are logged, {@code 0} disables it
+     * @param capacityThreshold      queries consuming this or more capacity units are logged, {@code 0} disables it
+     * @throws IllegalArgumentException if either threshold is negative, or both are disabled
+     */
+    public SlowQueryLog(final long latencyThresholdMillis, final double capacityThreshold) {
+        this(latencyThresholdMillis, capacityThreshold, DEFAULT_CAPACITY, logger::warning);
+    }
+
+    SlowQueryLog(final long latencyThresholdMillis,
+                 final double capacityThreshold,
+                 final int capacity,
+                 final Consumer<String> writer) {
+        validate(latencyThresholdMillis, capacityThreshold);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.capacityThreshold = capacityThreshold;
+        this.capacity = capacity;
+        this.writer = writer;
+        this.drainer = new Thread(this::drain, "dynosql-slow-query-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    @Override
+    public void onQuery(final QueryMetrics metrics) {
+        if (closed || !isSlow(metrics)) {
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(metrics);
+    }
+
+    /**
+     * Number of the slow queries which were not logged, because the queue was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes all the pending entries and stops the background thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void validate(final long latencyThresholdMillis, final double capacityThreshold) {
+        if (latencyThresholdMillis < 0 || capacityThreshold < 0) {
+            throw new IllegalArgumentException("Slow query log thresholds must not be negative");
+        }
+        if (latencyThresholdMillis == 0 && capacityThreshold == 0) {
+            throw new IllegalArgumentException("At least one of the slow query log thresholds must be positive");
+        }
+    }
+
+    private boolean isSlow(final QueryMetrics metrics) {
+        return (latencyThresholdNanos > 0 && metrics.getTotalNanos() >= latencyThresholdNanos)
+                || (capacityThreshold > 0 && metrics.getConsumedCapacity() >= capacityThreshold);
+    }
+
+    private void drain() {
+        while (true) {
+            final QueryMetrics metrics = queue.poll();
+            if (metrics == null) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            size.decrementAndGet();
+            try {
+                writer.accept(format(metrics));
+            } catch (final RuntimeException ex) {
+                // Never let the failed write kill the drainer
+                dropped.increment();
+            }
+        }
+    }
+
+    static String format(final QueryMetrics metrics) {
+        final double ratio = metrics.getReturnedCount() == 0
+                ? metrics.getScannedCount()
+                : (double) metrics.getScannedCount() / metrics.getReturnedCount();
+        return String.format("Slow query %dms, consumedCapacity=%.1f, scanned=%d, returned=%d, "
+                        + "scannedToReturned=%.1f, calls=%d, sql='%s', plan=%s%s",
+                metrics.getTotalMillis(),
+                metrics.getConsumedCapacity(),
+                metrics.getScannedCount(),
+                metrics.getReturnedCount(),
+                ratio,
+                metrics.getCalls(),
+                metrics.getSql(),
+                metrics.getPlan().orElse("none"),
+                metrics.getFailure().map(failure -> ", failure=" + failure).orElse(""));
+    }
+}
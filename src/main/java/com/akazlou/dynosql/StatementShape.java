@@ -0,0 +1,25 @@
+package com.akazlou.dynosql;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes the SQL query into its shape, i.e. with all the literal values replaced by {@code ?}, so the queries
+ * which only differ by the values are grouped together.
+ */
+final class StatementShape {
+    private static final Pattern STRING_LITERAL = Pattern.compile("'[^']*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.\\-])-?\\d+(\\.\\d+)?(?![\\w.\\-])");
+    private static final Pattern VALUES_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+    private static final String PLACEHOLDER = "?";
+
+    private StatementShape() {
+    }
+
+    static String of(final String sql) {
+        String shape = STRING_LITERAL.matcher(sql.trim()).replaceAll(PLACEHOLDER);
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll(PLACEHOLDER);
+        shape = VALUES_LIST.matcher(shape).replaceAll("(" + PLACEHOLDER + ")");
+        return WHITESPACES.matcher(shape).replaceAll(" ");
+    }
+}
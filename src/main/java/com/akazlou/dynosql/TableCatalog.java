@@ -0,0 +1,31 @@
+package com.akazlou.dynosql;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+
+/**
+ * Caches the {@link TableMetadata} of the tables, so {@code DescribeTable} is called only once per table.
+ */
+@ThreadSafe
+final class TableCatalog {
+    private final AmazonDynamoDB client;
+    private final ConcurrentMap<String, TableMetadata> tables = new ConcurrentHashMap<>();
+
+    TableCatalog(final AmazonDynamoDB client) {
+        this.client = client;
+    }
+
+    TableMetadata describe(final String tableName, final QueryStats stats) {
+        final TableMetadata cached = tables.get(tableName);
+        if (cached != null) {
+            stats.recordCacheHit();
+            return cached;
+        }
+        final TableMetadata metadata = TableMetadata.of(client.describeTable(tableName).getTable());
+        final TableMetadata existing = tables.putIfAbsent(tableName, metadata);
+        return existing == null ? metadata : existing;
+    }
+}
@@ -0,0 +1,224 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.IndexStatus;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+/**
+ * Subset of the {@link TableDescription} relevant for the query planning, i.e. primary key and secondary indexes.
+ */
+final class TableMetadata {
+    private static final String ALL_COLUMNS = "*";
+
+    private final String tableName;
+    private final KeySchema primaryKey;
+    private final List<KeySchema> indexes;
+    private final long itemCount;
+    private final long sizeBytes;
+
+    TableMetadata(final String tableName,
+                  final KeySchema primaryKey,
+                  final List<KeySchema> indexes,
+                  final long itemCount,
+                  final long sizeBytes) {
+        this.tableName = tableName;
+        this.primaryKey = primaryKey;
+        this.indexes = Collections.unmodifiableList(indexes);
+        this.itemCount = itemCount;
+        this.sizeBytes = sizeBytes;
+    }
+
+    static TableMetadata of(final TableDescription description) {
+        final KeySchema primaryKey = KeySchema.of(null, description.getKeySchema(), null, null, false);
+        final List<KeySchema> indexes = new ArrayList<>();
+        if (description.getLocalSecondaryIndexes() != null) {
+            for (final LocalSecondaryIndexDescription index : description.getLocalSecondaryIndexes()) {
+                indexes.add(KeySchema.of(
+                        index.getIndexName(), index.getKeySchema(), index.getProjection(), primaryKey, false));
+            }
+        }
+        if (description.getGlobalSecondaryIndexes() != null) {
+            for (final GlobalSecondaryIndexDescription index : description.getGlobalSecondaryIndexes()) {
+                if (index.getIndexStatus() == null || IndexStatus.ACTIVE.toString().equals(index.getIndexStatus())) {
+                    indexes.add(KeySchema.of(
+                            index.getIndexName(), index.getKeySchema(), index.getProjection(), primaryKey, true));
+                }
+            }
+        }
+        return new TableMetadata(
+                description.getTableName(),
+                primaryKey,
+                indexes,
+                description.getItemCount() == null ? 0 : description.getItemCount(),
+                description.getTableSizeBytes() == null ? 0 : description.getTableSizeBytes());
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    KeySchema getPrimaryKey() {
+        return primaryKey;
+    }
+
+    List<KeySchema> getIndexes() {
+        return indexes;
+    }
+
+    long getItemCount() {
+        return itemCount;
+    }
+
+    long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Key schema of either the table itself (then the index name is absent) or one of its secondary indexes.
+     */
+    static final class KeySchema {
+        private final String indexName;
+        private final String hashKey;
+        private final String rangeKey;
+        // null means all the attributes are projected
+        private final Set<String> projection;
+        private final boolean global;
+
+        KeySchema(final String indexName, final String hashKey, final String rangeKey, final Set<String> projection) {
+            this(indexName, hashKey, rangeKey, projection, false);
+        }
+
+        KeySchema(final String indexName,
+                  final String hashKey,
+                  final String rangeKey,
+                  final Set<String> projection,
+                  final boolean global) {
+            this.indexName = indexName;
+            this.hashKey = hashKey;
+            this.rangeKey = rangeKey;
+            this.projection = projection;
+            this.global = global;
+        }
+
+        private static KeySchema of(final String indexName,
+                                    final List<KeySchemaElement> schema,
+                                    final Projection projection,
+                                    final KeySchema primaryKey,
+                                    final boolean global) {
+            String hashKey = null;
+            String rangeKey = null;
+            for (final KeySchemaElement element : schema) {
+                if (KeyType.HASH.toString().equals(element.getKeyType())) {
+                    hashKey = element.getAttributeName();
+                } else {
+                    rangeKey = element.getAttributeName();
+                }
+            }
+            Set<String> attributes = null;
+            if (projection != null && !ProjectionType.ALL.toString().equals(projection.getProjectionType())) {
+                attributes = new HashSet<>();
+                attributes.add(hashKey);
+                attributes.add(primaryKey.hashKey);
+                if (rangeKey != null) {
+                    attributes.add(rangeKey);
+                }
+                if (primaryKey.rangeKey != null) {
+                    attributes.add(primaryKey.rangeKey);
+                }
+                if (projection.getNonKeyAttributes() != null) {
+                    attributes.addAll(projection.getNonKeyAttributes());
+                }
+            }
+            return new KeySchema(indexName, hashKey, rangeKey, attributes, global);
+        }
+
+        Optional<String> getIndexName() {
+            return Optional.ofNullable(indexName);
+        }
+
+        /**
+         * Whether this is the global secondary index, which supports the eventually consistent reads only.
+         */
+        boolean isGlobal() {
+            return global;
+        }
+
+        String getHashKey() {
+            return hashKey;
+        }
+
+        Optional<String> getRangeKey() {
+            return Optional.ofNullable(rangeKey);
+        }
+
+        /**
+         * HASH and (if any) RANGE key attributes.
+         */
+        List<String> getKeyAttributes() {
+            return rangeKey == null ? Collections.singletonList(hashKey) : Arrays.asList(hashKey, rangeKey);
+        }
+
+        /**
+         * Extracts the key attributes of the {@code item}.
+         */
+        Map<String, AttributeValue> keyOf(final Map<String, AttributeValue> item) {
+            final Map<String, AttributeValue> key = new HashMap<>();
+            key.put(hashKey, item.get(hashKey));
+            if (rangeKey != null) {
+                key.put(rangeKey, item.get(rangeKey));
+            }
+            return key;
+        }
+
+        /**
+         * Whether all the referenced {@code attributes} (selected or used in the conditions) are available (projected)
+         * in this index, {@code *} stands for all the attributes.
+         */
+        boolean covers(final Collection<String> attributes) {
+            if (projection == null) {
+                return true;
+            }
+            for (final String attribute : attributes) {
+                if (ALL_COLUMNS.equals(attribute) || !projection.contains(rootAttribute(attribute))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String rootAttribute(final String path) {
+            int end = path.length();
+            final int dot = path.indexOf('.');
+            if (dot >= 0) {
+                end = dot;
+            }
+            final int bracket = path.indexOf('[');
+            if (bracket >= 0 && bracket < end) {
+                end = bracket;
+            }
+            return path.substring(0, end);
+        }
+
+        @Override
+        public String toString() {
+            return indexName == null ? "PRIMARY" : indexName;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.akazlou.dynosql;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Execution strategy for the concurrent DynamoDB calls of the queries, i.e. parallel scan segments,
+ * {@code BatchGetItem} chunks, {@code Query} per every HASH key value and the statements of
+ * {@link DynoSQL#queryAll(java.util.List)}.
+ *
+ * <p>The calling thread always takes part in the execution, running the tasks not yet picked up by the executor, so
+ * the executor may be bounded (or even reject the tasks) without the risk of the deadlock, when the query running on
+ * the executor fans out itself.</p>
+ *
+ * <p>Use either {@link #platform(int)} or {@link #virtual()}, or implement your own, ex. delegating to the
+ * application wide executor.</p>
+ */
+public interface TaskExecutor extends Executor, AutoCloseable {
+    /**
+     * Releases the threads of the executor, called by {@link DynoSQL#close()} for the executor it has created.
+     */
+    @Override
+    void close();
+
+    /**
+     * Fixed pool of the {@code threads} daemon platform threads, with at most {@code threads} tasks waiting in the
+     * queue, the rest are rejected and so run by the calling thread.
+     */
+    static TaskExecutor platform(final int threads) {
+        return new PlatformTaskExecutor(threads);
+    }
+
+    /**
+     * Starts a new virtual thread per every task, available on Java 21 or later.
+     *
+     * @throws UnsupportedOperationException if running on Java before 21
+     */
+    static TaskExecutor virtual() {
+        return VirtualThreads.newTaskExecutor();
+    }
+
+    /**
+     * Whether {@link #virtual()} is supported by the running JVM.
+     */
+    static boolean isVirtualSupported() {
+        return VirtualThreads.isSupported();
+    }
+}
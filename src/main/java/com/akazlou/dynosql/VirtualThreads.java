@@ -0,0 +1,19 @@
+package com.akazlou.dynosql;
+
+/**
+ * Virtual threads are only available on Java 21 or later, the actual implementation is in
+ * {@code META-INF/versions/21} of the multi-release JAR, this one is loaded on the earlier Java versions.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    static TaskExecutor newTaskExecutor() {
+        throw new UnsupportedOperationException(String.format(
+                "Virtual threads require Java 21 or later, but running on %s", System.getProperty("java.version")));
+    }
+}
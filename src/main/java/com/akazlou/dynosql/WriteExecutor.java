@@ -0,0 +1,157 @@
+package com.akazlou.dynosql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Executes the {@link WritePlan} and returns the number of the written items.
+ *
+ * <p>Puts and deletes are grouped into the {@code BatchWriteItem} calls of 25 items, and the batches are sent
+ * concurrently on the executor, retrying the {@code UnprocessedItems} with the exponential backoff. Updates are sent
+ * as the concurrent {@code UpdateItem} calls. The single item is written directly by {@code PutItem},
+ * {@code UpdateItem} or {@code DeleteItem}.</p>
+ *
+ * <p>If the keys are read first, every page of the keys is written before the next page is read.</p>
+ */
+@ThreadSafe
+final class WriteExecutor {
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+
+    private final AmazonDynamoDB client;
+    private final Executor executor;
+    private final QueryExecutor reader;
+
+    WriteExecutor(final AmazonDynamoDB client, final Executor executor, final QueryExecutor reader) {
+        this.client = client;
+        this.executor = executor;
+        this.reader = reader;
+    }
+
+    long execute(final WritePlan plan, final TableMetadata table, final QueryStats stats) {
+        final LongAdder written = new LongAdder();
+        if (plan.getRead().isPresent()) {
+            reader.execute(plan.getRead().get(), stats, page -> {
+                final List<Map<String, AttributeValue>> keys = new ArrayList<>(page.size());
+                page.forEach(item -> keys.add(table.getPrimaryKey().keyOf(item)));
+                written.add(write(plan, keys, stats));
+            });
+        } else {
+            written.add(write(plan, plan.getItems(), stats));
+        }
+        return written.sum();
+    }
+
+    private long write(final WritePlan plan, final List<Map<String, AttributeValue>> items, final QueryStats stats) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        switch (plan.getOperation()) {
+            case PUT:
+                return items.size() == 1
+                        ? put(plan.getTableName(), items.get(0), stats)
+                        : batchWrite(plan.getTableName(), items, item -> new WriteRequest(new PutRequest(item)), stats);
+            case DELETE:
+                return items.size() == 1
+                        ? delete(plan.getTableName(), items.get(0), stats)
+                        : batchWrite(plan.getTableName(), items, key -> new WriteRequest(new DeleteRequest(key)), stats);
+            case UPDATE:
+                return update(plan, items, stats);
+            default:
+                throw new UnsupportedOperationException(
+                        String.format("Operation %s is not supported", plan.getOperation()));
+        }
+    }
+
+    private long put(final String tableName, final Map<String, AttributeValue> item, final QueryStats stats) {
+        final PutItemResult result = stats.getHandle().call(new PutItemRequest(tableName, item)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), client::putItem);
+        stats.recordCall(result.getConsumedCapacity());
+        return 1;
+    }
+
+    private long delete(final String tableName, final Map<String, AttributeValue> key, final QueryStats stats) {
+        final DeleteItemResult result = stats.getHandle().call(new DeleteItemRequest(tableName, key)
+                .withReturnValues(ReturnValue.ALL_OLD)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), client::deleteItem);
+        stats.recordCall(result.getConsumedCapacity());
+        return result.getAttributes() == null || result.getAttributes().isEmpty() ? 0 : 1;
+    }
+
+    private long update(final WritePlan plan, final List<Map<String, AttributeValue>> keys, final QueryStats stats) {
+        final LongAdder updated = new LongAdder();
+        final List<Runnable> tasks = new ArrayList<>(keys.size());
+        for (final Map<String, AttributeValue> key : keys) {
+            tasks.add(() -> {
+                try {
+                    final UpdateItemResult result =
+                            stats.getHandle().call(plan.getUpdate().clone().withKey(key), client::updateItem);
+                    stats.recordCall(result.getConsumedCapacity());
+                    updated.increment();
+                } catch (final ConditionalCheckFailedException ex) {
+                    // The item doesn't exist (anymore)
+                    stats.recordCall(Collections.emptyList());
+                }
+            });
+        }
+        FanOut.run(executor, tasks);
+        return updated.sum();
+    }
+
+    /**
+     * Deleted items are counted by the keys sent, as {@code BatchWriteItem} doesn't tell whether the item existed.
+     */
+    private long batchWrite(final String tableName,
+                            final List<Map<String, AttributeValue>> items,
+                            final Function<Map<String, AttributeValue>, WriteRequest> toRequest,
+                            final QueryStats stats) {
+        final List<Runnable> tasks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += MAX_BATCH_WRITE_ITEMS) {
+            final List<WriteRequest> batch = new ArrayList<>(MAX_BATCH_WRITE_ITEMS);
+            items.subList(from, Math.min(from + MAX_BATCH_WRITE_ITEMS, items.size()))
+                    .forEach(item -> batch.add(toRequest.apply(item)));
+            tasks.add(() -> batchWrite(tableName, batch, stats));
+        }
+        FanOut.run(executor, tasks);
+        return items.size();
+    }
+
+    private void batchWrite(final String tableName, final List<WriteRequest> batch, final QueryStats stats) {
+        Map<String, List<WriteRequest>> requestItems = Collections.singletonMap(tableName, batch);
+        int attempt = 0;
+        while (!requestItems.isEmpty()) {
+            if (attempt > 0) {
+                Backoff.sleep(attempt, stats.getHandle(), "Interrupted while retrying the unprocessed items");
+            }
+            final BatchWriteItemResult result = stats.getHandle().call(new BatchWriteItemRequest()
+                    .withRequestItems(requestItems)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), client::batchWriteItem);
+            stats.recordCall(result.getConsumedCapacity());
+            requestItems = result.getUnprocessedItems() == null
+                    ? Collections.emptyMap()
+                    : result.getUnprocessedItems();
+            attempt++;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.akazlou.dynosql;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+
+/**
+ * Physical plan of the {@code INSERT}, {@code UPDATE} or {@code DELETE} query.
+ *
+ * <p>The keys of the items to update or delete are either known upfront (the primary key is fully bound by the
+ * equalities, the same way as for the {@code GET} read plan), or are read using the {@link QueryPlan} projecting only
+ * the primary key attributes.</p>
+ */
+final class WritePlan {
+    enum Operation {
+        /**
+         * {@code PutItem} for the single item, {@code BatchWriteItem} otherwise.
+         */
+        PUT,
+        /**
+         * {@code UpdateItem} per every key, {@code BatchWriteItem} doesn't support the updates.
+         */
+        UPDATE,
+        /**
+         * {@code DeleteItem} for the single key, {@code BatchWriteItem} otherwise.
+         */
+        DELETE
+    }
+
+    private final Operation operation;
+    private final String tableName;
+    private final List<Map<String, AttributeValue>> items;
+    private final QueryPlan read;
+    private final UpdateItemRequest update;
+
+    private WritePlan(final Operation operation,
+                      final String tableName,
+                      final List<Map<String, AttributeValue>> items,
+                      final QueryPlan read,
+                      final UpdateItemRequest update) {
+        this.operation = operation;
+        this.tableName = tableName;
+        this.items = items;
+        this.read = read;
+        this.update = update;
+    }
+
+    static WritePlan put(final String tableName, final List<Map<String, AttributeValue>> items) {
+        return new WritePlan(Operation.PUT, tableName, Collections.unmodifiableList(items), null, null);
+    }
+
+    static WritePlan update(final String tableName,
+                            final List<Map<String, AttributeValue>> keys,
+                            final QueryPlan read,
+                            final UpdateItemRequest update) {
+        return new WritePlan(Operation.UPDATE, tableName, Collections.unmodifiableList(keys), read, update);
+    }
+
+    static WritePlan delete(final String tableName,
+                            final List<Map<String, AttributeValue>> keys,
+                            final QueryPlan read) {
+        return new WritePlan(Operation.DELETE, tableName, Collections.unmodifiableList(keys), read, null);
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Items to put, or the keys to update or delete if they are known upfront.
+     */
+    List<Map<String, AttributeValue>> getItems() {
+        return items;
+    }
+
+    /**
+     * Plan reading the keys to update or delete, if they are not known upfront.
+     */
+    Optional<QueryPlan> getRead() {
+        return Optional.ofNullable(read);
+    }
+
+    /**
+     * {@code UpdateItem} request without the key.
+     */
+    UpdateItemRequest getUpdate() {
+        return update;
+    }
+
+    @Override
+    public String toString() {
+        if (read != null) {
+            return String.format("%s %s keys from [%s]", operation, tableName, read);
+        }
+        return String.format("%s %s %d item(s)", operation, tableName, items.size());
+    }
+}
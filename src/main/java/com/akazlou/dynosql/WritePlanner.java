@@ -0,0 +1,122 @@
+package com.akazlou.dynosql;
+
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.N;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.S;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.attribute_exists;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.remove;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder;
+import com.amazonaws.services.dynamodbv2.xspec.UpdateItemExpressionSpec;
+
+/**
+ * Chooses the physical plan for the {@code INSERT}, {@code UPDATE} and {@code DELETE} queries.
+ *
+ * <p>The WHERE conditions are analyzed by the {@link QueryPlanner}, as if it was {@code SELECT} of the primary key
+ * attributes. If it results into the {@code GET} plan the keys are used directly, otherwise the keys are read first
+ * by the {@code Query} or {@code Scan} plan.</p>
+ */
+final class WritePlanner {
+    private final QueryPlanner planner;
+
+    WritePlanner(final QueryPlanner planner) {
+        this.planner = planner;
+    }
+
+    WritePlan plan(final SQLQuery query, final TableMetadata table) {
+        switch (query.getType()) {
+            case INSERT:
+                return insert(query, table);
+            case UPDATE:
+                return update(query, table);
+            case DELETE:
+                return delete(query, table);
+            default:
+                throw new IllegalArgumentException(
+                        String.format("Query %s is not INSERT, UPDATE or DELETE", query.getType()));
+        }
+    }
+
+    private WritePlan insert(final SQLQuery query, final TableMetadata table) {
+        final List<String> keyAttributes = table.getPrimaryKey().getKeyAttributes();
+        // The same key can't appear twice in the single batch, the last row wins
+        final Map<Map<String, AttributeValue>, Map<String, AttributeValue>> items = new LinkedHashMap<>();
+        for (final List<String> row : query.getRows()) {
+            final Map<String, AttributeValue> item = new HashMap<>();
+            for (int i = 0; i < row.size(); i++) {
+                final String literal = row.get(i);
+                if (!Literals.isNull(literal)) {
+                    item.put(query.getColumns().get(i).getName(), Literals.toAttributeValue(literal));
+                }
+            }
+            final Map<String, AttributeValue> key = new HashMap<>();
+            for (final String attribute : keyAttributes) {
+                if (!item.containsKey(attribute)) {
+                    throw new IllegalArgumentException(String.format(
+                            "INSERT into %s must set the primary key attribute %s", table.getTableName(), attribute));
+                }
+                key.put(attribute, item.get(attribute));
+            }
+            items.put(key, item);
+        }
+        return WritePlan.put(table.getTableName(), new ArrayList<>(items.values()));
+    }
+
+    private WritePlan update(final SQLQuery query, final TableMetadata table) {
+        final List<String> keyAttributes = table.getPrimaryKey().getKeyAttributes();
+        final ExpressionSpecBuilder builder = new ExpressionSpecBuilder();
+        query.getAssignments().forEach((column, literal) -> {
+            if (keyAttributes.contains(column)) {
+                throw new IllegalArgumentException(
+                        String.format("UPDATE of %s can't change the primary key attribute %s",
+                                table.getTableName(), column));
+            }
+            if (Literals.isNull(literal)) {
+                builder.addUpdate(remove(column));
+            } else if (Literals.isString(literal)) {
+                builder.addUpdate(S(column).set(Literals.unquote(literal)));
+            } else {
+                builder.addUpdate(N(column).set(Literals.toNumber(literal)));
+            }
+        });
+        // UPDATE never creates the item
+        builder.withCondition(attribute_exists(table.getPrimaryKey().getHashKey()));
+        final UpdateItemExpressionSpec spec = builder.buildForUpdate();
+        final UpdateItemRequest update = new UpdateItemRequest()
+                .withTableName(table.getTableName())
+                .withUpdateExpression(spec.getUpdateExpression())
+                .withConditionExpression(spec.getConditionExpression())
+                .withExpressionAttributeNames(spec.getNameMap())
+                .withExpressionAttributeValues(spec.getValueMap() == null || spec.getValueMap().isEmpty()
+                        ? null
+                        : ItemUtils.fromSimpleMap(spec.getValueMap()))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        final QueryPlan read = readKeys(query, table);
+        return read.getOperation() == QueryPlan.Operation.GET
+                ? WritePlan.update(table.getTableName(), read.getKeys().getKeys(), null, update)
+                : WritePlan.update(table.getTableName(), Collections.emptyList(), read, update);
+    }
+
+    private WritePlan delete(final SQLQuery query, final TableMetadata table) {
+        final QueryPlan read = readKeys(query, table);
+        return read.getOperation() == QueryPlan.Operation.GET
+                ? WritePlan.delete(table.getTableName(), read.getKeys().getKeys(), null)
+                : WritePlan.delete(table.getTableName(), Collections.emptyList(), read);
+    }
+
+    private QueryPlan readKeys(final SQLQuery query, final TableMetadata table) {
+        final List<SQLQuery.Column> columns = new ArrayList<>();
+        table.getPrimaryKey().getKeyAttributes().forEach(attribute -> columns.add(new SQLQuery.Column(attribute)));
+        return planner.plan(new SQLQuery(query.getTableName(), columns, query.getConditions().orElse(null)), table);
+    }
+}
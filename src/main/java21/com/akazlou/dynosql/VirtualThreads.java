@@ -0,0 +1,32 @@
+package com.akazlou.dynosql;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version of the class, packaged into {@code META-INF/versions/21} of the multi-release JAR.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    static TaskExecutor newTaskExecutor() {
+        final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("dynosql-virtual-", 0).factory());
+        return new TaskExecutor() {
+            @Override
+            public void execute(final Runnable task) {
+                executor.execute(task);
+            }
+
+            @Override
+            public void close() {
+                executor.shutdownNow();
+            }
+        };
+    }
+}
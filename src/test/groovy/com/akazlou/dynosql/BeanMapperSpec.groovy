@@ -0,0 +1,160 @@
+package com.akazlou.dynosql
+
+import static com.akazlou.dynosql.SQLQuery.Column
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+import spock.lang.Specification
+
+class BeanMapperSpec extends Specification {
+    def "map attribute values into the bean using setters"() {
+        given:
+        def mapper = BeanMapper.of(User).bind([new Column("*")])
+
+        when:
+        def user = mapper.apply([
+                id    : new AttributeValue().withS("u1"),
+                age   : new AttributeValue().withN("42"),
+                score : new AttributeValue().withN("1.5"),
+                active: new AttributeValue().withBOOL(true),
+                status: new AttributeValue().withS("ACTIVE"),
+                tags  : new AttributeValue().withSS("a", "b"),
+                other : new AttributeValue().withS("ignored")])
+
+        then:
+        user.id == "u1"
+        user.age == 42
+        user.score == 1.5d
+        user.active
+        user.status == Status.ACTIVE
+        user.tags == ["a", "b"] as Set
+    }
+
+    def "map attribute into the property using the column alias"() {
+        given:
+        def mapper = BeanMapper.of(User).bind([new Column("user_id", "id"), new Column("user_age", "age")])
+
+        when:
+        def user = mapper.apply([
+                user_id : new AttributeValue().withS("u1"),
+                user_age: new AttributeValue().withN("7")])
+
+        then:
+        user.id == "u1"
+        user.age == 7
+    }
+
+    def "map the column which name contains as by its alias"() {
+        given:
+        def columns = new SQLParser().parse("select password, base_price as price from T").get().columns
+        def mapper = BeanMapper.of(Product).bind(columns)
+
+        when:
+        def product = mapper.apply([
+                password  : new AttributeValue().withS("secret"),
+                base_price: new AttributeValue().withN("9.5")])
+
+        then:
+        product.password == "secret"
+        product.price == 9.5
+    }
+
+    def "skip NULL and missing attributes"() {
+        given:
+        def mapper = BeanMapper.of(User).bind([new Column("*")])
+
+        when:
+        def user = mapper.apply([
+                id : new AttributeValue().withNULL(true),
+                age: new AttributeValue().withNULL(true)])
+
+        then:
+        user.id == null
+        user.age == 0
+        user.score == null
+    }
+
+    def "generate mapper once per class"() {
+        expect:
+        BeanMapper.of(User).is(BeanMapper.of(User))
+        BeanMapper.of(User).bind([new Column("x", "id")]).is(BeanMapper.of(User).bind([new Column("x", "id")]))
+    }
+
+    def "share the binding of the columns without the property aliases"() {
+        expect:
+        BeanMapper.of(User).bind([new Column("a")]).is(BeanMapper.of(User).bind([new Column("b", "c")]))
+    }
+
+    def "pick the overloaded setter matching the getter"() {
+        when:
+        def bean = BeanMapper.of(Overloaded).bind([new Column("*")]).apply([value: new AttributeValue().withS("a")])
+
+        then:
+        bean.value == "a"
+    }
+
+    def "fail for the overloaded setters without the matching getter"() {
+        when:
+        BeanMapper.of(Ambiguous)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "fail for the class without the suitable constructor"() {
+        when:
+        BeanMapper.of(NoConstructor)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    enum Status {
+        ACTIVE, INACTIVE
+    }
+
+    static class User {
+        String id
+        int age
+        Double score
+        boolean active
+        Status status
+        Set<String> tags
+    }
+
+    static class Product {
+        String password
+        BigDecimal price
+    }
+
+    static class Overloaded {
+        private String value
+
+        String getValue() {
+            value
+        }
+
+        void setValue(String value) {
+            this.value = value
+        }
+
+        void setValue(Object value) {
+            this.value = "object"
+        }
+    }
+
+    static class Ambiguous {
+        void setValue(String value) {
+        }
+
+        void setValue(Integer value) {
+        }
+    }
+
+    static class NoConstructor {
+        final String id
+
+        NoConstructor(String id) {
+            this.id = id
+        }
+    }
+}
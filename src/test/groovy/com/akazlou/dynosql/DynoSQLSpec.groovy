@@ -0,0 +1,866 @@
+package com.akazlou.dynosql
+
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import com.amazonaws.AbortedException
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement
+import com.amazonaws.services.dynamodbv2.model.KeyType
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes
+import com.amazonaws.services.dynamodbv2.model.QueryRequest
+import com.amazonaws.services.dynamodbv2.model.QueryResult
+import com.amazonaws.services.dynamodbv2.model.ScanRequest
+import com.amazonaws.services.dynamodbv2.model.ScanResult
+import com.amazonaws.services.dynamodbv2.model.TableDescription
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult
+import com.amazonaws.services.dynamodbv2.model.WriteRequest
+import spock.lang.Specification
+
+class DynoSQLSpec extends Specification {
+    def client = Mock(AmazonDynamoDB)
+    def listener = new HistogramQueryListener()
+    def metrics = [].asSynchronized()
+    def dynoSQL = DynoSQL.builder()
+            .withClient(client)
+            .withListener(listener)
+            .withListener({ metrics << it } as QueryListener)
+            .build()
+
+    def setup() {
+        client.describeTable("T") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("T")
+                .withItemCount(1000)
+                .withTableSizeBytes(100_000)
+                .withKeySchema(new KeySchemaElement("id", KeyType.HASH)))
+    }
+
+    def "query all pages and report the metrics"() {
+        when:
+        def items = dynoSQL.query("select * from T where id = 'a' and x > 1")
+
+        then:
+        2 * client.query(_ as QueryRequest) >>> [
+                new QueryResult()
+                        .withItems([[id: new AttributeValue("a"), x: new AttributeValue().withN("2")]])
+                        .withScannedCount(3)
+                        .withCount(1)
+                        .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(0.5))
+                        .withLastEvaluatedKey([id: new AttributeValue("a")]),
+                new QueryResult()
+                        .withItems([[id: new AttributeValue("a"), x: new AttributeValue().withN("3")]])
+                        .withScannedCount(2)
+                        .withCount(1)
+                        .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(0.5))]
+        items*.getNumber("x") == [2, 3]
+        metrics.size() == 1
+        with(metrics[0] as QueryMetrics) {
+            operation.get() == "QUERY"
+            calls == 2
+            pages == 2
+            scannedCount == 5
+            returnedCount == 2
+            consumedCapacity == 1.0d
+            resultBytes > 0
+            cacheHits == 0
+            !failure.isPresent()
+        }
+    }
+
+    def "answer the always false conditions without calling DynamoDB"() {
+        when:
+        def items = dynoSQL.query("select * from T where id = 'a' and id = 'b'")
+        def deleted = dynoSQL.update("delete from T where x > 5 and x < 1")
+
+        then:
+        0 * client.batchGetItem(_)
+        0 * client.query(_)
+        0 * client.scan(_)
+        0 * client.deleteItem(_)
+        items.isEmpty()
+        deleted == 0
+        (metrics[0] as QueryMetrics).operation.get() == "NONE"
+    }
+
+    def "scan without HASH key and cache the table metadata"() {
+        when:
+        dynoSQL.query("select * from T where x = 1")
+        dynoSQL.query("select * from T where x = 2")
+
+        then:
+        2 * client.scan(_ as ScanRequest) >> new ScanResult().withItems([]).withScannedCount(10).withCount(0)
+        metrics*.cacheHits == [0, 1]
+        listener.stats.size() == 1
+        with(listener.stats.values().first()) {
+            total.count == 2
+            scannedCount == 20
+            returnedCount == 0
+        }
+    }
+
+    def "retry unprocessed keys of batch get"() {
+        when:
+        def items = dynoSQL.query("select * from T where id in ('a', 'b')")
+
+        then:
+        2 * client.batchGetItem(_ as BatchGetItemRequest) >>> [
+                new BatchGetItemResult()
+                        .withResponses([T: [[id: new AttributeValue("a")]]])
+                        .withUnprocessedKeys([T: new KeysAndAttributes().withKeys([id: new AttributeValue("b")])]),
+                new BatchGetItemResult()
+                        .withResponses([T: [[id: new AttributeValue("b")]]])
+                        .withUnprocessedKeys([:])]
+        items*.getString("id") as Set == ["a", "b"] as Set
+        metrics[0].operation.get() == "GET"
+        metrics[0].calls == 2
+    }
+
+    def "report the failure"() {
+        given:
+        def failure = new IllegalStateException("boom")
+
+        when:
+        dynoSQL.query("select * from T")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { throw failure }
+        thrown(IllegalStateException)
+        metrics[0].failure.get().is(failure)
+        listener.stats.values().first().failures == 1
+    }
+
+    def "map into the bean"() {
+        when:
+        def beans = dynoSQL.query("select id as name from T where id = 'a'", Bean)
+
+        then:
+        1 * client.batchGetItem(_ as BatchGetItemRequest) >>
+                new BatchGetItemResult().withResponses([T: [[id: new AttributeValue("a")]]])
+        beans*.name == ["a"]
+    }
+
+    def "explain the plan without executing the query"() {
+        when:
+        def items = dynoSQL.query("explain select id, x from T where id in ('a', 'b') and x > 1")
+
+        then:
+        0 * client.query(_)
+        items.size() == 1
+        with(items[0]) {
+            getString("operation") == "QUERY"
+            getString("table") == "T"
+            getString("keyConditionExpression") ==~ /id = '[ab]'/
+            getString("filterExpression") == "x > 1"
+            getInt("partitions") == 2
+            getInt("parallelism") == 1
+            getNumber("estimatedReadCapacityUnits") == 1.0
+        }
+    }
+
+    def "explain analyze executes the query and reports the actual statistics"() {
+        when:
+        def items = dynoSQL.query("explain analyze select * from T")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> new ScanResult()
+                .withItems([[id: new AttributeValue("a")]])
+                .withScannedCount(4)
+                .withCount(1)
+                .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(0.5))
+        items.size() == 1
+        with(items[0]) {
+            getString("operation") == "SCAN"
+            getNumber("estimatedReadCapacityUnits") == 12.5
+            getInt("calls") == 1
+            getInt("scannedCount") == 4
+            getInt("returnedCount") == 1
+            getNumber("consumedCapacity") == 0.5
+            isPresent("executionMillis")
+        }
+        metrics[0].scannedCount == 4
+    }
+
+    def "merge the point lookups of queryAll into the shared batch get and keep the order"() {
+        when:
+        def results = dynoSQL.queryAll([
+                "select * from T where id = 'a'",
+                "select * from T where x = 1",
+                "select * from T where id in ('b', 'a')",
+                "select * from T where id = 'c'"])
+
+        then:
+        1 * client.batchGetItem({ BatchGetItemRequest request ->
+            request.requestItems.T.keys*.id*.s == ["a", "b", "c"]
+        }) >> new BatchGetItemResult().withResponses([T: [
+                [id: new AttributeValue("b"), v: new AttributeValue().withN("2")],
+                [id: new AttributeValue("a"), v: new AttributeValue().withN("1")]]])
+        1 * client.scan(_ as ScanRequest) >> new ScanResult().withItems([[id: new AttributeValue("z")]])
+        results.size() == 4
+        results[0]*.getString("id") == ["a"]
+        results[1]*.getString("id") == ["z"]
+        results[2]*.getString("id") == ["b", "a"]
+        results[3].isEmpty()
+        metrics.size() == 4
+        metrics*.calls.sum() == 2
+    }
+
+    def "merge the number keys written differently into the single key"() {
+        when:
+        def results = dynoSQL.queryAll([
+                "select * from T where id = 1.0",
+                "select * from T where id = 1"])
+
+        then:
+        1 * client.batchGetItem({ BatchGetItemRequest request ->
+            request.requestItems.T.keys*.id*.n == ["1.0"]
+        }) >> new BatchGetItemResult().withResponses([T: [[id: new AttributeValue().withN("1")]]])
+        results*.size() == [1, 1]
+    }
+
+    def "run the prepared queries"() {
+        given:
+        def prepared = dynoSQL.prepare("select * from T where id = ?")
+
+        when:
+        def results = dynoSQL.queryAllPrepared([prepared.bind("a"), prepared.bind("b")])
+
+        then:
+        1 * client.batchGetItem(_ as BatchGetItemRequest) >> new BatchGetItemResult().withResponses([T: [
+                [id: new AttributeValue("a")], [id: new AttributeValue("b")]]])
+        results*.collect { it.getString("id") } == [["a"], ["b"]]
+        metrics*.sql as Set == ["select * from T where id = 'a'", "select * from T where id = 'b'"] as Set
+    }
+
+    def "throw the first failure of queryAll once all the queries are done"() {
+        when:
+        dynoSQL.queryAll(["select * from T where x = 1", "select * from T where x = 2"])
+
+        then:
+        2 * client.scan(_ as ScanRequest) >> { throw new IllegalStateException("boom") }
+        thrown(IllegalStateException)
+        metrics.size() == 2
+        metrics.every { it.failure.isPresent() }
+    }
+
+    def "coalesce the identical queries in flight into the single call"() {
+        given:
+        def entered = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def sql = "select * from T where x = 1"
+
+        when:
+        def leader = Thread.start { dynoSQL.query(sql) }
+        entered.await(1, TimeUnit.SECONDS)
+        def follower = Thread.start { dynoSQL.query(sql) }
+        waitFor { follower.state == Thread.State.WAITING }
+        release.countDown()
+        [leader, follower]*.join(1000)
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> {
+            entered.countDown()
+            release.await(1, TimeUnit.SECONDS)
+            new ScanResult().withItems([[id: new AttributeValue("a")]]).withCount(1).withScannedCount(1)
+        }
+        metrics.size() == 2
+        metrics*.calls.sort() == [0, 1]
+        metrics*.returnedCount.sort() == [0, 1]
+        metrics*.resultBytes.every { it > 0 }
+    }
+
+    def "scan the segments in parallel"() {
+        given:
+        def parallel = DynoSQL.builder()
+                .withClient(client)
+                .withScanParallelism(3)
+                .build()
+
+        when:
+        def items = parallel.query("select * from T where x = 1")
+
+        then:
+        3 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.totalSegments == 3
+            new ScanResult().withItems([[id: new AttributeValue("s" + request.segment)]])
+        }
+        items*.getString("id") as Set == ["s0", "s1", "s2"] as Set
+
+        cleanup:
+        parallel.close()
+    }
+
+    def "stop fetching the pages once the handle is cancelled"() {
+        given:
+        def handle = new QueryHandle()
+
+        when:
+        dynoSQL.query("select * from T where x = 1", handle)
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> {
+            handle.cancel()
+            new ScanResult()
+                    .withItems([[id: new AttributeValue("a")]])
+                    .withLastEvaluatedKey([id: new AttributeValue("a")])
+        }
+        def ex = thrown(AbortedException)
+        ex.message == "Query was cancelled"
+        !Thread.currentThread().isInterrupted()
+        (metrics[0] as QueryMetrics).failure.isPresent()
+    }
+
+    def "abort the parallel segment calls in flight once the handle is cancelled"() {
+        given:
+        def parallel = DynoSQL.builder()
+                .withClient(client)
+                .withScanParallelism(2)
+                .build()
+        def handle = new QueryHandle()
+        def started = new CountDownLatch(1)
+        Thread.start {
+            started.await()
+            handle.cancel()
+        }
+
+        when:
+        parallel.query("select * from T where x = 1", handle)
+
+        then:
+        _ * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            if (request.segment == 1) {
+                Thread.sleep(10)
+                return new ScanResult()
+                        .withItems([[id: new AttributeValue("b")]])
+                        .withLastEvaluatedKey([id: new AttributeValue("b")])
+            }
+            started.countDown()
+            try {
+                Thread.sleep(10_000)
+            } catch (InterruptedException ex) {
+                // The same way as the SDK reports the interrupted call
+                throw new AbortedException("Thread was interrupted", ex)
+            }
+            new ScanResult()
+        }
+        def ex = thrown(AbortedException)
+        ex.message == "Query was cancelled"
+
+        cleanup:
+        parallel.close()
+    }
+
+    def "keep the interrupt not delivered by the cancellation"() {
+        given:
+        def handle = new QueryHandle()
+
+        when:
+        dynoSQL.query("select * from T where x = 1", handle)
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> {
+            Thread.currentThread().interrupt()
+            handle.cancel()
+            new ScanResult()
+                    .withItems([[id: new AttributeValue("a")]])
+                    .withLastEvaluatedKey([id: new AttributeValue("a")])
+        }
+        thrown(AbortedException)
+        Thread.interrupted()
+    }
+
+    def "cancel the backoff before retrying the unprocessed keys"() {
+        given:
+        def handle = new QueryHandle()
+        def returned = new CountDownLatch(1)
+        def caller = Thread.currentThread()
+        Thread.start {
+            returned.await()
+            while (caller.state != Thread.State.TIMED_WAITING) {
+                Thread.yield()
+            }
+            handle.cancel()
+        }
+
+        when:
+        dynoSQL.query("select * from T where id in ('a', 'b')", handle)
+
+        then:
+        1 * client.batchGetItem(_ as BatchGetItemRequest) >> {
+            returned.countDown()
+            new BatchGetItemResult()
+                    .withResponses([T: [[id: new AttributeValue("a")]]])
+                    .withUnprocessedKeys([T: new KeysAndAttributes().withKeys([id: new AttributeValue("b")])])
+        }
+        def ex = thrown(AbortedException)
+        ex.message == "Query was cancelled"
+        !Thread.currentThread().isInterrupted()
+    }
+
+    def "time out the query and limit every call by the time left"() {
+        given:
+        def limited = DynoSQL.builder()
+                .withClient(client)
+                .withQueryTimeout(100)
+                .build()
+
+        when:
+        limited.query("select * from T where x = 1")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.sdkClientExecutionTimeout in 1..100
+            Thread.sleep(150)
+            new ScanResult()
+                    .withItems([[id: new AttributeValue("a")]])
+                    .withLastEvaluatedKey([id: new AttributeValue("a")])
+        }
+        thrown(ClientExecutionTimeoutException)
+
+        cleanup:
+        limited.close()
+    }
+
+    def "insert the rows in batches of 25 and retry unprocessed items"() {
+        given:
+        def rows = (1..30).collect { "('k$it', $it)" }.join(", ")
+        def batches = [].asSynchronized()
+
+        when:
+        def written = dynoSQL.update("insert into T (id, x) values $rows")
+
+        then:
+        3 * client.batchWriteItem(_ as BatchWriteItemRequest) >> { BatchWriteItemRequest request ->
+            List<WriteRequest> batch = request.requestItems.T
+            batches << batch.size()
+            def unprocessed = batch.size() == 25 ? [T: [batch[0]]] : [:]
+            new BatchWriteItemResult().withUnprocessedItems(unprocessed)
+        }
+        written == 30
+        batches.sort() == [1, 5, 25]
+        metrics[0].operation.get() == "PUT"
+        metrics[0].calls == 3
+    }
+
+    def "update the single item directly"() {
+        when:
+        def written = dynoSQL.update(dynoSQL.prepare("update T set name = ?, x = null where id = ?").bind("n", "a"))
+
+        then:
+        1 * client.updateItem({ UpdateItemRequest request ->
+            request.key == [id: new AttributeValue("a")] &&
+                    request.updateExpression == "SET #0 = :0 REMOVE #1" &&
+                    request.conditionExpression == "attribute_exists(#2)" &&
+                    request.expressionAttributeNames == ["#0": "name", "#1": "x", "#2": "id"]
+        }) >> new UpdateItemResult()
+        0 * client.query(_)
+        0 * client.scan(_)
+        written == 1
+        metrics[0].operation.get() == "UPDATE"
+    }
+
+    def "skip the update of the missing item"() {
+        when:
+        def written = dynoSQL.update("update T set name = 'n' where id in ('a', 'b')")
+
+        then:
+        2 * client.updateItem(_ as UpdateItemRequest) >> new UpdateItemResult() >> {
+            throw new ConditionalCheckFailedException("missing")
+        }
+        written == 1
+    }
+
+    def "delete the keys read by scan"() {
+        when:
+        def written = dynoSQL.update("delete from T where x > 1")
+
+        then:
+        1 * client.scan({ ScanRequest request -> request.projectionExpression != null }) >>
+                new ScanResult().withItems([[id: new AttributeValue("a")], [id: new AttributeValue("b")]])
+        1 * client.batchWriteItem({ BatchWriteItemRequest request ->
+            request.requestItems.T*.deleteRequest*.key == [[id: new AttributeValue("a")], [id: new AttributeValue("b")]]
+        }) >> new BatchWriteItemResult()
+        written == 2
+        metrics[0].operation.get() == "DELETE"
+    }
+
+    def "delete the single key and count the existing item only"() {
+        when:
+        def written = dynoSQL.update("delete from T where id = 'a'")
+
+        then:
+        1 * client.deleteItem(_ as DeleteItemRequest) >> new DeleteItemResult()
+        written == 0
+    }
+
+    def "reject SELECT as update and INSERT as query"() {
+        when:
+        dynoSQL.update("select * from T")
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        dynoSQL.query("insert into T (id) values ('a')")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "export the parallel scan segments into NDJSON in the segments order"() {
+        given:
+        def directory = Files.createTempDirectory("dynosql")
+        def target = directory.resolve("T.ndjson")
+        def parallel = DynoSQL.builder()
+                .withClient(client)
+                .withScanParallelism(3)
+                .build()
+
+        when:
+        def exported = parallel.export("select * from T where x > 0", target, ExportFormat.NDJSON)
+
+        then:
+        4 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            def id = "s${request.segment}-${request.exclusiveStartKey == null ? 0 : 1}".toString()
+            new ScanResult()
+                    .withItems([[id: new AttributeValue(id), x: new AttributeValue().withN("1")]])
+                    .withLastEvaluatedKey(request.segment == 1 && request.exclusiveStartKey == null
+                            ? [id: new AttributeValue(id)]
+                            : null)
+        }
+        exported == 4
+        target.readLines() == [
+                '{"id":"s0-0","x":1}',
+                '{"id":"s1-0","x":1}',
+                '{"id":"s1-1","x":1}',
+                '{"id":"s2-0","x":1}']
+        Files.list(directory).count() == 1
+
+        cleanup:
+        parallel.close()
+        directory.deleteDir()
+    }
+
+    def "export the selected columns into CSV"() {
+        given:
+        def directory = Files.createTempDirectory("dynosql")
+        def target = directory.resolve("T.csv")
+
+        when:
+        def exported = dynoSQL.export("select id, name as title, tags from T", target, ExportFormat.CSV)
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> new ScanResult().withItems([
+                [id: new AttributeValue("a"), name: new AttributeValue('say "hi", bye'), tags: new AttributeValue().withSS("t")],
+                [id: new AttributeValue("a")]])
+        exported == 2
+        target.readLines() == ['id,title,tags', 'a,"say ""hi"", bye","[""t""]"', 'a,,']
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    def "reject CSV export of all the columns"() {
+        given:
+        def directory = Files.createTempDirectory("dynosql")
+
+        when:
+        dynoSQL.export("select * from T", directory.resolve("T.csv"), ExportFormat.CSV)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * client.scan(_)
+        Files.list(directory).count() == 0
+
+        cleanup:
+        directory.deleteDir()
+    }
+
+    def "order by the attribute not selected on the client side"() {
+        given:
+        def small = DynoSQL.builder()
+                .withClient(client)
+                .withSortMemoryBudget(100)
+                .build()
+
+        when:
+        def items = small.query("select id from T where x > 0 order by x desc")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.projectionExpression.split(",").collect { request.expressionAttributeNames[it.trim()] } == ["id", "x"]
+            new ScanResult().withItems(
+                    (1..10).collect { [id: new AttributeValue("k$it"), x: new AttributeValue().withN("$it")] })
+        }
+        items*.getString("id") == (10..1).collect { "k$it" }
+        items.every { it.asMap().keySet() == ["id"] as Set }
+
+        cleanup:
+        small.close()
+    }
+
+    def "join by batch get of the inner HASH key"() {
+        given:
+        client.describeTable("O") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("O")
+                .withItemCount(10_000)
+                .withTableSizeBytes(1_000_000)
+                .withKeySchema(new KeySchemaElement("order_id", KeyType.HASH)))
+
+        when:
+        def items = dynoSQL.query(
+                "select o.order_id, t.name as owner from O o join T t on o.owner = t.id where o.total > 10 order by o.order_id")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.tableName == "O"
+            new ScanResult().withItems([
+                    [order_id: new AttributeValue("o2"), owner: new AttributeValue("a")],
+                    [order_id: new AttributeValue("o1"), owner: new AttributeValue("b")],
+                    [order_id: new AttributeValue("o3"), owner: new AttributeValue("a")],
+                    [order_id: new AttributeValue("o4"), owner: new AttributeValue("z")]])
+        }
+        1 * client.batchGetItem(_ as BatchGetItemRequest) >> { BatchGetItemRequest request ->
+            assert request.requestItems.T.keys as Set == [[id: new AttributeValue("a")], [id: new AttributeValue("b")],
+                                                          [id: new AttributeValue("z")]] as Set
+            new BatchGetItemResult()
+                    .withResponses([T: [[id: new AttributeValue("a"), name: new AttributeValue("Alice")],
+                                        [id: new AttributeValue("b"), name: new AttributeValue("Bob")]]])
+                    .withUnprocessedKeys([:])
+        }
+        items*.getString("order_id") == ["o1", "o2", "o3"]
+        items*.getString("owner") == ["Bob", "Alice", "Alice"]
+        items.every { it.asMap().keySet() == ["order_id", "owner"] as Set }
+        metrics[0].operation.get() == "NESTED_LOOP_JOIN"
+        metrics[0].calls == 2
+    }
+
+    def "hash join the scans building on the smaller table"() {
+        given:
+        client.describeTable("U") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("U")
+                .withItemCount(10)
+                .withTableSizeBytes(1_000)
+                .withKeySchema(new KeySchemaElement("uid", KeyType.HASH)))
+
+        when:
+        def items = dynoSQL.query("select * from T a join U b on a.email = b.email")
+
+        then:
+        1 * client.scan({ it.tableName == "U" }) >> new ScanResult().withItems([
+                [uid: new AttributeValue("u1"), email: new AttributeValue("x@y")],
+                [uid: new AttributeValue("u2"), email: new AttributeValue("n@m")]])
+
+        then:
+        1 * client.scan({ it.tableName == "T" }) >> new ScanResult().withItems([
+                [id: new AttributeValue("a"), email: new AttributeValue("x@y")],
+                [id: new AttributeValue("b")]])
+        items.size() == 1
+        items[0].asMap() == ["a.id": "a", "a.email": "x@y", "b.uid": "u1", "b.email": "x@y"]
+        metrics[0].operation.get() == "HASH_JOIN"
+    }
+
+    def "reject the unqualified column of JOIN"() {
+        given:
+        client.describeTable("U") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("U")
+                .withKeySchema(new KeySchemaElement("uid", KeyType.HASH)))
+
+        when:
+        dynoSQL.query("select name from T a join U b on a.email = b.email")
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * client.scan(_)
+    }
+
+    def "look the distinct subquery values up by batch get"() {
+        given:
+        client.describeTable("O") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("O")
+                .withKeySchema(new KeySchemaElement("order_id", KeyType.HASH)))
+
+        when:
+        def items = dynoSQL.query("select * from T where id in (select owner from O where total > 10)")
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.tableName == "O"
+            new ScanResult().withItems((1..150).collect { [owner: new AttributeValue("u${it % 120}")] })
+        }
+        2 * client.batchGetItem(_ as BatchGetItemRequest) >> { BatchGetItemRequest request ->
+            new BatchGetItemResult()
+                    .withResponses([T: request.requestItems.T.keys.findAll { it.id.s != "u7" }])
+                    .withUnprocessedKeys([:])
+        }
+        items.size() == 119
+        items*.getString("id") as Set == (0..119).findAll { it != 7 }.collect { "u$it" } as Set
+        metrics[0].operation.get() == "LOOKUP_SEMI_JOIN"
+    }
+
+    def "filter the table by the subquery values"() {
+        given:
+        client.describeTable("O") >> new DescribeTableResult().withTable(new TableDescription()
+                .withTableName("O")
+                .withKeySchema(new KeySchemaElement("order_id", KeyType.HASH)))
+
+        when:
+        def items = dynoSQL.query("select id from T where owner in (select name from O) order by id")
+
+        then:
+        1 * client.scan({ it.tableName == "O" }) >> new ScanResult().withItems(
+                (1..200).collect { [name: new AttributeValue("n$it")] })
+
+        then:
+        1 * client.scan({ it.tableName == "T" }) >> { ScanRequest request ->
+            assert !request.filterExpression
+            new ScanResult().withItems([
+                    [id: new AttributeValue("b"), owner: new AttributeValue("n2")],
+                    [id: new AttributeValue("c"), owner: new AttributeValue("x")],
+                    [id: new AttributeValue("a"), owner: new AttributeValue("n1")]])
+        }
+        items*.asMap() == [[id: "a"], [id: "b"]]
+        metrics[0].operation.get() == "FILTER_SEMI_JOIN"
+    }
+
+    def "resume the query from the cursor of the previous page"() {
+        when:
+        def first = dynoSQL.queryPage("select * from T where id = 'a' and x > 1", 2, null)
+
+        then:
+        1 * client.query(_ as QueryRequest) >> { QueryRequest request ->
+            assert request.limit == 2
+            assert request.exclusiveStartKey == null
+            new QueryResult()
+                    .withItems([[id: new AttributeValue("a"), x: new AttributeValue().withN("2")],
+                                [id: new AttributeValue("a"), x: new AttributeValue().withN("3")]])
+                    .withLastEvaluatedKey([id: new AttributeValue("a"), x: new AttributeValue().withN("3")])
+        }
+        first.items*.getNumber("x") == [2, 3]
+        first.hasMore()
+
+        when:
+        def second = dynoSQL.queryPage("select * from T where id = 'a' and x > 1", 2, first.cursor.get())
+
+        then:
+        1 * client.query(_ as QueryRequest) >> { QueryRequest request ->
+            assert request.exclusiveStartKey == [id: new AttributeValue("a"), x: new AttributeValue().withN("3")]
+            new QueryResult().withItems([[id: new AttributeValue("a"), x: new AttributeValue().withN("4")]])
+        }
+        second.items*.getNumber("x") == [4]
+        !second.hasMore()
+    }
+
+    def "page the parallel scan segments by their own positions"() {
+        given:
+        def parallel = DynoSQL.builder()
+                .withClient(client)
+                .withScanParallelism(2)
+                .build()
+
+        when:
+        def first = parallel.queryPage("select * from T where x = 1", 4, null)
+
+        then:
+        2 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.limit == 2
+            request.segment == 0
+                    ? new ScanResult().withItems([[id: new AttributeValue("a")], [id: new AttributeValue("a2")]])
+                    : new ScanResult().withItems([[id: new AttributeValue("b")], [id: new AttributeValue("c")]])
+                    .withLastEvaluatedKey([id: new AttributeValue("c")])
+        }
+        first.items*.getString("id") == ["a", "a2", "b", "c"]
+
+        when:
+        def second = parallel.queryPage("select * from T where x = 1", 4, first.cursor.get())
+
+        then:
+        1 * client.scan(_ as ScanRequest) >> { ScanRequest request ->
+            assert request.segment == 1
+            assert request.limit == 4
+            assert request.exclusiveStartKey == [id: new AttributeValue("c")]
+            new ScanResult().withItems([[id: new AttributeValue("d")]])
+        }
+        second.items*.getString("id") == ["d"]
+        !second.cursor.present
+
+        cleanup:
+        parallel.close()
+    }
+
+    def "call every partition at most once per page"() {
+        when:
+        def first = dynoSQL.queryPage("select * from T where id in ('a', 'b') and x > 1", 2, null)
+
+        then:
+        1 * client.query(_ as QueryRequest) >> new QueryResult()
+                .withItems([])
+                .withLastEvaluatedKey([id: new AttributeValue("a"), x: new AttributeValue().withN("3")])
+        first.items.isEmpty()
+        first.hasMore()
+
+        when:
+        def second = dynoSQL.queryPage("select  *  from T where id in ('a', 'b') and x > 1", 2, first.cursor.get())
+
+        then:
+        2 * client.query(_ as QueryRequest) >>> [
+                new QueryResult().withItems([]),
+                new QueryResult()
+                        .withItems([[id: new AttributeValue("b"), x: new AttributeValue().withN("2")]])
+                        .withLastEvaluatedKey([id: new AttributeValue("b"), x: new AttributeValue().withN("2")])]
+        second.items*.getString("id") == ["b"]
+        second.hasMore()
+    }
+
+    def "page the batch get keys"() {
+        when:
+        def first = dynoSQL.queryPage("select * from T where id in ('a', 'b', 'c')", 2, null)
+        def second = dynoSQL.queryPage("select * from T where id in ('a', 'b', 'c')", 2, first.cursor.get())
+
+        then:
+        2 * client.batchGetItem(_ as BatchGetItemRequest) >> { BatchGetItemRequest request ->
+            new BatchGetItemResult().withResponses([T: request.requestItems.T.keys]).withUnprocessedKeys([:])
+        }
+        first.items.size() == 2
+        first.hasMore()
+        (first.items + second.items)*.getString("id") as Set == ["a", "b", "c"] as Set
+        !second.hasMore()
+    }
+
+    def "reject the cursor of the other query"() {
+        given:
+        client.scan(_ as ScanRequest) >> new ScanResult()
+                .withItems([[id: new AttributeValue("a")]])
+                .withLastEvaluatedKey([id: new AttributeValue("a")])
+        def cursor = dynoSQL.queryPage("select * from T where x = 1", 1, null).cursor.get()
+
+        when:
+        dynoSQL.queryPage("select * from T where x = 2", 1, cursor)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (!condition() && System.nanoTime() < deadline) {
+            Thread.sleep(1)
+        }
+    }
+
+    static class Bean {
+        String name
+    }
+}
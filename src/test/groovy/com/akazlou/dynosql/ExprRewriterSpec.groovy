@@ -0,0 +1,70 @@
+package com.akazlou.dynosql
+
+import com.akazlou.dynosql.SQLQuery.Expr
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ExprRewriterSpec extends Specification {
+    @Unroll
+    def "rewrite #conditions into #rewritten"(Expr conditions, Expr rewritten) {
+        expect:
+        ExprRewriter.rewrite(conditions).get() == rewritten
+
+        where:
+        conditions                                                        || rewritten
+        where("a > 1 and a > 5")                                          || where("a > 5")
+        where("a >= 1 and a <= 5 and b = 2")                              || where("a between 1 and 5 and b = 2")
+        where("a > 1 and a <= 5")                                         || where("a > 1 and a <= 5")
+        where("a >= 3 and a between 1 and 5")                             || where("a between 3 and 5")
+        where("a between 2 and 2")                                        || where("a = 2")
+        where("a >= 2 and a <= 2.0")                                      || where("a = 2")
+        where("a = 1 or a = 2 or b = 3")                                  || where("a in (1, 2) or b = 3")
+        or(where("a = 'x'"), where("a in ('y', 'x') or a = 'z'"))         || where("a in ('x', 'y', 'z')")
+        where("a in (1, 2, 3) and a > 1")                                 || where("a in (2, 3)")
+        where("a in (1, 2) and a <> 1")                                   || where("a = 2")
+        where("a = 1 and b = 2 and a = 1 and b = 2")                      || where("a = 1 and b = 2")
+        where("a <> 1 and a != 1 and a > 0")                              || where("a > 0 and a <> 1")
+        where("a > 'b' and a > 'ab'")                                     || where("a > 'b'")
+        where("a = 1 or a = 'x'")                                         || where("a = 1 or a = 'x'")
+        or(where("a = 1 and b = 2"), where("b = 2 and a = 1"))            || where("a = 1 and b = 2")
+        and(where("a = 1"), or(where("b = 2"), where("b = 3 and b = 4"))) || where("a = 1 and b = 2")
+        where("a exists and a > 1")                                       || where("a > 1")
+    }
+
+    @Unroll
+    def "detect the always false #conditions"(Expr conditions) {
+        expect:
+        !ExprRewriter.rewrite(conditions).isPresent()
+
+        where:
+        conditions << [where("a = 1 and a = 2"),
+                       where("a > 5 and a < 1"),
+                       where("a > 1 and a <= 1"),
+                       where("a between 5 and 1"),
+                       where("a in (1, 2) and a > 2"),
+                       where("a = 1 and a <> 1.0"),
+                       where("a is null and a = 1"),
+                       or(where("a = 1 and a = 2"), where("b > 2 and b < 1")),
+                       and(where("x = 1"), or(where("a = 1 and a = 2"), where("b = 1 and b = 2")))]
+    }
+
+    def "keep the query without the conditions"() {
+        given:
+        def query = new SQLParser().parse("select * from T").get()
+
+        expect:
+        ExprRewriter.rewrite(query).get().is(query)
+    }
+
+    private static Expr where(final String conditions) {
+        new SQLParser().parse("select * from T where " + conditions).get().conditions.get()
+    }
+
+    private static Expr and(final Expr left, final Expr right) {
+        new SQLQuery.AndExpr(left, right)
+    }
+
+    private static Expr or(final Expr left, final Expr right) {
+        new SQLQuery.OrExpr(left, right)
+    }
+}
@@ -0,0 +1,122 @@
+package com.akazlou.dynosql
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+import spock.lang.Specification
+
+class ExternalSortSpec extends Specification {
+    def parser = new SQLParser()
+    def directory = Files.createTempDirectory("dynosql")
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def "spill the sorted runs and merge them back in order"() {
+        given:
+        def query = parser.parse("select * from T order by x desc, id").get()
+        def sort = ExternalSort.of(query, 200, directory)
+        def items = (1..50).collect { [id: new AttributeValue("k$it"), x: new AttributeValue().withN("${it % 5}")] }
+        Collections.shuffle(items, new Random(1))
+
+        when:
+        items.collate(7).each { sort.addAll(it) }
+        def sorted = []
+        sort.forEach { sorted << it }
+
+        then:
+        sort.runs > 1
+        Files.list(directory).count() == sort.runs
+        sorted.size() == 50
+        sorted == items.sort(false) { a, b ->
+            (b.x.n as int) <=> (a.x.n as int) ?: a.id.s <=> b.id.s
+        }
+
+        when:
+        sort.close()
+
+        then:
+        Files.list(directory).count() == 0
+    }
+
+    def "remove the duplicates across the runs"() {
+        given:
+        def query = parser.parse("select distinct city from T").get()
+        def sort = ExternalSort.of(query, 100, directory)
+
+        when:
+        (1..40).each { sort.addAll([[city: new AttributeValue("c${it % 3}")]]) }
+        sort.addAll([[:]])
+        def cities = []
+        sort.forEach { cities << it.city?.s }
+
+        then:
+        sort.runs > 1
+        cities == [null, "c0", "c1", "c2"]
+
+        cleanup:
+        sort.close()
+    }
+
+    def "keep the low cardinality DISTINCT in memory"() {
+        given:
+        def query = parser.parse("select distinct city from T").get()
+        def sort = ExternalSort.of(query, 1000, directory)
+
+        when:
+        (1..1000).each { sort.addAll([[city: new AttributeValue("c${it % 3}")]]) }
+        def cities = []
+        sort.forEach { cities << it.city.s }
+
+        then:
+        sort.runs == 0
+        cities == ["c0", "c1", "c2"]
+    }
+
+    def "order the strings by their UTF-8 bytes"() {
+        given:
+        def query = parser.parse("select * from T order by s").get()
+        def sort = ExternalSort.of(query, 1000, directory)
+        def strings = ["～", "😀", "a", "ab", "ü"]
+
+        when:
+        sort.addAll(strings.collect { [s: new AttributeValue(it)] })
+        def sorted = []
+        sort.forEach { sorted << it.s.s }
+
+        then:
+        sorted == ["a", "ab", "ü", "～", "😀"]
+        sorted == strings.sort(false) { a, b ->
+            def bytes1 = a.getBytes("UTF-8")
+            def bytes2 = b.getBytes("UTF-8")
+            def i = (0..<Math.min(bytes1.length, bytes2.length)).find { bytes1[it] != bytes2[it] }
+            i == null ? bytes1.length <=> bytes2.length : (bytes1[i] & 0xFF) <=> (bytes2[i] & 0xFF)
+        }
+    }
+
+    def "encode and decode all the attribute types"() {
+        given:
+        def item = [
+                s   : new AttributeValue("text ü"),
+                n   : new AttributeValue().withN("-1.5"),
+                b   : new AttributeValue().withB(ByteBuffer.wrap([1, 2, -1] as byte[])),
+                t   : new AttributeValue().withBOOL(true),
+                f   : new AttributeValue().withBOOL(false),
+                null: new AttributeValue().withNULL(true),
+                ss  : new AttributeValue().withSS("a", "b"),
+                ns  : new AttributeValue().withNS("1", "2"),
+                bs  : new AttributeValue().withBS(ByteBuffer.wrap([3] as byte[])),
+                l   : new AttributeValue().withL(new AttributeValue("x"), new AttributeValue().withN("1")),
+                m   : new AttributeValue().withM([nested: new AttributeValue("y" * 300)])]
+        def bytes = new ByteArrayOutputStream()
+
+        when:
+        RowCodec.write(new DataOutputStream(bytes), item)
+        def decoded = RowCodec.read(ByteBuffer.wrap(bytes.toByteArray()))
+
+        then:
+        decoded == item
+    }
+}
@@ -0,0 +1,108 @@
+package com.akazlou.dynosql
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+class FanOutSpec extends Specification {
+    def "run the tasks concurrently on the executor"() {
+        given:
+        def executor = TaskExecutor.platform(2)
+        def started = new CountDownLatch(3)
+        def tasks = (1..3).collect { { -> started.countDown(); started.await(1, TimeUnit.SECONDS) } as Runnable }
+
+        when:
+        FanOut.run(executor, tasks)
+
+        then:
+        started.count == 0
+
+        cleanup:
+        executor.close()
+    }
+
+    def "run the tasks in the calling thread if the executor doesn't pick them up"() {
+        given:
+        def threads = new CopyOnWriteArrayList<Thread>()
+        def tasks = (1..3).collect { { -> threads << Thread.currentThread() } as Runnable }
+
+        when:
+        FanOut.run(executor, tasks)
+
+        then:
+        threads == [Thread.currentThread()] * 3
+
+        where:
+        executor << [
+                { throw new RejectedExecutionException() } as Executor,
+                { ignored -> } as Executor]
+    }
+
+    def "reject the tasks beyond the queue of the platform pool"() {
+        given:
+        def executor = TaskExecutor.platform(1)
+        def release = new CountDownLatch(1)
+        def blocking = { -> release.await() } as Runnable
+
+        when:
+        3.times { executor.execute(blocking) }
+
+        then:
+        thrown(RejectedExecutionException)
+
+        cleanup:
+        release.countDown()
+        executor.close()
+    }
+
+    @Requires({ TaskExecutor.isVirtualSupported() })
+    def "run the tasks on the virtual threads"() {
+        given:
+        def executor = TaskExecutor.virtual()
+        def threads = new CopyOnWriteArrayList<Thread>()
+        def started = new CountDownLatch(3)
+        def tasks = (1..3).collect {
+            { ->
+                threads << Thread.currentThread()
+                started.countDown()
+                started.await(1, TimeUnit.SECONDS)
+            } as Runnable
+        }
+
+        when:
+        FanOut.run(executor, tasks)
+
+        then:
+        started.count == 0
+        threads.count { it.isVirtual() } >= 2
+
+        cleanup:
+        executor.close()
+    }
+
+    def "throw the first failure once all the tasks are done"() {
+        given:
+        def executor = TaskExecutor.platform(2)
+        def done = new CountDownLatch(1)
+        def first = new IllegalStateException("first")
+
+        when:
+        FanOut.run(executor, [
+                { -> throw first } as Runnable,
+                { -> Thread.sleep(50); done.countDown() } as Runnable,
+                { -> throw new IllegalArgumentException("second") } as Runnable])
+
+        then:
+        def ex = thrown(IllegalStateException)
+        ex.is(first)
+        done.count == 0
+
+        cleanup:
+        executor.close()
+    }
+}
@@ -0,0 +1,38 @@
+package com.akazlou.dynosql
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LatencyHistogramSpec extends Specification {
+    @Unroll
+    def "value #value falls into the bucket with upper bound #upperBound"(long value, long upperBound) {
+        expect:
+        LatencyHistogram.upperBound(LatencyHistogram.index(value)) == upperBound
+
+        where:
+        value         || upperBound
+        0             || 0
+        7             || 7
+        8             || 8
+        15            || 15
+        16            || 17
+        1_000_000     || 1_048_575
+        Long.MAX_VALUE || Long.MAX_VALUE
+    }
+
+    def "report percentiles within the precision"() {
+        given:
+        def histogram = new LatencyHistogram()
+
+        when:
+        (1..1000).each { histogram.record(it * 1_000L) }
+
+        then:
+        histogram.count == 1000
+        histogram.max == 1_000_000
+        histogram.getPercentile(0.5) >= 500_000
+        histogram.getPercentile(0.5) <= 500_000 * 1.125
+        histogram.getPercentile(1) == 1_000_000
+        histogram.mean == 500_500_0 / 10
+    }
+}
@@ -0,0 +1,55 @@
+package com.akazlou.dynosql
+
+import static com.akazlou.dynosql.SQLQuery.Scalar.Operation
+
+import spock.lang.Specification
+
+class PreparedQuerySpec extends Specification {
+    def parser = new SQLParser()
+
+    def "bind the values in the order of the placeholders"() {
+        given:
+        def prepared = PreparedQuery.prepare(
+                "select * from T where id = ? and ts between ? and ? and x in (?, ?) and y = '?'", parser)
+
+        when:
+        def bound = prepared.bind("a", 1, 2.50G, 7L, 8)
+
+        then:
+        prepared.parameterCount == 5
+        bound.sql == "select * from T where id = 'a' and ts between 1 and 2.50 and x in (7, 8) and y = '?'"
+        bound.toQuery().conditions.get() == parser.parse(bound.sql).get().conditions.get()
+        bound.toQuery().conditions.get().toString().contains("y = '?'")
+    }
+
+    def "share the prepared query between the different values"() {
+        given:
+        def prepared = PreparedQuery.prepare("select * from T where id = ?", parser)
+
+        expect:
+        prepared.bind("a").toQuery().conditions.get() == new SQLQuery.Scalar<String>("id", "'a'", Operation.EQ)
+        prepared.bind("b").toQuery().conditions.get() == new SQLQuery.Scalar<String>("id", "'b'", Operation.EQ)
+    }
+
+    def "reject the wrong values"() {
+        given:
+        def prepared = PreparedQuery.prepare("select * from T where id = ?", parser)
+
+        when:
+        prepared.bind(values as Object[])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        values << [[], ["a", "b"], [true], [null]]
+    }
+
+    def "reject the unbound query"() {
+        when:
+        PreparedQuery.prepare("select * from T where id = ?", parser).toQuery()
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
@@ -0,0 +1,157 @@
+package com.akazlou.dynosql
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement
+import com.amazonaws.services.dynamodbv2.model.KeyType
+import com.amazonaws.services.dynamodbv2.model.Projection
+import com.amazonaws.services.dynamodbv2.model.ProjectionType
+import com.amazonaws.services.dynamodbv2.model.TableDescription
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class QueryPlannerSpec extends Specification {
+    @Shared
+    def table = TableMetadata.of(new TableDescription()
+            .withTableName("T")
+            .withKeySchema(
+                    new KeySchemaElement("id", KeyType.HASH),
+                    new KeySchemaElement("ts", KeyType.RANGE))
+            .withGlobalSecondaryIndexes(
+                    new GlobalSecondaryIndexDescription()
+                            .withIndexName("by_email")
+                            .withKeySchema(new KeySchemaElement("email", KeyType.HASH))
+                            .withProjection(new Projection().withProjectionType(ProjectionType.ALL)),
+                    new GlobalSecondaryIndexDescription()
+                            .withIndexName("by_status")
+                            .withKeySchema(new KeySchemaElement("status", KeyType.HASH))
+                            .withProjection(new Projection().withProjectionType(ProjectionType.KEYS_ONLY))))
+
+    @Unroll
+    def "plan #sql as #operation"(String sql, QueryPlan.Operation operation, String index) {
+        when:
+        def plan = new QueryPlanner().plan(new SQLParser().parse(sql).get(), table)
+
+        then:
+        plan.operation == operation
+        plan.indexName.orElse(null) == index
+
+        where:
+        sql                                                          || operation                  || index
+        "select * from T where id = 'a' and ts = 1"                  || QueryPlan.Operation.GET   || null
+        "select * from T where id in ('a', 'b') and ts = 1"          || QueryPlan.Operation.GET   || null
+        "select * from T where id = 'a'"                             || QueryPlan.Operation.QUERY || null
+        "select * from T where id = 'a' and ts > 1"                  || QueryPlan.Operation.QUERY || null
+        "select * from T where id = 'a' and ts = 1 and x = 2"        || QueryPlan.Operation.QUERY || null
+        "select * from T where email = 'a@b.c'"                      || QueryPlan.Operation.QUERY || "by_email"
+        "select id, ts, status from T where status = 'ACTIVE'"       || QueryPlan.Operation.QUERY || "by_status"
+        "select * from T where status = 'ACTIVE'"                    || QueryPlan.Operation.SCAN  || null
+        "select * from T where x = 1"                                || QueryPlan.Operation.SCAN  || null
+        "select * from T where id = 'a' or ts = 1"                   || QueryPlan.Operation.SCAN  || null
+        "select * from T"                                            || QueryPlan.Operation.SCAN  || null
+    }
+
+    def "plan single query per HASH key value with the rest of conditions as filter"() {
+        when:
+        def plan = new QueryPlanner().plan(
+                new SQLParser().parse("select id, x from T where id in ('a', 'b') and ts between 1 and 5 and x > 2")
+                        .get(),
+                table)
+
+        then:
+        plan.operation == QueryPlan.Operation.QUERY
+        plan.queries.size() == 2
+        plan.queries.every { it.keyConditionExpression != null && it.filterExpression != null }
+        plan.queries*.expressionAttributeValues.collect { values -> values.values().find { it.s }.s } as Set ==
+                ["a", "b"] as Set
+        plan.projectionExpression.isPresent()
+    }
+
+    def "plan batch get with the keys"() {
+        when:
+        def plan = new QueryPlanner().plan(
+                new SQLParser().parse("select * from T where id in ('a', 'b') and ts = 7").get(), table)
+
+        then:
+        plan.keys.keys as Set == [
+                [id: new AttributeValue().withS("a"), ts: new AttributeValue().withN("7")],
+                [id: new AttributeValue().withS("b"), ts: new AttributeValue().withN("7")]] as Set
+    }
+
+    @Unroll
+    def "plan #sql with the hints as #operation"(String sql, QueryPlan.Operation operation, String index) {
+        when:
+        def plan = new QueryPlanner().plan(new SQLParser().parse(sql).get(), table)
+
+        then:
+        plan.operation == operation
+        plan.indexName.orElse(null) == index
+
+        where:
+        sql                                                                          || operation                  || index
+        "select /*+ INDEX(by_email) */ * from T where id = 'a' and email = 'a@b.c'"  || QueryPlan.Operation.QUERY || "by_email"
+        "select /*+ INDEX(by_email) */ * from T where x = 1"                         || QueryPlan.Operation.SCAN  || "by_email"
+        "select /*+ CONSISTENT */ * from T where email = 'a@b.c'"                    || QueryPlan.Operation.SCAN  || null
+    }
+
+    def "plan the consistent reads, scan segments and page size from the hints"() {
+        when:
+        def scan = new QueryPlanner().plan(
+                new SQLParser().parse("select /*+ PARALLEL(4) PAGE_SIZE(10) CONSISTENT */ * from T").get(), table)
+        def query = new QueryPlanner().plan(
+                new SQLParser().parse("select /*+ PAGE_SIZE(10) CONSISTENT */ * from T where id = 'a'").get(), table)
+        def get = new QueryPlanner().plan(
+                new SQLParser().parse("select /*+ CONSISTENT */ * from T where id = 'a' and ts = 1").get(), table)
+
+        then:
+        scan.parallelism == 4
+        scan.scan.limit == 10
+        scan.scan.consistentRead
+        query.queries[0].limit == 10
+        query.queries[0].consistentRead
+        get.keys.consistentRead
+        [scan, query, get].every { it.consistentRead }
+    }
+
+    @Unroll
+    def "fail the hints #sql"(String sql) {
+        when:
+        new QueryPlanner().plan(new SQLParser().parse(sql).get(), table)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        sql << ["select /*+ INDEX(by_name) */ * from T",
+                "select /*+ INDEX(by_status) */ * from T where status = 'ACTIVE'",
+                "select /*+ INDEX(by_email) CONSISTENT */ * from T where email = 'a@b.c'"]
+    }
+
+    @Unroll
+    def "estimate #units read units of #sql"(String sql, double units) {
+        given:
+        def users = TableMetadata.of(new TableDescription()
+                .withTableName("U")
+                .withItemCount(1000)
+                .withTableSizeBytes(100_000)
+                .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+                .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                        .withIndexName("by_email")
+                        .withKeySchema(new KeySchemaElement("email", KeyType.HASH))
+                        .withProjection(new Projection().withProjectionType(ProjectionType.ALL))))
+
+        when:
+        def plan = new QueryPlanner().plan(new SQLParser().parse(sql).get(), users)
+
+        then:
+        new QueryExplainer().estimateReadCapacity(plan, users) == units
+
+        where:
+        sql                                          || units
+        "select * from U where id in ('a', 'b')"     || 1.0
+        "select * from U where id = 'a' and x = 1"   || 0.5
+        "select * from U where email = 'a@b.c'"      || 12.5
+        "select * from U"                            || 12.5
+    }
+}
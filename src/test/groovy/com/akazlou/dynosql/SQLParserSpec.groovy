@@ -33,6 +33,9 @@ class SQLParserSpec extends Specification {
                                                                            new Column("y", "y"),
                                                                            new Column("Col_1", "Col_2"),
                                                                            new Column("z")]
+        "select last_name, password as pw, class from T"  || "T"       || [new Column("last_name"),
+                                                                           new Column("password", "pw"),
+                                                                           new Column("class")]
     }
 
     @Unroll
@@ -298,4 +301,200 @@ class SQLParserSpec extends Specification {
                                 new SQLQuery.Scalar<Boolean>("y", true, Operation.NOT_EXISTS)),
                         new SQLQuery.Scalar<String>("z", "5", Operation.GT))
     }
+
+    @Unroll
+    def "parse EXPLAIN query #sql"(String sql, SQLQuery.Explain explain) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.tableName == "T"
+        query.columns == [new Column("*")]
+        query.explain.orElse(null) == explain
+
+        where:
+        sql                                             || explain
+        "select * from T where id = 'a'"                || null
+        "explain select * from T where id = 'a'"        || SQLQuery.Explain.PLAN
+        "EXPLAIN  select * from T"                      || SQLQuery.Explain.PLAN
+        "explain analyze select * from T where id = 'a'" || SQLQuery.Explain.ANALYZE
+        "Explain Analyze select * from T"               || SQLQuery.Explain.ANALYZE
+    }
+
+    def "parse INSERT with multiple rows"() {
+        when:
+        def query = new SQLParser().parse("INSERT INTO T (id, name, age) VALUES ('a', 'x, y', 1), ('b', null, 2);").get()
+
+        then:
+        query.type == SQLQuery.Type.INSERT
+        query.tableName == "T"
+        query.columns == [new Column("id"), new Column("name"), new Column("age")]
+        query.rows == [["'a'", "'x, y'", "1"], ["'b'", "null", "2"]]
+    }
+
+    def "fail INSERT with the wrong number of values"() {
+        when:
+        new SQLParser().parse("insert into T (id, name) values ('a')")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "parse UPDATE"() {
+        when:
+        def query = new SQLParser().parse("update T set name = 'a = b', age = 5, note = null where id = 'a'").get()
+
+        then:
+        query.type == SQLQuery.Type.UPDATE
+        query.tableName == "T"
+        query.assignments == [name: "'a = b'", age: "5", note: "null"]
+        query.conditions.get() == new SQLQuery.Scalar<String>("id", "'a'", Operation.EQ)
+    }
+
+    @Unroll
+    def "parse DELETE #sql"(String sql, Expr conditions) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.type == SQLQuery.Type.DELETE
+        query.tableName == "T"
+        query.conditions.orElse(null) == conditions
+
+        where:
+        sql                                   || conditions
+        "delete from T"                       || null
+        "DELETE FROM T WHERE id = 'a';"       || new SQLQuery.Scalar<String>("id", "'a'", Operation.EQ)
+    }
+
+    @Unroll
+    def "parse DISTINCT and ORDER BY #sql"(String sql, boolean distinct, List<SQLQuery.Order> orderBy) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.tableName == "T"
+        query.distinct == distinct
+        query.orderBy == orderBy
+        query.sorted == (distinct || !orderBy.empty)
+
+        where:
+        sql                                                      || distinct | orderBy
+        "select id from T"                                       || false    | []
+        "select DISTINCT id, name from T"                        || true     | []
+        "select * from T order by x"                             || false    | [new SQLQuery.Order("x", false)]
+        "select * from T where id = 'a' ORDER BY x DESC, y asc;" || false    | [new SQLQuery.Order("x", true), new SQLQuery.Order("y", false)]
+        "select distinct name as n from T order by n desc"       || true     | [new SQLQuery.Order("n", true)]
+    }
+
+    def "fail DISTINCT ordered by the column not selected"() {
+        when:
+        new SQLParser().parse("select distinct id from T order by x")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    @Unroll
+    def "parse JOIN #sql"(String sql, SQLQuery.Join join) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.tableName == "users"
+        query.join.get() == join
+
+        where:
+        sql                                                                               || join
+        "select u.name, o.total from users u join orders o on u.id = o.user_id"           || new SQLQuery.Join("u", "orders", "o", "id", "user_id")
+        "SELECT * FROM users AS u INNER JOIN orders AS o ON o.user_id = u.id WHERE o.x > 1" || new SQLQuery.Join("u", "orders", "o", "id", "user_id")
+        "select users.name from users join orders on users.id = orders.user_id order by users.name" || new SQLQuery.Join("users", "orders", "orders", "id", "user_id")
+    }
+
+    @Unroll
+    def "fail JOIN #sql"(String sql) {
+        when:
+        new SQLParser().parse(sql)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        sql << ["select * from users u join orders u on u.id = u.user_id",
+                "select * from users u join orders o on id = user_id"]
+    }
+
+    def "ignore the alias without JOIN"() {
+        expect:
+        !new SQLParser().parse("select u.id from users u").isPresent()
+    }
+
+    @Unroll
+    def "parse IN (SELECT ...) #sql"(String sql, Expr conditions, Expr subqueryConditions) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.tableName == "T"
+        query.conditions.orElse(null) == conditions
+        def semiJoin = query.semiJoin.get()
+        semiJoin.column == "id"
+        semiJoin.query.tableName == "O"
+        semiJoin.query.columns == [new SQLQuery.Column("owner")]
+        semiJoin.query.conditions.orElse(null) == subqueryConditions
+
+        where:
+        sql                                                                                  || conditions                                             | subqueryConditions
+        "select * from T where id in (select owner from O)"                                  || null                                                   | null
+        "select * from T where x = 'in (select' and id IN ( SELECT owner FROM O where y in (1, 2) ) and z > 1" || new SQLQuery.AndExpr(new SQLQuery.Scalar<String>("x", "'in (select'", Operation.EQ), new SQLQuery.Scalar<String>("z", "1", Operation.GT)) | Operation.IN.apply("y", "1", "2")
+    }
+
+    @Unroll
+    def "fail IN (SELECT ...) #sql"(String sql) {
+        when:
+        new SQLParser().parse(sql)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        sql << ["select * from T where x = 1 or id in (select owner from O)",
+                "select * from T where id in (select owner from O) and y in (select owner from O)",
+                "select * from T where id in (select * from O)",
+                "delete from T where id in (select owner from O)",
+                "select * from T where id in (select owner from O"]
+    }
+
+    @Unroll
+    def "parse hints #sql"(String sql, SQLQuery.Hints hints) {
+        when:
+        def query = new SQLParser().parse(sql).get()
+
+        then:
+        query.hints == hints
+        query.columns == [new SQLQuery.Column("*")]
+
+        where:
+        sql                                                                      || hints
+        "select * from T"                                                        || SQLQuery.Hints.NONE
+        "select /*+ INDEX(by_email) CONSISTENT */ * from T where email = 'a'"    || new SQLQuery.Hints("by_email", 0, true, 0)
+        "SELECT /*+ parallel(4), page_size(25) */ * FROM T"                      || new SQLQuery.Hints(null, 4, false, 25)
+    }
+
+    @Unroll
+    def "fail hints #sql"(String sql) {
+        when:
+        new SQLParser().parse(sql)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        sql << ["select /*+ FULL(T) */ * from T",
+                "select /*+ INDEX */ * from T",
+                "select /*+ PARALLEL(0) */ * from T",
+                "select /*+ PAGE_SIZE(x) */ * from T",
+                "select /*+ CONSISTENT(1) */ * from T",
+                "select /*+ CONSISTENT; */ * from T"]
+    }
 }
@@ -0,0 +1,89 @@
+package com.akazlou.dynosql
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import spock.lang.Specification
+
+class SingleFlightSpec extends Specification {
+    def singleFlight = new SingleFlight<String, String>()
+    def pool = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        pool.shutdownNow()
+    }
+
+    def "share the single load between the concurrent callers"() {
+        given:
+        def loads = new AtomicInteger()
+        def coalesced = new AtomicInteger()
+        def release = new CountDownLatch(1)
+
+        when:
+        def leader = pool.submit({
+            singleFlight.execute("k", { loads.incrementAndGet(); release.await(); "v" }, { coalesced.incrementAndGet() })
+        } as Callable)
+        waitFor { loads.get() == 1 }
+        def followers = (1..3).collect {
+            pool.submit({
+                singleFlight.execute("k", { loads.incrementAndGet(); "other" }, { coalesced.incrementAndGet() })
+            } as Callable)
+        }
+        waitFor { coalesced.get() == 3 }
+        release.countDown()
+
+        then:
+        leader.get(1, TimeUnit.SECONDS) == "v"
+        followers*.get(1, TimeUnit.SECONDS) == ["v", "v", "v"]
+        loads.get() == 1
+        singleFlight.size() == 0
+
+        when:
+        def next = singleFlight.execute("k", { loads.incrementAndGet(); "next" }, {})
+
+        then:
+        next == "next"
+        loads.get() == 2
+    }
+
+    def "share the failure with the waiting callers"() {
+        given:
+        def release = new CountDownLatch(1)
+        def entered = new CountDownLatch(1)
+        def coalesced = new CountDownLatch(1)
+
+        when:
+        def leader = pool.submit({
+            singleFlight.execute("k", { entered.countDown(); release.await(); throw new IllegalStateException("boom") }, {})
+        } as Callable)
+        entered.await(1, TimeUnit.SECONDS)
+        def follower = pool.submit({
+            singleFlight.execute("k", { "v" }, { coalesced.countDown() })
+        } as Callable)
+        coalesced.await(1, TimeUnit.SECONDS)
+        release.countDown()
+        follower.get(1, TimeUnit.SECONDS)
+
+        then:
+        def ex = thrown(ExecutionException)
+        ex.cause instanceof IllegalStateException
+
+        when:
+        leader.get(1, TimeUnit.SECONDS)
+
+        then:
+        def leaderEx = thrown(ExecutionException)
+        leaderEx.cause.is(ex.cause)
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (!condition() && System.nanoTime() < deadline) {
+            Thread.sleep(1)
+        }
+    }
+}
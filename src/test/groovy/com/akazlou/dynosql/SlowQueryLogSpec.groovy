@@ -0,0 +1,77 @@
+package com.akazlou.dynosql
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity
+import spock.lang.Specification
+
+class SlowQueryLogSpec extends Specification {
+    def "log only the queries crossing either threshold"() {
+        given:
+        def entries = new CopyOnWriteArrayList<String>()
+        def log = new SlowQueryLog(100, 10, 16, { entries << it })
+
+        when:
+        log.onQuery(metrics("select * from T where id = 'fast'", 1, 1))
+        log.onQuery(metrics("select * from T where id = 'slow'", 150, 1))
+        log.onQuery(metrics("select * from T where x = 'expensive'", 1, 12.5))
+        log.close()
+
+        then:
+        entries.size() == 2
+        entries[0].contains("sql='select * from T where id = 'slow''")
+        entries[0].startsWith("Slow query 150ms")
+        entries[1].contains("consumedCapacity=12.5")
+        entries[1].contains("scannedToReturned=5.0")
+    }
+
+    def "disable the threshold of zero"() {
+        given:
+        def entries = new CopyOnWriteArrayList<String>()
+        def log = new SlowQueryLog(100, 0, 16, { entries << it })
+
+        when:
+        log.onQuery(metrics("select * from T where id = 'fast'", 1, 0))
+        log.onQuery(metrics("select * from T where x = 'expensive'", 1, 12.5))
+        log.onQuery(metrics("select * from T where id = 'slow'", 150, 1))
+        log.close()
+
+        then:
+        entries.size() == 1
+        entries[0].startsWith("Slow query 150ms")
+    }
+
+    def "reject both thresholds disabled"() {
+        when:
+        new SlowQueryLog(0, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "drop the entries when the queue is full instead of blocking"() {
+        given:
+        def blocked = new CountDownLatch(1)
+        def log = new SlowQueryLog(0, 1, 2, { blocked.await(1, TimeUnit.SECONDS) })
+
+        when:
+        10.times { log.onQuery(metrics("select * from T", 1, 1)) }
+
+        then:
+        // The drainer may have taken the single entry before blocking
+        log.dropped >= 7
+
+        cleanup:
+        blocked.countDown()
+        log.close()
+    }
+
+    private static QueryMetrics metrics(String sql, long millis, double capacity) {
+        def stats = new QueryStats()
+        stats.recordCall(new ConsumedCapacity().withCapacityUnits(capacity))
+        stats.recordPage(10, 2)
+        new QueryMetrics(sql, "T", null, null, null, 0, 0, TimeUnit.MILLISECONDS.toNanos(millis), stats, null)
+    }
+}